@@ -0,0 +1,143 @@
+package ticket.booking.benchmark;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Deterministic synthetic data for the benchmarks: catalogs and user bases of a given size written in the
+ * same JSON layout as localDb, into a throwaway directory the services can be pointed at.
+ */
+public class BenchmarkData {
+    public static final String PASSWORD = "benchmark-password";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Random random;
+
+    public BenchmarkData(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public static Path createDataDirectory() throws IOException {
+        return Files.createTempDirectory("booking-benchmark");
+    }
+
+    public static void deleteDataDirectory(Path directory) throws IOException {
+        if (directory == null || !Files.exists(directory)) return;
+
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    public static String stationName(int station) {
+        return "Station " + station;
+    }
+
+    /**
+     * Writes trains.json with {@code trainCount} trains, each calling at {@code stopsPerTrain} distinct stops
+     * drawn from {@code stationCount} stations, with {@code rows} coaches of {@code seatsPerRow} free seats.
+     * Returns the stops of every train, in order.
+     */
+    public List<List<String>> writeTrains(Path directory, int trainCount, int stationCount, int stopsPerTrain,
+                                          int rows, int seatsPerRow) throws IOException {
+        List<List<String>> routes = new ArrayList<>(trainCount);
+        try (JsonGenerator out = objectMapper.getFactory()
+                .createGenerator(directory.resolve("trains.json").toFile(), JsonEncoding.UTF8)) {
+            out.writeStartArray();
+            for (int train = 0; train < trainCount; train++) {
+                List<String> stations = randomRoute(stationCount, stopsPerTrain);
+                routes.add(stations);
+
+                out.writeStartObject();
+                out.writeStringField("train_id", "T" + train);
+                out.writeStringField("train_no", String.valueOf(10000 + train));
+                out.writeArrayFieldStart("seats");
+                for (int row = 0; row < rows; row++) {
+                    out.writeArray(new int[seatsPerRow], 0, seatsPerRow);
+                }
+                out.writeEndArray();
+                out.writeObjectFieldStart("station_times");
+                int minutes = random.nextInt(24 * 60);
+                for (String station : stations) {
+                    out.writeStringField(station, String.format("%02d:%02d:00", minutes / 60 % 24, minutes % 60));
+                    minutes += 10 + random.nextInt(120);
+                }
+                out.writeEndObject();
+                out.writeArrayFieldStart("stations");
+                for (String station : stations) {
+                    out.writeString(station);
+                }
+                out.writeEndArray();
+                out.writeEndObject();
+            }
+            out.writeEndArray();
+        }
+        return routes;
+    }
+
+    /**
+     * Writes users.json with {@code userCount} users named {@code user<n>}, all sharing {@code hashedPassword}
+     * (a hash of {@link #PASSWORD}) and {@code ticketsPerUser} tickets on random trains.
+     */
+    public void writeUsers(Path directory, int userCount, String hashedPassword, int ticketsPerUser, int trainCount)
+            throws IOException {
+        try (JsonGenerator out = objectMapper.getFactory()
+                .createGenerator(directory.resolve("users.json").toFile(), JsonEncoding.UTF8)) {
+            out.writeStartArray();
+            for (int user = 0; user < userCount; user++) {
+                String userId = "U" + user;
+                out.writeStartObject();
+                out.writeStringField("name", userName(user));
+                out.writeStringField("hashed_password", hashedPassword);
+                out.writeArrayFieldStart("tickets_booked");
+                for (int ticket = 0; ticket < ticketsPerUser; ticket++) {
+                    out.writeStartObject();
+                    out.writeStringField("ticket_id", userId + "-" + ticket);
+                    out.writeStringField("user_id", userId);
+                    out.writeStringField("source", stationName(0));
+                    out.writeStringField("destination", stationName(1));
+                    out.writeStringField("date_of_travel", "2024-01-01");
+                    out.writeStringField("train_id", "T" + random.nextInt(Math.max(1, trainCount)));
+                    out.writeNumberField("row", ticket);
+                    out.writeNumberField("seat", 0);
+                    out.writeEndObject();
+                }
+                out.writeEndArray();
+                out.writeStringField("user_id", userId);
+                out.writeEndObject();
+            }
+            out.writeEndArray();
+        }
+    }
+
+    public static String userName(int user) {
+        return "user" + user;
+    }
+
+    public int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+
+    private List<String> randomRoute(int stationCount, int stops) {
+        List<String> stations = new ArrayList<>(stops);
+        while (stations.size() < Math.min(stops, stationCount)) {
+            String station = stationName(random.nextInt(stationCount));
+            if (!stations.contains(station)) {
+                stations.add(station);
+            }
+        }
+        return stations;
+    }
+}
@@ -0,0 +1,96 @@
+package ticket.booking.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ticket.booking.entities.SeatPosition;
+import ticket.booking.entities.Train;
+import ticket.booking.service.SessionManager;
+import ticket.booking.service.TrainService;
+import ticket.booking.service.UserBookingService;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Booking and releasing one seat through {@link UserBookingService#bookTrainSeat}, journal append included,
+ * single-threaded and with threads competing for the same trains.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookingBenchmark {
+    private static final int ROWS = 8;
+    private static final int SEATS_PER_ROW = 72;
+
+    @Param({"10", "1000"})
+    public int trainCount;
+
+    private Path dataDirectory;
+    private TrainService trainService;
+    private UserBookingService userBookingService;
+    private List<Train> trains;
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Setup
+    public void setUp() throws IOException {
+        dataDirectory = BenchmarkData.createDataDirectory();
+        new BenchmarkData(42).writeTrains(dataDirectory, trainCount, 500, 10, ROWS, SEATS_PER_ROW);
+        new BenchmarkData(42).writeUsers(dataDirectory, 0, "", 0, 0);
+        trainService = new TrainService(dataDirectory, null);
+        userBookingService = new UserBookingService(null, new SessionManager(), trainService, dataDirectory);
+        trains = IntStream.range(0, trainCount)
+                .mapToObj(train -> trainService.findTrain("T" + train).orElseThrow())
+                .toList();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        userBookingService.close();
+        // Journal appends are written by a background flusher; let it finish before deleting the files
+        userBookingService.commit().join();
+        BenchmarkData.deleteDataDirectory(dataDirectory);
+    }
+
+    @Benchmark
+    public boolean bookAndRelease() {
+        return bookAndReleaseNext();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean bookAndReleaseContended() {
+        return bookAndReleaseNext();
+    }
+
+    private boolean bookAndReleaseNext() {
+        int ticket = next.getAndIncrement() & Integer.MAX_VALUE;
+        Train train = trains.get(ticket % trains.size());
+        int seat = ticket / trains.size() % (ROWS * SEATS_PER_ROW);
+        int row = seat / SEATS_PER_ROW;
+        seat %= SEATS_PER_ROW;
+
+        boolean booked = userBookingService.bookTrainSeat(train, row, seat);
+        if (booked) {
+            trainService.releaseSeats(train, List.of(new SeatPosition(row, seat)), train.fullRun());
+        }
+        return booked;
+    }
+}
@@ -0,0 +1,84 @@
+package ticket.booking.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ticket.booking.service.SessionManager;
+import ticket.booking.service.TrainService;
+import ticket.booking.service.UserBookingService;
+import ticket.booking.util.UserServiceUtil;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link UserBookingService#loginUser(String, String)} against user bases of growing size. A valid login is
+ * dominated by the bcrypt check; an unknown name measures the user lookup alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoginBenchmark {
+    private static final int NAMES = 1024;
+
+    @Param({"1000", "100000"})
+    public int userCount;
+
+    private Path dataDirectory;
+    private SessionManager sessionManager;
+    private UserBookingService userBookingService;
+    private final String[] knownNames = new String[NAMES];
+    private final String[] unknownNames = new String[NAMES];
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkData data = new BenchmarkData(42);
+        dataDirectory = BenchmarkData.createDataDirectory();
+        data.writeTrains(dataDirectory, 10, 100, 10, 2, 16);
+        // One hash shared by every user keeps setup from spending minutes in bcrypt
+        data.writeUsers(dataDirectory, userCount, UserServiceUtil.hashPassword(BenchmarkData.PASSWORD), 2, 10);
+
+        sessionManager = new SessionManager();
+        userBookingService = new UserBookingService(null, sessionManager, new TrainService(dataDirectory, null),
+                dataDirectory);
+        for (int name = 0; name < NAMES; name++) {
+            knownNames[name] = BenchmarkData.userName(data.nextInt(userCount));
+            unknownNames[name] = "missing" + name;
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        userBookingService.close();
+        // Journal appends are written by a background flusher; let it finish before deleting the files
+        userBookingService.commit().join();
+        BenchmarkData.deleteDataDirectory(dataDirectory);
+    }
+
+    @Benchmark
+    public Optional<String> loginValidUser() {
+        Optional<String> token = userBookingService.loginUser(knownNames[next++ & (NAMES - 1)], BenchmarkData.PASSWORD);
+        token.ifPresent(sessionManager::invalidate);
+        return token;
+    }
+
+    @Benchmark
+    public Optional<String> loginUnknownUser() {
+        return userBookingService.loginUser(unknownNames[next++ & (NAMES - 1)], BenchmarkData.PASSWORD);
+    }
+}
@@ -0,0 +1,44 @@
+package ticket.booking.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ticket.booking.util.UserServiceUtil;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link UserServiceUtil#hashPassword} and {@link UserServiceUtil#checkPassword} at the configured
+ * bcrypt work factor, the floor under signup and login latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordBenchmark {
+    private String hashedPassword;
+
+    @Setup
+    public void setUp() {
+        hashedPassword = UserServiceUtil.hashPassword(BenchmarkData.PASSWORD);
+    }
+
+    @Benchmark
+    public String hash() {
+        return UserServiceUtil.hashPassword(BenchmarkData.PASSWORD);
+    }
+
+    @Benchmark
+    public boolean check() {
+        return UserServiceUtil.checkPassword(BenchmarkData.PASSWORD, hashedPassword);
+    }
+}
@@ -0,0 +1,95 @@
+package ticket.booking.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ticket.booking.entities.SeatPosition;
+import ticket.booking.entities.Train;
+import ticket.booking.entities.User;
+import ticket.booking.service.SessionManager;
+import ticket.booking.service.TrainService;
+import ticket.booking.service.UserBookingService;
+import ticket.booking.util.UserServiceUtil;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing users.json and trains.json back after a change. Both files are only rewritten by compaction, which
+ * folds the journal into them, so each invocation makes one change and compacts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersistenceBenchmark {
+    @Param({"1000", "100000"})
+    public int userCount;
+
+    @Param({"1000"})
+    public int trainCount;
+
+    private Path dataDirectory;
+    private TrainService trainService;
+    private UserBookingService userBookingService;
+    private Train train;
+    private String hashedPassword;
+    private int nextUser;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkData data = new BenchmarkData(42);
+        dataDirectory = BenchmarkData.createDataDirectory();
+        data.writeTrains(dataDirectory, trainCount, 500, 10, 4, 64);
+        hashedPassword = UserServiceUtil.hashPassword(BenchmarkData.PASSWORD);
+        data.writeUsers(dataDirectory, userCount, hashedPassword, 2, trainCount);
+
+        trainService = new TrainService(dataDirectory, null);
+        userBookingService = new UserBookingService(null, new SessionManager(), trainService, dataDirectory);
+        train = trainService.findTrain("T0").orElseThrow();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        userBookingService.close();
+        // Journal appends are written by a background flusher; let it finish before deleting the files
+        userBookingService.commit().join();
+        BenchmarkData.deleteDataDirectory(dataDirectory);
+    }
+
+    @Benchmark
+    public void signUpAndCompactUsers() {
+        // The prehashed password keeps bcrypt out of the measurement
+        User user = User.builder()
+                .name("new" + nextUser)
+                .password(BenchmarkData.PASSWORD)
+                .hashedPassword(hashedPassword)
+                .ticketsBooked(new ArrayList<>())
+                .userId("N" + nextUser++)
+                .build();
+        userBookingService.signUp(user);
+        userBookingService.compact();
+    }
+
+    @Benchmark
+    public void bookAndCompactTrains() {
+        trainService.bookSeat(train, 0, 0);
+        trainService.releaseSeats(train, List.of(new SeatPosition(0, 0)), train.fullRun());
+        trainService.compact();
+    }
+}
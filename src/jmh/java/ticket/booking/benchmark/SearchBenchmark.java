@@ -0,0 +1,86 @@
+package ticket.booking.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ticket.booking.entities.Train;
+import ticket.booking.service.TrainService;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TrainService#searchTrains} on catalogs of growing size, for routes that exist and for random
+ * station pairs that mostly do not.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+    private static final int QUERIES = 1024;
+
+    @Param({"100", "1000", "10000"})
+    public int trainCount;
+
+    @Param({"2000"})
+    public int stationCount;
+
+    @Param({"20"})
+    public int stopsPerTrain;
+
+    private Path dataDirectory;
+    private TrainService trainService;
+    private final String[][] servedRoutes = new String[QUERIES][];
+    private final String[][] randomRoutes = new String[QUERIES][];
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkData data = new BenchmarkData(42);
+        dataDirectory = BenchmarkData.createDataDirectory();
+        List<List<String>> routes = data.writeTrains(dataDirectory, trainCount, stationCount, stopsPerTrain, 4, 64);
+        trainService = new TrainService(dataDirectory, null);
+
+        for (int query = 0; query < QUERIES; query++) {
+            List<String> route = routes.get(data.nextInt(routes.size()));
+            int from = data.nextInt(route.size() - 1);
+            int to = from + 1 + data.nextInt(route.size() - from - 1);
+            servedRoutes[query] = new String[] {route.get(from), route.get(to)};
+            randomRoutes[query] = new String[] {
+                    BenchmarkData.stationName(data.nextInt(stationCount)),
+                    BenchmarkData.stationName(data.nextInt(stationCount))
+            };
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkData.deleteDataDirectory(dataDirectory);
+    }
+
+    @Benchmark
+    public List<Train> searchServedRoute() {
+        String[] route = servedRoutes[next++ & (QUERIES - 1)];
+        return trainService.searchTrains(route[0], route[1]);
+    }
+
+    @Benchmark
+    public List<Train> searchRandomRoute() {
+        String[] route = randomRoutes[next++ & (QUERIES - 1)];
+        return trainService.searchTrains(route[0], route[1]);
+    }
+}
@@ -1,8 +1,17 @@
 package ticket.booking;
 
+import ticket.booking.entities.LegRange;
+import ticket.booking.entities.SeatInventory;
+import ticket.booking.entities.Ticket;
 import ticket.booking.entities.Train;
 import ticket.booking.entities.User;
+import ticket.booking.metrics.Metrics;
+import ticket.booking.persistence.MappedSeatStore;
+import ticket.booking.service.JourneyPlanner;
+import ticket.booking.service.SessionManager;
+import ticket.booking.service.TrainService;
 import ticket.booking.service.UserBookingService;
+import ticket.booking.util.TimeUtil;
 import ticket.booking.util.UserServiceUtil;
 
 import java.io.IOException;
@@ -15,14 +24,21 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 public class Main {
     private static final Scanner scanner = new Scanner(System.in);
+    private static final int MAX_TRANSFERS = 2;
+    private static String sessionToken;
+    private static String searchSource;
+    private static String searchDestination;
 
     public static void main(String[] args) {
         System.out.println("Running Train Booking System");
+        Metrics.registerMBean();
 
+        TrainService trainService;
         UserBookingService userBookingService;
         try {
-            userBookingService = new UserBookingService();
-        } catch (IOException ex) {
+            trainService = new TrainService(MappedSeatStore.configuredPolicy());
+            userBookingService = new UserBookingService(null, new SessionManager(), trainService);
+        } catch (IOException | IllegalArgumentException ex) {
             System.err.println("Failed to initialize booking service: " + ex.getMessage());
             return;
         }
@@ -37,7 +53,7 @@ public class Main {
 
             switch (option) {
                 case 1 -> handleSignUp(userBookingService);
-                case 2 -> userBookingService = handleLogin();
+                case 2 -> handleLogin(userBookingService);
                 case 3 -> handleFetchBookings(userBookingService);
                 case 4 -> trainSelectedForBooking = handleSearchTrains(userBookingService);
                 case 5 -> handleBookSeat(userBookingService, trainSelectedForBooking);
@@ -46,6 +62,9 @@ public class Main {
                 default -> System.out.println("Invalid option. Please try again.");
             }
         }
+        userBookingService.close();
+        userBookingService.compact();
+        trainService.compact();
         scanner.close();
     }
 
@@ -79,37 +98,24 @@ public class Main {
         System.out.println(success ? "Sign up successful!" : "Sign up failed!");
     }
 
-    private static UserBookingService handleLogin() {
+    private static void handleLogin(UserBookingService userBookingService) {
         System.out.print("Enter username: ");
         String username = scanner.nextLine();
         System.out.print("Enter password: ");
         String password = scanner.nextLine();
 
-        User user = User.builder()
-                .name(username)
-                .password(password)
-                .hashedPassword(UserServiceUtil.hashPassword(password))
-                .ticketsBooked(new ArrayList<>())
-                .userId(UUID.randomUUID().toString())
-                .build();
-
-        try {
-            UserBookingService service = new UserBookingService(user);
-            System.out.println("Login successful!");
-            return service;
-        } catch (IOException ex) {
-            System.err.println("Login failed: " + ex.getMessage());
-            return null;
-        }
+        userBookingService.logout(sessionToken);
+        sessionToken = userBookingService.loginUser(username, password).orElse(null);
+        System.out.println(sessionToken != null ? "Login successful!" : "Login failed: invalid username or password.");
     }
 
     private static void handleFetchBookings(UserBookingService userBookingService) {
-        if (userBookingService == null) {
+        if (sessionToken == null) {
             System.out.println("Please login first!");
             return;
         }
         System.out.println("Fetching your bookings...");
-        userBookingService.fetchBookings();
+        userBookingService.fetchBookings(sessionToken);
     }
 
     private static Train handleSearchTrains(UserBookingService userBookingService) {
@@ -117,19 +123,50 @@ public class Main {
         String source = scanner.nextLine();
         System.out.print("Enter destination station: ");
         String destination = scanner.nextLine();
+        System.out.print("Departing between (e.g. 06:00-12:00, Enter for any time): ");
+        String window = scanner.nextLine().trim();
+        System.out.print("Seats needed (Enter for any): ");
+        String seatsNeeded = scanner.nextLine().trim();
+
+        int minFreeSeats;
+        try {
+            minFreeSeats = seatsNeeded.isEmpty() ? 0 : Integer.parseInt(seatsNeeded);
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid number of seats.");
+            return new Train();
+        }
 
-        List<Train> trains = userBookingService.getTrains(source, destination);
+        List<TrainService.TrainAvailability> results;
+        if (window.isEmpty()) {
+            results = userBookingService.getAvailableTrains(source, destination, minFreeSeats);
+        } else {
+            String[] bounds = window.split("-");
+            int departFrom = bounds.length == 2 ? TimeUtil.toSecondOfDay(bounds[0]) : TimeUtil.NO_TIME;
+            int departTo = bounds.length == 2 ? TimeUtil.toSecondOfDay(bounds[1]) : TimeUtil.NO_TIME;
+            if (departFrom == TimeUtil.NO_TIME || departTo == TimeUtil.NO_TIME) {
+                System.out.println("Invalid time window, expected HH:mm-HH:mm.");
+                return new Train();
+            }
+            results = userBookingService.getAvailableTrains(source, destination, departFrom, departTo, minFreeSeats);
+        }
+        searchSource = source;
+        searchDestination = destination;
 
-        if (trains.isEmpty()) {
+        if (results.isEmpty()) {
             System.out.println("No trains found for the given route.");
+            printConnections(userBookingService, source, destination);
             return new Train();
         }
 
+        List<Train> trains = results.stream().map(TrainService.TrainAvailability::train).toList();
         AtomicInteger index = new AtomicInteger(1);
-        trains.forEach(train -> {
-            System.out.printf("%d. Train ID: %s%n", index.getAndIncrement(), train.getTrainId());
-            train.getStationTimes().entrySet().forEach(entry ->
-                    System.out.printf("   Station: %s, Time: %s%n", entry.getKey(), entry.getValue())
+        results.forEach(result -> {
+            Train train = result.train();
+            System.out.printf("%d. Train ID: %s, departs %s, arrives %s, %d seats free%n", index.getAndIncrement(),
+                    train.getTrainId(), formatTime(train.timeAt(source)), formatTime(train.timeAt(destination)),
+                    result.freeSeats());
+            train.getStations().forEach(station ->
+                    System.out.printf("   Station: %s, Time: %s%n", station, formatTime(train.timeAt(station)))
             );
         });
 
@@ -145,8 +182,28 @@ public class Main {
         }
     }
 
+    private static String formatTime(String time) {
+        String formatted = TimeUtil.fromSecondOfDay(TimeUtil.toSecondOfDay(time));
+        return formatted != null ? formatted : "--";
+    }
+
+    private static void printConnections(UserBookingService userBookingService, String source, String destination) {
+        List<JourneyPlanner.Journey> journeys = userBookingService.planJourneys(source, destination, 0, MAX_TRANSFERS);
+        if (journeys.isEmpty()) return;
+
+        System.out.println("Journeys with a change of train (book each train separately):");
+        AtomicInteger index = new AtomicInteger(1);
+        journeys.forEach(journey -> {
+            System.out.printf("%d. %d change(s), arriving %s%n", index.getAndIncrement(), journey.transfers(),
+                    JourneyPlanner.formatTime(journey.arrival()));
+            journey.legs().forEach(leg -> System.out.printf("   Train %s: %s %s -> %s %s%n", leg.trainId(),
+                    leg.from(), JourneyPlanner.formatTime(leg.departure()), leg.to(),
+                    JourneyPlanner.formatTime(leg.arrival())));
+        });
+    }
+
     private static void handleBookSeat(UserBookingService userBookingService, Train train) {
-        if (userBookingService == null) {
+        if (sessionToken == null) {
             System.out.println("Please login first!");
             return;
         }
@@ -156,15 +213,36 @@ public class Main {
             return;
         }
 
-        System.out.println("Available seats (0 = available, 1 = booked):");
-        List<List<Integer>> seats = userBookingService.fetchSeats(train);
+        LegRange legs = train.legRange(searchSource, searchDestination).orElse(train.fullRun());
+        System.out.printf("Available seats from %s to %s (0 = available, 1 = booked):%n", searchSource, searchDestination);
+        SeatInventory seats = userBookingService.fetchSeats(train);
 
-        for (int i = 0; i < seats.size(); i++) {
+        for (int i = 0; i < seats.getRowCount(); i++) {
             System.out.printf("Row %d: ", i);
-            seats.get(i).forEach(seat -> System.out.print(seat + " "));
+            for (int j = 0; j < seats.getSeatCount(i); j++) {
+                System.out.print((seats.isAvailable(i, j, legs.fromLeg(), legs.toLeg()) ? 0 : 1) + " ");
+            }
             System.out.println();
         }
 
+        System.out.print("How many seats? ");
+        int count = scanner.nextInt();
+        scanner.nextLine(); // consume newline
+
+        if (count > 1) {
+            System.out.println("Finding seats together...");
+            List<Ticket> booked = userBookingService.bookGroup(sessionToken, train, searchSource, searchDestination, count);
+            if (booked.isEmpty()) {
+                System.out.println("Can't find " + count + " free seats on this train.");
+                return;
+            }
+            booked.forEach(ticket ->
+                    System.out.printf("   Ticket %s: Row %d, Seat %d%n", ticket.getTicketId(), ticket.getRow(), ticket.getSeat())
+            );
+            System.out.println("Booked! Enjoy your journey!");
+            return;
+        }
+
         System.out.print("Enter row number: ");
         int row = scanner.nextInt();
         System.out.print("Enter seat number: ");
@@ -172,19 +250,22 @@ public class Main {
         scanner.nextLine(); // consume newline
 
         System.out.println("Booking your seat...");
-        boolean booked = userBookingService.bookTrainSeat(train, row, seat);
-        System.out.println(booked ? "Booked! Enjoy your journey!" : "Can't book this seat.");
+        userBookingService.bookTicket(sessionToken, train, searchSource, searchDestination, row, seat)
+                .ifPresentOrElse(
+                        ticket -> System.out.println("Booked ticket " + ticket.getTicketId() + "! Enjoy your journey!"),
+                        () -> System.out.println("Can't book this seat.")
+                );
     }
 
     private static void handleCancelBooking(UserBookingService userBookingService) {
-        if (userBookingService == null) {
+        if (sessionToken == null) {
             System.out.println("Please login first!");
             return;
         }
 
         System.out.print("Enter ticket ID to cancel: ");
         String ticketId = scanner.nextLine();
-        boolean cancelled = userBookingService.cancelBooking(ticketId);
+        boolean cancelled = userBookingService.cancelBooking(sessionToken, ticketId);
         System.out.println(cancelled ? "Booking cancelled successfully!" : "Failed to cancel booking.");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,97 @@
+package ticket.booking.entities;
+
+/**
+ * Segment tree over the seats of one row that tracks the longest run of consecutive free seats,
+ * so a group can be placed side by side in O(log seats) without scanning the row.
+ */
+class FreeRunTree {
+    private final int size;
+    // Per node: free run touching the left edge, free run touching the right edge, longest free run
+    private final int[] prefix;
+    private final int[] suffix;
+    private final int[] longest;
+
+    FreeRunTree(int size) {
+        this(size, null);
+    }
+
+    /**
+     * Tree over a row whose occupied seats are the set bits of {@code occupied}, built in O(seats).
+     */
+    FreeRunTree(int size, long[] occupied) {
+        this.size = size;
+        int nodes = Math.max(1, 4 * size);
+        this.prefix = new int[nodes];
+        this.suffix = new int[nodes];
+        this.longest = new int[nodes];
+        if (size > 0) {
+            build(1, 0, size, occupied);
+        }
+    }
+
+    private void build(int node, int lo, int hi, long[] occupied) {
+        if (hi - lo == 1) {
+            boolean free = occupied == null || (occupied[lo >>> 6] & (1L << lo)) == 0;
+            prefix[node] = suffix[node] = longest[node] = free ? 1 : 0;
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        build(2 * node, lo, mid, occupied);
+        build(2 * node + 1, mid, hi, occupied);
+        pull(node, lo, mid, hi);
+    }
+
+    void set(int position, boolean free) {
+        if (position < 0 || position >= size) return;
+        set(1, 0, size, position, free ? 1 : 0);
+    }
+
+    private void set(int node, int lo, int hi, int position, int value) {
+        if (hi - lo == 1) {
+            prefix[node] = suffix[node] = longest[node] = value;
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (position < mid) {
+            set(2 * node, lo, mid, position, value);
+        } else {
+            set(2 * node + 1, mid, hi, position, value);
+        }
+        pull(node, lo, mid, hi);
+    }
+
+    private void pull(int node, int lo, int mid, int hi) {
+        int left = 2 * node;
+        int right = left + 1;
+        prefix[node] = prefix[left] == mid - lo ? prefix[left] + prefix[right] : prefix[left];
+        suffix[node] = suffix[right] == hi - mid ? suffix[right] + suffix[left] : suffix[right];
+        longest[node] = Math.max(Math.max(longest[left], longest[right]), suffix[left] + prefix[right]);
+    }
+
+    int longestRun() {
+        return size > 0 ? longest[1] : 0;
+    }
+
+    /**
+     * Start of the leftmost run of at least {@code length} free seats, or -1.
+     */
+    int findRun(int length) {
+        if (length <= 0 || longestRun() < length) return -1;
+        return findRun(1, 0, size, length);
+    }
+
+    private int findRun(int node, int lo, int hi, int length) {
+        if (hi - lo == 1) return lo;
+
+        int mid = (lo + hi) >>> 1;
+        int left = 2 * node;
+        int right = left + 1;
+        if (longest[left] >= length) {
+            return findRun(left, lo, mid, length);
+        }
+        if (suffix[left] + prefix[right] >= length) {
+            return mid - suffix[left];
+        }
+        return findRun(right, mid, hi, length);
+    }
+}
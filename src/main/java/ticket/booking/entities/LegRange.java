@@ -0,0 +1,6 @@
+package ticket.booking.entities;
+
+/**
+ * Legs {@code [fromLeg, toLeg)} of a train covered by a journey, as indexed by {@link SeatInventory}.
+ */
+public record LegRange(int fromLeg, int toLeg) {}
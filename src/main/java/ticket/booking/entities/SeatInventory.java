@@ -0,0 +1,818 @@
+package ticket.booking.entities;
+
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Compact, segment-aware seat map of a train.
+ * <p>
+ * A train with {@code n} stops has {@code n - 1} legs. Each row (coach) keeps one bitmap of {@code long}
+ * words per leg, where a set bit marks the seat occupied on that leg, so a seat sold Bangalore to Jaipur can
+ * be resold Jaipur to Delhi. Availability for a journey is the complement of the OR of its legs' bitmaps,
+ * computed a word (64 seats) at a time. Trains with more than {@value #MAX_LEGS} legs are tracked as a
+ * single leg.
+ * <p>
+ * Converts to and from the {@code List<List<Integer>>} 0/1 shape used in the JSON files, where 1 means
+ * occupied on at least one leg, plus optional per-seat leg masks for partially sold seats.
+ * <p>
+ * Book and release are atomic check-and-set operations guarded by one lock per row, so two requests
+ * can never both win the same seat while bookings on different rows or trains never contend.
+ * Group bookings lock every row they touch in ascending order and either take all seats or none.
+ * <p>
+ * For search, the train also keeps one counter per journey {@code [fromLeg, toLeg)} of the seats free on
+ * all of its legs, so availability is a single read. A book or release adjusts only the counters of the
+ * journeys inside the run of free legs around the seat's changed legs.
+ * <p>
+ * A seat can also be held on some legs while a booking is being completed. Held legs are kept in separate
+ * heap bitmaps: they count as taken for booking, availability and seat search, but are never part of the
+ * persisted 0/1 matrix or the mapped seat file, so a hold that is neither confirmed nor released leaves
+ * nothing behind on restart.
+ */
+public class SeatInventory {
+    public static final int MAX_LEGS = Long.SIZE;
+
+    private final int[] seatCounts;
+    private final int legCount;
+    // Per row: legCount consecutive bitmaps of wordCount(seatCounts[row]) words each, on the heap or
+    // in a memory-mapped file
+    private final LongBuffer[] legWords;
+    // Per row, in the same layout as legWords: legs held for a pending booking; allocated on the first hold
+    private final long[][] heldWords;
+    // Seats free on every leg, per row
+    private final AtomicIntegerArray freeSeats;
+    // Seats free on every leg of each journey [fromLeg, toLeg), at intervalIndex(fromLeg, toLeg)
+    private final AtomicIntegerArray journeyFreeSeats;
+    // Runs of seats free on every leg, per row, for side-by-side group allocation
+    private final FreeRunTree[] freeRuns;
+    private final ReentrantLock[] rowLocks;
+
+    public SeatInventory(int[] seatCounts) {
+        this(seatCounts, 1);
+    }
+
+    public SeatInventory(int[] seatCounts, int legCount) {
+        this(seatCounts, legCount, (long[][]) null);
+    }
+
+    // Starts from the given per-row bitmaps, or with every seat free when rowWords is null
+    private SeatInventory(int[] seatCounts, int legCount, long[][] rowWords) {
+        this(seatCounts, legCount, heapRows(seatCounts, legCount, rowWords));
+    }
+
+    private SeatInventory(int[] seatCounts, int legCount, LongBuffer[] rows) {
+        if (legCount < 1 || legCount > MAX_LEGS) {
+            throw new IllegalArgumentException("Leg count must be between 1 and " + MAX_LEGS);
+        }
+        this.seatCounts = seatCounts.clone();
+        this.legCount = legCount;
+        this.legWords = rows;
+        this.heldWords = new long[seatCounts.length][];
+        this.freeSeats = new AtomicIntegerArray(seatCounts.length);
+        this.journeyFreeSeats = new AtomicIntegerArray(legCount * (legCount + 1) / 2);
+        this.freeRuns = new FreeRunTree[seatCounts.length];
+        this.rowLocks = new ReentrantLock[seatCounts.length];
+        for (int row = 0; row < seatCounts.length; row++) {
+            if (rows[row].limit() != wordCount(seatCounts[row]) * legCount) {
+                throw new IllegalArgumentException("Row " + row + " has the wrong number of words");
+            }
+            long[] occupied = occupiedOnAnyLeg(rows[row], seatCounts[row], legCount);
+            freeSeats.set(row, seatCounts[row] - bitCount(occupied));
+            freeRuns[row] = new FreeRunTree(seatCounts[row], occupied);
+            rowLocks[row] = new ReentrantLock();
+        }
+        countJourneyFreeSeats();
+    }
+
+    // Most seats share a handful of leg masks (usually just "all free"), so count each mask once
+    private void countJourneyFreeSeats() {
+        Map<Long, Integer> seatsByMask = new HashMap<>();
+        for (int row = 0; row < seatCounts.length; row++) {
+            for (int seat = 0; seat < seatCounts[row]; seat++) {
+                seatsByMask.merge(occupiedLegs(row, seat), 1, Integer::sum);
+            }
+        }
+        for (Map.Entry<Long, Integer> seats : seatsByMask.entrySet()) {
+            long occupied = seats.getKey();
+            for (int fromLeg = 0; fromLeg < legCount; fromLeg++) {
+                for (int toLeg = fromLeg + 1; toLeg <= legCount && (occupied & 1L << (toLeg - 1)) == 0; toLeg++) {
+                    journeyFreeSeats.addAndGet(intervalIndex(fromLeg, toLeg), seats.getValue());
+                }
+            }
+        }
+    }
+
+    private static LongBuffer[] heapRows(int[] seatCounts, int legCount, long[][] rowWords) {
+        LongBuffer[] rows = new LongBuffer[seatCounts.length];
+        for (int row = 0; row < seatCounts.length; row++) {
+            int stride = wordCount(seatCounts[row]);
+            long[] words = new long[stride * legCount];
+            if (rowWords != null && rowWords[row] != null) {
+                copyRowWords(rowWords[row], words, stride, legCount);
+            }
+            rows[row] = LongBuffer.wrap(words);
+        }
+        return rows;
+    }
+
+    /**
+     * Number of legs tracked for a train with the given number of stops.
+     */
+    public static int legCountFor(int stationCount) {
+        int legs = stationCount - 1;
+        return legs >= 1 && legs <= MAX_LEGS ? legs : 1;
+    }
+
+    public static SeatInventory fromLists(List<List<Integer>> seats) {
+        return fromLists(seats, null, 1);
+    }
+
+    /**
+     * Builds an inventory from the JSON shape. A seat marked 1 in {@code seats} is occupied on the legs
+     * given by its entry in {@code legMasks}, or on every leg when no mask is recorded.
+     */
+    public static SeatInventory fromLists(List<List<Integer>> seats, List<List<Long>> legMasks, int legCount) {
+        if (seats == null) return null;
+
+        int[] seatCounts = new int[seats.size()];
+        for (int row = 0; row < seats.size(); row++) {
+            seatCounts[row] = seats.get(row) == null ? 0 : seats.get(row).size();
+        }
+
+        SeatInventory inventory = new SeatInventory(seatCounts, legCount);
+        for (int row = 0; row < seats.size(); row++) {
+            for (int seat = 0; seat < seatCounts[row]; seat++) {
+                Integer value = seats.get(row).get(seat);
+                if (value == null || value == 0) continue;
+
+                long mask = legMask(legMasks, row, seat) & inventory.allLegsMask();
+                if (mask == 0) {
+                    inventory.book(row, seat);
+                    continue;
+                }
+                for (int leg = 0; leg < legCount; leg++) {
+                    if ((mask & (1L << leg)) != 0) {
+                        inventory.book(row, seat, leg, leg + 1);
+                    }
+                }
+            }
+        }
+        return inventory;
+    }
+
+    private static long legMask(List<List<Long>> legMasks, int row, int seat) {
+        if (legMasks == null || row >= legMasks.size() || legMasks.get(row) == null
+                || seat >= legMasks.get(row).size() || legMasks.get(row).get(seat) == null) {
+            return 0;
+        }
+        return legMasks.get(row).get(seat);
+    }
+
+    /**
+     * Builds an inventory from raw per-row bitmaps as returned by {@link #getRowWords(int)}. A row may also
+     * be null when no seat is taken, or a single leg's block of words when every leg is alike.
+     */
+    public static SeatInventory fromWords(int[] seatCounts, int legCount, long[][] rowWords) {
+        return new SeatInventory(seatCounts, legCount, rowWords);
+    }
+
+    // A single block of stride words stands for every leg
+    private static void copyRowWords(long[] source, long[] words, int stride, int legCount) {
+        if (source.length == stride && legCount > 1) {
+            for (int leg = 0; leg < legCount; leg++) {
+                System.arraycopy(source, 0, words, leg * stride, stride);
+            }
+        } else {
+            System.arraycopy(source, 0, words, 0, Math.min(words.length, source.length));
+        }
+    }
+
+    /**
+     * Wraps per-row bitmaps laid out as by {@link #getRowWords(int)} without copying them, so every book
+     * and release writes straight through, e.g. to a memory-mapped file. Bits past the last seat are cleared.
+     */
+    public static SeatInventory wrap(int[] seatCounts, int legCount, LongBuffer[] rows) {
+        return new SeatInventory(seatCounts, legCount, rows.clone());
+    }
+
+    // Clears bits past the last seat and returns the seats taken on at least one leg
+    private static long[] occupiedOnAnyLeg(LongBuffer words, int seatCount, int legCount) {
+        int stride = wordCount(seatCount);
+        long lastWordMask = seatCount % Long.SIZE != 0 ? (1L << (seatCount % Long.SIZE)) - 1 : -1L;
+        long[] occupied = new long[stride];
+        for (int leg = 0; leg < legCount; leg++) {
+            int last = leg * stride + stride - 1;
+            if (stride > 0 && (words.get(last) & ~lastWordMask) != 0) {
+                words.put(last, words.get(last) & lastWordMask);
+            }
+            for (int word = 0; word < stride; word++) {
+                occupied[word] |= words.get(leg * stride + word);
+            }
+        }
+        return occupied;
+    }
+
+    /**
+     * Copy of the row's bitmaps: one block of {@code ceil(seats / 64)} words per leg, leg 0 first.
+     */
+    public long[] getRowWords(int row) {
+        rowLocks[row].lock();
+        try {
+            long[] words = new long[legWords[row].limit()];
+            legWords[row].get(0, words);
+            return words;
+        } finally {
+            rowLocks[row].unlock();
+        }
+    }
+
+    /**
+     * Copies the booked seats' bitmaps, without holds, and returns a supplier that builds an inventory from the
+     * copy, so that a snapshot can be taken quickly under a lock and built and written out after it.
+     */
+    public Supplier<SeatInventory> snapshot() {
+        long[][] rows = new long[seatCounts.length][];
+        for (int row = 0; row < seatCounts.length; row++) {
+            rows[row] = getRowWords(row);
+        }
+        int[] counts = seatCounts.clone();
+        return () -> new SeatInventory(counts, legCount, rows);
+    }
+
+    public List<List<Integer>> toLists() {
+        List<List<Integer>> seats = new ArrayList<>(seatCounts.length);
+        for (int row = 0; row < seatCounts.length; row++) {
+            List<Integer> rowSeats = new ArrayList<>(seatCounts[row]);
+            rowLocks[row].lock();
+            try {
+                for (int seat = 0; seat < seatCounts[row]; seat++) {
+                    rowSeats.add(isBooked(row, seat) ? 1 : 0);
+                }
+            } finally {
+                rowLocks[row].unlock();
+            }
+            seats.add(rowSeats);
+        }
+        return seats;
+    }
+
+    /**
+     * Per-seat bitmask of occupied legs, or null when every occupied seat is taken for the whole run
+     * and the 0/1 matrix alone describes the inventory.
+     */
+    public List<List<Long>> toLegMasks() {
+        boolean partial = false;
+        long allLegs = allLegsMask();
+        List<List<Long>> masks = new ArrayList<>(seatCounts.length);
+        for (int row = 0; row < seatCounts.length; row++) {
+            List<Long> rowMasks = new ArrayList<>(seatCounts[row]);
+            rowLocks[row].lock();
+            try {
+                for (int seat = 0; seat < seatCounts[row]; seat++) {
+                    long mask = occupiedLegs(row, seat);
+                    partial |= mask != 0 && mask != allLegs;
+                    rowMasks.add(mask);
+                }
+            } finally {
+                rowLocks[row].unlock();
+            }
+            masks.add(rowMasks);
+        }
+        return partial ? masks : null;
+    }
+
+    public int getRowCount() {
+        return seatCounts.length;
+    }
+
+    public int getSeatCount(int row) {
+        return seatCounts[row];
+    }
+
+    public int getLegCount() {
+        return legCount;
+    }
+
+    public boolean isValidSeat(int row, int seat) {
+        return row >= 0 && row < seatCounts.length && seat >= 0 && seat < seatCounts[row];
+    }
+
+    public boolean isValidLegs(int fromLeg, int toLeg) {
+        return fromLeg >= 0 && fromLeg < toLeg && toLeg <= legCount;
+    }
+
+    /**
+     * Unsynchronized read for display: true if the seat is occupied on any leg.
+     */
+    public boolean isBooked(int row, int seat) {
+        return occupiedLegs(row, seat) != 0;
+    }
+
+    /**
+     * Unsynchronized read for display: true if the seat is free on every leg of the journey.
+     */
+    public boolean isAvailable(int row, int seat, int fromLeg, int toLeg) {
+        int stride = wordCount(seatCounts[row]);
+        long mask = 1L << seat;
+        LongBuffer words = legWords[row];
+        long[] held = heldWords[row];
+        for (int leg = fromLeg; leg < toLeg; leg++) {
+            int index = leg * stride + (seat >>> 6);
+            if (((words.get(index) | (held != null ? held[index] : 0)) & mask) != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Unsynchronized read for display: true if the seat is held on every leg of the journey.
+     */
+    public boolean isHeld(int row, int seat, int fromLeg, int toLeg) {
+        long[] held = heldWords[row];
+        if (held == null) return false;
+
+        int stride = wordCount(seatCounts[row]);
+        long mask = 1L << seat;
+        for (int leg = fromLeg; leg < toLeg; leg++) {
+            if ((held[leg * stride + (seat >>> 6)] & mask) == 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Marks the seat booked for the whole run; returns false if it is occupied on any leg.
+     */
+    public boolean book(int row, int seat) {
+        return book(row, seat, 0, legCount);
+    }
+
+    /**
+     * Marks the seat booked on legs {@code [fromLeg, toLeg)}; returns false if any of them is taken.
+     */
+    public boolean book(int row, int seat, int fromLeg, int toLeg) {
+        int stride = wordCount(seatCounts[row]);
+        int word = seat >>> 6;
+        long mask = 1L << seat;
+        rowLocks[row].lock();
+        try {
+            if (!isAvailable(row, seat, fromLeg, toLeg)) return false;
+
+            long taken = takenLegs(row, seat);
+            LongBuffer words = legWords[row];
+            for (int leg = fromLeg; leg < toLeg; leg++) {
+                int index = leg * stride + word;
+                words.put(index, words.get(index) | mask);
+            }
+            seatTaken(row, seat, taken, fromLeg, toLeg);
+            return true;
+        } finally {
+            rowLocks[row].unlock();
+        }
+    }
+
+    /**
+     * Frees the seat for the whole run; returns false if it was not booked on every leg.
+     */
+    public boolean release(int row, int seat) {
+        return release(row, seat, 0, legCount);
+    }
+
+    /**
+     * Frees the seat on legs {@code [fromLeg, toLeg)}; returns false unless all of them were booked.
+     */
+    public boolean release(int row, int seat, int fromLeg, int toLeg) {
+        int stride = wordCount(seatCounts[row]);
+        int word = seat >>> 6;
+        long mask = 1L << seat;
+        rowLocks[row].lock();
+        try {
+            LongBuffer words = legWords[row];
+            for (int leg = fromLeg; leg < toLeg; leg++) {
+                if ((words.get(leg * stride + word) & mask) == 0) return false;
+            }
+
+            for (int leg = fromLeg; leg < toLeg; leg++) {
+                int index = leg * stride + word;
+                words.put(index, words.get(index) & ~mask);
+            }
+            seatFreed(row, seat, takenLegs(row, seat), fromLeg, toLeg);
+            return true;
+        } finally {
+            rowLocks[row].unlock();
+        }
+    }
+
+    /**
+     * Holds the seat on legs {@code [fromLeg, toLeg)} for a booking still being completed, so nobody else
+     * can book or hold it there; returns false if any of them is taken. See {@link #confirmHold}.
+     */
+    public boolean hold(int row, int seat, int fromLeg, int toLeg) {
+        int stride = wordCount(seatCounts[row]);
+        int word = seat >>> 6;
+        long mask = 1L << seat;
+        rowLocks[row].lock();
+        try {
+            if (!isAvailable(row, seat, fromLeg, toLeg)) return false;
+
+            long taken = takenLegs(row, seat);
+            if (heldWords[row] == null) {
+                heldWords[row] = new long[stride * legCount];
+            }
+            for (int leg = fromLeg; leg < toLeg; leg++) {
+                heldWords[row][leg * stride + word] |= mask;
+            }
+            seatTaken(row, seat, taken, fromLeg, toLeg);
+            return true;
+        } finally {
+            rowLocks[row].unlock();
+        }
+    }
+
+    /**
+     * Drops a hold on legs {@code [fromLeg, toLeg)}; returns false unless the seat was held on all of them.
+     */
+    public boolean releaseHold(int row, int seat, int fromLeg, int toLeg) {
+        rowLocks[row].lock();
+        try {
+            if (!isHeld(row, seat, fromLeg, toLeg)) return false;
+
+            clearHeld(row, seat, fromLeg, toLeg);
+            seatFreed(row, seat, takenLegs(row, seat), fromLeg, toLeg);
+            return true;
+        } finally {
+            rowLocks[row].unlock();
+        }
+    }
+
+    /**
+     * Turns a hold on legs {@code [fromLeg, toLeg)} into a booking of the same legs; returns false unless
+     * the seat was held on all of them. Availability does not change, as the seat was already taken.
+     */
+    public boolean confirmHold(int row, int seat, int fromLeg, int toLeg) {
+        int stride = wordCount(seatCounts[row]);
+        long mask = 1L << seat;
+        rowLocks[row].lock();
+        try {
+            if (!isHeld(row, seat, fromLeg, toLeg)) return false;
+
+            clearHeld(row, seat, fromLeg, toLeg);
+            LongBuffer words = legWords[row];
+            for (int leg = fromLeg; leg < toLeg; leg++) {
+                int index = leg * stride + (seat >>> 6);
+                words.put(index, words.get(index) | mask);
+            }
+            return true;
+        } finally {
+            rowLocks[row].unlock();
+        }
+    }
+
+    // Caller holds the row lock
+    private void clearHeld(int row, int seat, int fromLeg, int toLeg) {
+        int stride = wordCount(seatCounts[row]);
+        for (int leg = fromLeg; leg < toLeg; leg++) {
+            heldWords[row][leg * stride + (seat >>> 6)] &= ~(1L << seat);
+        }
+    }
+
+    // Counters for legs [fromLeg, toLeg) of a seat becoming booked or held, given what was taken before
+    private void seatTaken(int row, int seat, long takenBefore, int fromLeg, int toLeg) {
+        adjustJourneyFreeSeats(takenBefore, fromLeg, toLeg, -1);
+        if (takenBefore == 0) {
+            freeSeats.decrementAndGet(row);
+            freeRuns[row].set(seat, false);
+        }
+    }
+
+    // Counters for legs [fromLeg, toLeg) of a seat becoming free, given what is still taken
+    private void seatFreed(int row, int seat, long takenAfter, int fromLeg, int toLeg) {
+        adjustJourneyFreeSeats(takenAfter, fromLeg, toLeg, 1);
+        if (takenAfter == 0) {
+            freeSeats.incrementAndGet(row);
+            freeRuns[row].set(seat, true);
+        }
+    }
+
+    /**
+     * Books every seat on legs {@code [fromLeg, toLeg)}, or none of them if any is taken.
+     */
+    public boolean bookAll(List<SeatPosition> seats, int fromLeg, int toLeg) {
+        List<ReentrantLock> locks = lockRows(seats);
+        try {
+            for (SeatPosition position : seats) {
+                if (!isValidSeat(position.row(), position.seat())
+                        || !isAvailable(position.row(), position.seat(), fromLeg, toLeg)) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < seats.size(); i++) {
+                SeatPosition position = seats.get(i);
+                if (!book(position.row(), position.seat(), fromLeg, toLeg)) {
+                    // The same seat was listed twice; undo what this call booked
+                    releaseAll(seats.subList(0, i), fromLeg, toLeg);
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            locks.forEach(ReentrantLock::unlock);
+        }
+    }
+
+    /**
+     * Frees every seat on legs {@code [fromLeg, toLeg)} that is booked there.
+     */
+    public void releaseAll(List<SeatPosition> seats, int fromLeg, int toLeg) {
+        List<ReentrantLock> locks = lockRows(seats);
+        try {
+            for (SeatPosition position : seats) {
+                if (isValidSeat(position.row(), position.seat())) {
+                    release(position.row(), position.seat(), fromLeg, toLeg);
+                }
+            }
+        } finally {
+            locks.forEach(ReentrantLock::unlock);
+        }
+    }
+
+    /**
+     * Holds every seat on legs {@code [fromLeg, toLeg)}, or none of them if any is taken.
+     */
+    public boolean holdAll(List<SeatPosition> seats, int fromLeg, int toLeg) {
+        List<ReentrantLock> locks = lockRows(seats);
+        try {
+            for (int i = 0; i < seats.size(); i++) {
+                SeatPosition position = seats.get(i);
+                if (!isValidSeat(position.row(), position.seat())
+                        || !hold(position.row(), position.seat(), fromLeg, toLeg)) {
+                    releaseHolds(seats.subList(0, i), fromLeg, toLeg);
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            locks.forEach(ReentrantLock::unlock);
+        }
+    }
+
+    /**
+     * Drops the holds on legs {@code [fromLeg, toLeg)} of every seat held there.
+     */
+    public void releaseHolds(List<SeatPosition> seats, int fromLeg, int toLeg) {
+        List<ReentrantLock> locks = lockRows(seats);
+        try {
+            for (SeatPosition position : seats) {
+                if (isValidSeat(position.row(), position.seat())) {
+                    releaseHold(position.row(), position.seat(), fromLeg, toLeg);
+                }
+            }
+        } finally {
+            locks.forEach(ReentrantLock::unlock);
+        }
+    }
+
+    /**
+     * Confirms the holds on legs {@code [fromLeg, toLeg)} of every seat, or none of them if any seat is not
+     * held there.
+     */
+    public boolean confirmHolds(List<SeatPosition> seats, int fromLeg, int toLeg) {
+        List<ReentrantLock> locks = lockRows(seats);
+        try {
+            for (SeatPosition position : seats) {
+                if (!isValidSeat(position.row(), position.seat())
+                        || !isHeld(position.row(), position.seat(), fromLeg, toLeg)) {
+                    return false;
+                }
+            }
+            seats.forEach(position -> confirmHold(position.row(), position.seat(), fromLeg, toLeg));
+            return true;
+        } finally {
+            locks.forEach(ReentrantLock::unlock);
+        }
+    }
+
+    // Always in ascending row order, so concurrent group bookings cannot deadlock
+    private List<ReentrantLock> lockRows(List<SeatPosition> seats) {
+        TreeSet<Integer> rows = new TreeSet<>();
+        for (SeatPosition position : seats) {
+            if (position.row() >= 0 && position.row() < seatCounts.length) {
+                rows.add(position.row());
+            }
+        }
+        List<ReentrantLock> locks = new ArrayList<>(rows.size());
+        for (int row : rows) {
+            rowLocks[row].lock();
+            locks.add(rowLocks[row]);
+        }
+        return locks;
+    }
+
+    /**
+     * Proposes {@code count} seats for a group travelling on legs {@code [fromLeg, toLeg)}, preferring
+     * adjacent seats in one row, or returns an empty list if the train cannot seat them all.
+     * The proposal is not reserved; pass it to {@link #bookAll} and retry if that fails.
+     * <p>
+     * Seats free for the whole run are placed best-fit using the per-row run trees: the row whose longest
+     * run is the smallest one that still fits the group. Failing that, runs free only for this journey are
+     * searched word by word, and as a last resort the group is spread over the rows with the most seats.
+     */
+    public List<SeatPosition> findSeats(int count, int fromLeg, int toLeg) {
+        if (count <= 0 || !isValidLegs(fromLeg, toLeg)) return List.of();
+
+        int bestRow = -1;
+        for (int row = 0; row < seatCounts.length; row++) {
+            int longest = freeRuns[row].longestRun();
+            if (longest >= count && (bestRow == -1 || longest < freeRuns[bestRow].longestRun())) {
+                bestRow = row;
+            }
+        }
+        if (bestRow != -1) {
+            int start = freeRuns[bestRow].findRun(count);
+            if (start != -1) {
+                return adjacentSeats(bestRow, start, count);
+            }
+        }
+
+        List<long[]> available = new ArrayList<>(seatCounts.length);
+        for (int row = 0; row < seatCounts.length; row++) {
+            long[] seats = availableSeats(row, fromLeg, toLeg);
+            int start = findRun(seats, seatCounts[row], count);
+            if (start != -1) {
+                return adjacentSeats(row, start, count);
+            }
+            available.add(seats);
+        }
+
+        List<Integer> rowsByFreeSeats = new ArrayList<>();
+        for (int row = 0; row < seatCounts.length; row++) {
+            rowsByFreeSeats.add(row);
+        }
+        rowsByFreeSeats.sort(Comparator.comparingInt((Integer row) -> bitCount(available.get(row))).reversed());
+
+        List<SeatPosition> seats = new ArrayList<>(count);
+        for (int row : rowsByFreeSeats) {
+            long[] words = available.get(row);
+            for (int word = 0; word < words.length && seats.size() < count; word++) {
+                long bits = words[word];
+                while (bits != 0 && seats.size() < count) {
+                    seats.add(new SeatPosition(row, word * Long.SIZE + Long.numberOfTrailingZeros(bits)));
+                    bits &= bits - 1;
+                }
+            }
+            if (seats.size() == count) return seats;
+        }
+        return List.of();
+    }
+
+    /**
+     * Longest run of adjacent seats in the row that are free on every leg.
+     */
+    public int getLongestFreeRun(int row) {
+        return freeRuns[row].longestRun();
+    }
+
+    private static List<SeatPosition> adjacentSeats(int row, int start, int count) {
+        List<SeatPosition> seats = new ArrayList<>(count);
+        for (int seat = start; seat < start + count; seat++) {
+            seats.add(new SeatPosition(row, seat));
+        }
+        return seats;
+    }
+
+    // Start of the first run of at least length set bits, or -1
+    private static int findRun(long[] words, int seatCount, int length) {
+        int runStart = 0;
+        int runLength = 0;
+        for (int seat = 0; seat < seatCount; seat++) {
+            long word = words[seat >>> 6];
+            if (word == 0) {
+                // Whole word taken: skip to the next word boundary
+                runLength = 0;
+                seat |= Long.SIZE - 1;
+                continue;
+            }
+            if ((word & (1L << seat)) != 0) {
+                if (runLength++ == 0) runStart = seat;
+                if (runLength == length) return runStart;
+            } else {
+                runLength = 0;
+            }
+        }
+        return -1;
+    }
+
+    private static int bitCount(long[] words) {
+        int total = 0;
+        for (long word : words) {
+            total += Long.bitCount(word);
+        }
+        return total;
+    }
+
+    /**
+     * Bitmap of the seats in {@code row} that are free on every leg of the journey.
+     */
+    public long[] availableSeats(int row, int fromLeg, int toLeg) {
+        int stride = wordCount(seatCounts[row]);
+        long[] available = new long[stride];
+        LongBuffer words = legWords[row];
+        long[] held = heldWords[row];
+        for (int leg = fromLeg; leg < toLeg; leg++) {
+            for (int word = 0; word < stride; word++) {
+                available[word] |= words.get(leg * stride + word) | (held != null ? held[leg * stride + word] : 0);
+            }
+        }
+        for (int word = 0; word < stride; word++) {
+            available[word] = ~available[word];
+        }
+        if (seatCounts[row] % Long.SIZE != 0) {
+            available[stride - 1] &= (1L << (seatCounts[row] % Long.SIZE)) - 1;
+        }
+        return available;
+    }
+
+    /**
+     * Number of seats free on every leg of the journey across all rows, read from the journey's counter.
+     */
+    public int countAvailable(int fromLeg, int toLeg) {
+        return isValidLegs(fromLeg, toLeg) ? journeyFreeSeats.get(intervalIndex(fromLeg, toLeg)) : 0;
+    }
+
+    /**
+     * Seats in the row that are free on every leg.
+     */
+    public int getFreeSeats(int row) {
+        return freeSeats.get(row);
+    }
+
+    public int getTotalFreeSeats() {
+        return journeyFreeSeats.get(intervalIndex(0, legCount));
+    }
+
+    // Booking or releasing legs [fromLeg, toLeg) of a seat changes exactly the journeys that overlap them and
+    // lie within the run of legs free in otherLegs, the seat's occupancy without them (before a booking, after
+    // a release)
+    private void adjustJourneyFreeSeats(long otherLegs, int fromLeg, int toLeg, int delta) {
+        int runStart = fromLeg;
+        while (runStart > 0 && (otherLegs & 1L << (runStart - 1)) == 0) {
+            runStart--;
+        }
+        int runEnd = toLeg;
+        while (runEnd < legCount && (otherLegs & 1L << runEnd) == 0) {
+            runEnd++;
+        }
+        for (int from = runStart; from < toLeg; from++) {
+            for (int to = Math.max(from, fromLeg) + 1; to <= runEnd; to++) {
+                journeyFreeSeats.addAndGet(intervalIndex(from, to), delta);
+            }
+        }
+    }
+
+    // Journeys starting at leg 0 first, then leg 1, ...; each block ordered by end leg
+    private int intervalIndex(int fromLeg, int toLeg) {
+        return fromLeg * legCount - fromLeg * (fromLeg - 1) / 2 + (toLeg - fromLeg - 1);
+    }
+
+    private long occupiedLegs(int row, int seat) {
+        int stride = wordCount(seatCounts[row]);
+        long mask = 1L << seat;
+        LongBuffer words = legWords[row];
+        long legs = 0;
+        for (int leg = 0; leg < legCount; leg++) {
+            if ((words.get(leg * stride + (seat >>> 6)) & mask) != 0) {
+                legs |= 1L << leg;
+            }
+        }
+        return legs;
+    }
+
+    // Legs on which the seat is booked or held
+    private long takenLegs(int row, int seat) {
+        long legs = occupiedLegs(row, seat);
+        long[] held = heldWords[row];
+        if (held == null) return legs;
+
+        int stride = wordCount(seatCounts[row]);
+        long mask = 1L << seat;
+        for (int leg = 0; leg < legCount; leg++) {
+            if ((held[leg * stride + (seat >>> 6)] & mask) != 0) {
+                legs |= 1L << leg;
+            }
+        }
+        return legs;
+    }
+
+    private long allLegsMask() {
+        return legCount == Long.SIZE ? -1L : (1L << legCount) - 1;
+    }
+
+    private static int wordCount(int seats) {
+        return (seats + Long.SIZE - 1) / Long.SIZE;
+    }
+}
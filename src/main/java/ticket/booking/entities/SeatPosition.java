@@ -0,0 +1,6 @@
+package ticket.booking.entities;
+
+/**
+ * A seat in a train's seat map, addressed by row (coach) and seat number.
+ */
+public record SeatPosition(int row, int seat) {}
@@ -1,10 +1,20 @@
 package ticket.booking.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
 
+/**
+ * A booked seat. The train is referenced by {@code trainId} and resolved from the catalog when needed
+ * (see {@code TrainService.resolveTrain}); only the departure and arrival times are copied in.
+ * Older files embedded the whole {@link Train} under "train"; it is still accepted on read and
+ * converted to the reference, but never written back.
+ */
 @JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
 public class Ticket {
     private String ticketId;
@@ -12,20 +22,29 @@ public class Ticket {
     private String source;
     private String destination;
     private String dateOfTravel;
-    private Train train;
+    private String trainId;
+    private Integer row;
+    private Integer seat;
+    private String departureTime;
+    private String arrivalTime;
 
     // Default constructor
     public Ticket() {}
 
     // Full constructor
     public Ticket(String ticketId, String userId, String source, String destination,
-                  String dateOfTravel, Train train) {
+                  String dateOfTravel, String trainId, Integer row, Integer seat,
+                  String departureTime, String arrivalTime) {
         this.ticketId = ticketId;
         this.userId = userId;
         this.source = source;
         this.destination = destination;
         this.dateOfTravel = dateOfTravel;
-        this.train = train;
+        this.trainId = trainId;
+        this.row = row;
+        this.seat = seat;
+        this.departureTime = departureTime;
+        this.arrivalTime = arrivalTime;
     }
 
     // Builder pattern implementation
@@ -39,7 +58,11 @@ public class Ticket {
         private String source;
         private String destination;
         private String dateOfTravel;
-        private Train train;
+        private String trainId;
+        private Integer row;
+        private Integer seat;
+        private String departureTime;
+        private String arrivalTime;
 
         public TicketBuilder ticketId(String ticketId) {
             this.ticketId = ticketId;
@@ -66,13 +89,34 @@ public class Ticket {
             return this;
         }
 
-        public TicketBuilder train(Train train) {
-            this.train = train;
+        public TicketBuilder trainId(String trainId) {
+            this.trainId = trainId;
+            return this;
+        }
+
+        public TicketBuilder row(Integer row) {
+            this.row = row;
+            return this;
+        }
+
+        public TicketBuilder seat(Integer seat) {
+            this.seat = seat;
+            return this;
+        }
+
+        public TicketBuilder departureTime(String departureTime) {
+            this.departureTime = departureTime;
+            return this;
+        }
+
+        public TicketBuilder arrivalTime(String arrivalTime) {
+            this.arrivalTime = arrivalTime;
             return this;
         }
 
         public Ticket build() {
-            return new Ticket(ticketId, userId, source, destination, dateOfTravel, train);
+            return new Ticket(ticketId, userId, source, destination, dateOfTravel, trainId, row, seat,
+                    departureTime, arrivalTime);
         }
     }
 
@@ -92,11 +136,40 @@ public class Ticket {
     public String getDateOfTravel() { return dateOfTravel; }
     public void setDateOfTravel(String dateOfTravel) { this.dateOfTravel = dateOfTravel; }
 
-    public Train getTrain() { return train; }
-    public void setTrain(Train train) { this.train = train; }
+    public String getTrainId() { return trainId; }
+    public void setTrainId(String trainId) { this.trainId = trainId; }
+
+    public Integer getRow() { return row; }
+    public void setRow(Integer row) { this.row = row; }
+
+    public Integer getSeat() { return seat; }
+    public void setSeat(Integer seat) { this.seat = seat; }
+
+    public String getDepartureTime() { return departureTime; }
+    public void setDepartureTime(String departureTime) { this.departureTime = departureTime; }
+
+    public String getArrivalTime() { return arrivalTime; }
+    public void setArrivalTime(String arrivalTime) { this.arrivalTime = arrivalTime; }
+
+    /**
+     * Accepts the legacy embedded train and keeps only its ID and the times of this journey.
+     */
+    @JsonProperty(value = "train", access = JsonProperty.Access.WRITE_ONLY)
+    public void setTrain(Train train) {
+        if (train == null) return;
+        if (trainId == null) trainId = train.getTrainId();
+        if (departureTime == null) departureTime = train.timeAt(source);
+        if (arrivalTime == null) arrivalTime = train.timeAt(destination);
+    }
+
+    @JsonIgnore
+    public boolean hasSeat() {
+        return trainId != null && row != null && seat != null;
+    }
 
     public String getTicketInfo() {
-        return String.format("Ticket ID: %s belongs to User %s from %s to %s on %s",
+        String info = String.format("Ticket ID: %s belongs to User %s from %s to %s on %s",
                 ticketId, userId, source, destination, dateOfTravel);
+        return hasSeat() ? info + String.format(" (Train %s, Row %d, Seat %d)", trainId, row, seat) : info;
     }
 }
\ No newline at end of file
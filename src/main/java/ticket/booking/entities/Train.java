@@ -1,18 +1,30 @@
 package ticket.booking.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+@JsonPropertyOrder({"train_id", "train_no", "seats", "seat_legs", "station_times", "stations"})
 public class Train {
     private String trainId;
     private String trainNo;
+    // The JSON "seats" matrix (and "seat_legs" masks) as read, until the bitmaps are built on first use.
+    // Building is deferred because the leg count depends on "stations", which may be read afterwards.
     private List<List<Integer>> seats;
+    private List<List<Long>> seatLegs;
+    // Builds the seat map on first use when the train was loaded from a binary snapshot
+    private Supplier<SeatInventory> seatInventoryLoader;
+    private volatile SeatInventory seatInventory;
     private Map<String, String> stationTimes;
     private List<String> stations;
 
@@ -78,14 +90,152 @@ public class Train {
     public String getTrainNo() { return trainNo; }
     public void setTrainNo(String trainNo) { this.trainNo = trainNo; }
 
-    public List<List<Integer>> getSeats() { return seats; }
-    public void setSeats(List<List<Integer>> seats) { this.seats = seats; }
+    public List<List<Integer>> getSeats() {
+        SeatInventory inventory = getSeatInventory();
+        return inventory != null ? inventory.toLists() : null;
+    }
+
+    public synchronized void setSeats(List<List<Integer>> seats) {
+        this.seats = seats;
+        this.seatLegs = null;
+        this.seatInventoryLoader = null;
+        this.seatInventory = null;
+    }
+
+    // Only written when some seat is sold for part of the run
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public List<List<Long>> getSeatLegs() {
+        SeatInventory inventory = getSeatInventory();
+        return inventory != null ? inventory.toLegMasks() : null;
+    }
+
+    public synchronized void setSeatLegs(List<List<Long>> seatLegs) {
+        // The masks go with the "seats" matrix; only an inventory that already exists is turned back into one,
+        // since building it from the matrix here would be thrown away straight after
+        SeatInventory inventory = seatInventoryLoader != null ? seatInventoryLoader.get() : seatInventory;
+        if (inventory != null) {
+            seats = inventory.toLists();
+            seatInventory = null;
+            seatInventoryLoader = null;
+        }
+        this.seatLegs = seatLegs;
+    }
+
+    @JsonIgnore
+    public SeatInventory getSeatInventory() {
+        SeatInventory inventory = seatInventory;
+        if (inventory != null || (seats == null && seatInventoryLoader == null)) return inventory;
+
+        synchronized (this) {
+            if (seatInventory == null && seatInventoryLoader != null) {
+                seatInventory = seatInventoryLoader.get();
+                seatInventoryLoader = null;
+            } else if (seatInventory == null && seats != null) {
+                seatInventory = SeatInventory.fromLists(seats, seatLegs, SeatInventory.legCountFor(stationCount()));
+                seats = null;
+                seatLegs = null;
+            }
+            return seatInventory;
+        }
+    }
+
+    public synchronized void setSeatInventory(SeatInventory seatInventory) {
+        this.seatInventory = seatInventory;
+        this.seatInventoryLoader = null;
+        this.seats = null;
+        this.seatLegs = null;
+    }
+
+    /**
+     * Defers building the seat map to {@code loader} until it is first needed.
+     */
+    public synchronized void deferSeatInventory(Supplier<SeatInventory> loader) {
+        this.seatInventory = null;
+        this.seatInventoryLoader = loader;
+        this.seats = null;
+        this.seatLegs = null;
+    }
+
+    /**
+     * Copy to write a snapshot from while the original keeps changing. The route and times are shared, as
+     * they are only ever replaced, not changed in place; the seat bitmaps are copied now and the copy's
+     * inventory is built from them on first use.
+     */
+    public synchronized Train snapshotCopy() {
+        Train copy = new Train(trainId, trainNo, seats, stationTimes, stations);
+        copy.seatLegs = seatLegs;
+        copy.seatInventoryLoader = seatInventory != null ? seatInventory.snapshot() : seatInventoryLoader;
+        return copy;
+    }
 
     public Map<String, String> getStationTimes() { return stationTimes; }
     public void setStationTimes(Map<String, String> stationTimes) { this.stationTimes = stationTimes; }
 
     public List<String> getStations() { return stations; }
-    public void setStations(List<String> stations) { this.stations = stations; }
+
+    public synchronized void setStations(List<String> stations) {
+        SeatInventory inventory = seatInventoryLoader != null ? getSeatInventory() : seatInventory;
+        this.stations = stations;
+        if (inventory != null && inventory.getLegCount() != SeatInventory.legCountFor(stationCount())) {
+            // The route changed shape; keep who is seated but re-derive the legs on next use
+            seats = inventory.toLists();
+            seatLegs = null;
+            seatInventory = null;
+        }
+    }
+
+    /**
+     * Scheduled time at {@code station} (case-insensitive), or null.
+     */
+    public String timeAt(String station) {
+        if (stationTimes == null || station == null) return null;
+
+        String target = station.trim();
+        // A loop rather than a stream, whose findFirst would throw on a station listed with a null time
+        for (Map.Entry<String, String> entry : stationTimes.entrySet()) {
+            if (target.equalsIgnoreCase(entry.getKey())) return entry.getValue();
+        }
+        return null;
+    }
+
+    /**
+     * Stop position of {@code station} on this train (case-insensitive), or -1.
+     */
+    public int indexOfStation(String station) {
+        if (stations == null || station == null) return -1;
+
+        String target = station.trim();
+        for (int i = 0; i < stations.size(); i++) {
+            if (target.equalsIgnoreCase(stations.get(i))) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Legs of the seat inventory covered by a journey from {@code source} to {@code destination},
+     * or empty if the train does not run between them in that order.
+     */
+    public Optional<LegRange> legRange(String source, String destination) {
+        int sourceIndex = indexOfStation(source);
+        int destinationIndex = indexOfStation(destination);
+        if (sourceIndex == -1 || destinationIndex == -1 || sourceIndex >= destinationIndex) {
+            return Optional.empty();
+        }
+
+        if (SeatInventory.legCountFor(stationCount()) != stationCount() - 1) {
+            // Too many stops to track per leg; the inventory has a single whole-run leg
+            return Optional.of(fullRun());
+        }
+        return Optional.of(new LegRange(sourceIndex, destinationIndex));
+    }
+
+    public LegRange fullRun() {
+        return new LegRange(0, SeatInventory.legCountFor(stationCount()));
+    }
+
+    private int stationCount() {
+        return stations != null ? stations.size() : 0;
+    }
 
     public String getTrainInfo() {
         return String.format("Train ID: %s Train No: %s", trainId, trainNo);
@@ -0,0 +1,25 @@
+package ticket.booking.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic count of events. Increments go to striped cells, so threads bumping the same counter on the
+ * hot path do not contend on one cache line; reads sum the cells.
+ */
+public class Counter {
+    private final LongAdder count = new LongAdder();
+
+    Counter() {}
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long amount) {
+        count.add(amount);
+    }
+
+    public long get() {
+        return count.sum();
+    }
+}
@@ -0,0 +1,108 @@
+package ticket.booking.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Process-wide registry of named counters and latency histograms. Instrumented classes look their metrics
+ * up once into static fields and then only touch striped adders on the hot path.
+ * <p>
+ * {@link #registerMBean()} publishes every metric as an attribute of {@code ticket.booking:type=Metrics}
+ * on the platform MBean server (JConsole, VisualVM, jcmd); {@code -Dbooking.metrics.dumpSeconds=N} also
+ * logs a text dump every N seconds.
+ */
+public class Metrics {
+    private static final Logger log = Logger.getLogger(Metrics.class.getName());
+    public static final String OBJECT_NAME = "ticket.booking:type=Metrics";
+
+    private static final Map<String, Counter> counters = new ConcurrentSkipListMap<>();
+    private static final Map<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+    private static ScheduledExecutorService dumper;
+
+    // Private constructor to prevent instantiation
+    private Metrics() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, ignored -> new Counter());
+    }
+
+    public static LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, ignored -> new LatencyHistogram());
+    }
+
+    static Map<String, Counter> counters() {
+        return counters;
+    }
+
+    static Map<String, LatencyHistogram> histograms() {
+        return histograms;
+    }
+
+    /**
+     * Registers the metrics MBean unless it already is, and starts the periodic dump if configured.
+     */
+    public static synchronized void registerMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new MetricsBean(), name);
+            }
+        } catch (JMException e) {
+            log.log(Level.WARNING, "Failed to register metrics MBean", e);
+        }
+
+        Integer dumpSeconds = Integer.getInteger("booking.metrics.dumpSeconds");
+        if (dumpSeconds != null && dumpSeconds > 0) {
+            startPeriodicDump(Duration.ofSeconds(dumpSeconds));
+        }
+    }
+
+    /**
+     * Logs {@link #dump()} every {@code interval} on a daemon thread, replacing any earlier schedule.
+     */
+    public static synchronized void startPeriodicDump(Duration interval) {
+        if (dumper != null) {
+            dumper.shutdownNow();
+        }
+        dumper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = interval.toMillis();
+        dumper.scheduleAtFixedRate(() -> log.info(dump()), millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * One line per metric; latencies in microseconds.
+     */
+    public static String dump() {
+        StringBuilder text = new StringBuilder("Metrics:");
+        counters.forEach((name, counter) -> text.append(String.format("%n  %-24s %d", name, counter.get())));
+        histograms.forEach((name, histogram) -> {
+            LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+            text.append(String.format("%n  %-24s count=%d mean=%.1fus p50=%.1fus p99=%.1fus p999=%.1fus max=%.1fus",
+                    name, snapshot.count(), micros(snapshot.meanNanos()), micros(snapshot.percentileNanos(0.5)),
+                    micros(snapshot.percentileNanos(0.99)), micros(snapshot.percentileNanos(0.999)),
+                    micros(snapshot.maxNanos())));
+        });
+        return text.toString();
+    }
+
+    static double micros(double nanos) {
+        return nanos / 1000.0;
+    }
+}
@@ -0,0 +1,94 @@
+package ticket.booking.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only view of {@link Metrics} as MBean attributes: each counter as {@code <name>}, each histogram as
+ * {@code <name>.count}, {@code .meanMicros}, {@code .p50Micros}, {@code .p99Micros}, {@code .p999Micros}
+ * and {@code .maxMicros}. The attribute list follows the registry, so metrics created later show up too.
+ */
+class MetricsBean implements DynamicMBean {
+    private static final String[] STATISTICS = {"count", "meanMicros", "p50Micros", "p99Micros", "p999Micros", "maxMicros"};
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Counter counter = Metrics.counters().get(attribute);
+        if (counter != null) return counter.get();
+
+        int dot = attribute.lastIndexOf('.');
+        LatencyHistogram histogram = dot > 0 ? Metrics.histograms().get(attribute.substring(0, dot)) : null;
+        if (histogram == null) {
+            throw new AttributeNotFoundException("No metric " + attribute);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        return switch (attribute.substring(dot + 1)) {
+            case "count" -> snapshot.count();
+            case "meanMicros" -> Metrics.micros(snapshot.meanNanos());
+            case "p50Micros" -> Metrics.micros(snapshot.percentileNanos(0.5));
+            case "p99Micros" -> Metrics.micros(snapshot.percentileNanos(0.99));
+            case "p999Micros" -> Metrics.micros(snapshot.percentileNanos(0.999));
+            case "maxMicros" -> Metrics.micros(snapshot.maxNanos());
+            default -> throw new AttributeNotFoundException("No metric " + attribute);
+        };
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList values = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                values.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException e) {
+                // Unknown names are left out, as the DynamicMBean contract allows
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        if ("dump".equals(actionName) && (params == null || params.length == 0)) {
+            return Metrics.dump();
+        }
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        Metrics.counters().keySet().forEach(name ->
+                attributes.add(new MBeanAttributeInfo(name, "long", "Count of " + name, true, false, false)));
+        Metrics.histograms().keySet().forEach(name -> {
+            for (String statistic : STATISTICS) {
+                String type = "count".equals(statistic) ? "long" : "double";
+                attributes.add(new MBeanAttributeInfo(name + "." + statistic, type, statistic + " of " + name,
+                        true, false, false));
+            }
+        });
+
+        MBeanOperationInfo dump = new MBeanOperationInfo("dump", "All metrics as text", null, "java.lang.String",
+                MBeanOperationInfo.INFO);
+        return new MBeanInfo(MetricsBean.class.getName(), "Booking service counters and latencies",
+                attributes.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[] {dump}, null);
+    }
+}
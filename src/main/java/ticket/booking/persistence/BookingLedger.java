@@ -0,0 +1,219 @@
+package ticket.booking.persistence;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import ticket.booking.entities.LegRange;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Which seat every live ticket holds, by ticket ID, so a cancellation can free the seat without reading the
+ * user's tickets or scanning trains. Kept in memory and persisted as a bookings.json snapshot plus a
+ * {@link Journal}, like the other stores.
+ * <p>
+ * A cancellation marks its entry before the ticket is taken from the user and removes it only once the seat
+ * is free, so the entries still marked at startup are the cancellations a crash interrupted.
+ */
+public class BookingLedger {
+    private static final Logger log = Logger.getLogger(BookingLedger.class.getName());
+
+    private final Path snapshotPath;
+    private final ObjectMapper objectMapper;
+    private final Journal journal;
+    private final Map<String, Entry> entries = new HashMap<>();
+    // Keeps two compactions from writing the snapshot at once
+    private final ReentrantLock compactionLock = new ReentrantLock();
+
+    /**
+     * The seat held by a ticket: {@code row} and {@code seat} of the train on legs {@code [fromLeg, toLeg)}.
+     * {@code cancelling} is set while the ticket is being cancelled.
+     */
+    @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+    public record Entry(String ticketId, String userId, String trainId, int row, int seat, int fromLeg, int toLeg,
+                        @JsonInclude(JsonInclude.Include.NON_DEFAULT) boolean cancelling) {
+        public Entry(String ticketId, String userId, String trainId, int row, int seat, LegRange legs) {
+            this(ticketId, userId, trainId, row, seat, legs.fromLeg(), legs.toLeg(), false);
+        }
+
+        @JsonIgnore
+        public LegRange legs() {
+            return new LegRange(fromLeg, toLeg);
+        }
+
+        private Entry withCancelling(boolean cancelling) {
+            return new Entry(ticketId, userId, trainId, row, seat, fromLeg, toLeg, cancelling);
+        }
+
+        // Same seat of the same train on at least one common leg
+        private boolean overlaps(Entry other) {
+            return trainId != null && trainId.equals(other.trainId) && row == other.row && seat == other.seat
+                    && fromLeg < other.toLeg && other.fromLeg < toLeg;
+        }
+    }
+
+    public BookingLedger(Path snapshotPath, ObjectMapper objectMapper) throws IOException {
+        this.snapshotPath = snapshotPath;
+        this.objectMapper = objectMapper;
+        this.journal = new Journal(Snapshots.journalPathFor(snapshotPath), objectMapper);
+        load();
+    }
+
+    private void load() throws IOException {
+        if (Files.exists(snapshotPath)) {
+            try {
+                for (Entry entry : objectMapper.readValue(snapshotPath.toFile(), new TypeReference<List<Entry>>() {})) {
+                    entries.put(entry.ticketId(), entry);
+                }
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Failed to read bookings file, starting with an empty ledger", e);
+                entries.clear();
+            }
+        }
+
+        for (JournalRecord record : journal.readAll()) {
+            switch (record.getType()) {
+                case BOOKING_ADDED -> {
+                    if (record.getTicketId() == null || record.getRow() == null || record.getSeat() == null
+                            || record.getLegRange() == null) continue;
+                    entries.put(record.getTicketId(), new Entry(record.getTicketId(), record.getUserId(),
+                            record.getTrainId(), record.getRow(), record.getSeat(), record.getLegRange()));
+                }
+                case BOOKING_CANCELLING -> entries.computeIfPresent(record.getTicketId(),
+                        (ticketId, entry) -> entry.withCancelling(true));
+                case BOOKING_REMOVED -> entries.remove(record.getTicketId());
+                default -> log.warning("Ignoring unexpected booking journal record " + record.getType());
+            }
+        }
+    }
+
+    public synchronized Optional<Entry> find(String ticketId) {
+        return Optional.ofNullable(ticketId).map(entries::get);
+    }
+
+    /**
+     * Records the seats held by newly issued tickets with a single journal write.
+     */
+    public void add(List<Entry> newEntries) throws IOException {
+        synchronized (this) {
+            journal.append(newEntries.stream().map(JournalRecord::bookingAdded).toList());
+            newEntries.forEach(entry -> entries.put(entry.ticketId(), entry));
+        }
+        journal.sync();
+    }
+
+    /**
+     * Marks the ticket's entry as being cancelled, before the ticket is taken from its user. Returns false if
+     * the ticket is not recorded, for instance because a concurrent cancellation already finished.
+     */
+    public boolean markCancelling(String ticketId) throws IOException {
+        synchronized (this) {
+            Entry entry = ticketId != null ? entries.get(ticketId) : null;
+            if (entry == null) return false;
+
+            if (!entry.cancelling()) {
+                journal.append(JournalRecord.bookingCancelling(ticketId));
+                entries.put(ticketId, entry.withCancelling(true));
+            }
+        }
+        journal.sync();
+        return true;
+    }
+
+    /**
+     * Clears the mark of a cancellation that never took the ticket from its user.
+     */
+    public void unmarkCancelling(String ticketId) throws IOException {
+        synchronized (this) {
+            Entry entry = ticketId != null ? entries.get(ticketId) : null;
+            if (entry == null || !entry.cancelling()) return;
+
+            Entry unmarked = entry.withCancelling(false);
+            journal.append(JournalRecord.bookingAdded(unmarked));
+            entries.put(ticketId, unmarked);
+        }
+        journal.sync();
+    }
+
+    /**
+     * Entries marked by cancellations that have not finished.
+     */
+    public synchronized List<Entry> cancelling() {
+        return entries.values().stream().filter(Entry::cancelling).toList();
+    }
+
+    /**
+     * Whether a ticket other than {@code entry}'s holds its seat on any of its legs.
+     */
+    public synchronized boolean isHeldByAnother(Entry entry) {
+        return entries.values().stream()
+                .anyMatch(other -> !other.ticketId().equals(entry.ticketId()) && other.overlaps(entry));
+    }
+
+    /**
+     * Forgets a cancelled ticket and returns the seat it held, if it was recorded.
+     */
+    public Optional<Entry> remove(String ticketId) throws IOException {
+        Entry removed;
+        synchronized (this) {
+            if (ticketId == null || !entries.containsKey(ticketId)) return Optional.empty();
+
+            journal.append(JournalRecord.bookingRemoved(ticketId));
+            removed = entries.remove(ticketId);
+        }
+        journal.sync();
+        return Optional.of(removed);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Completes once every change made so far is on disk as far as the journal's {@link Durability} promises.
+     */
+    public CompletableFuture<Void> commit() {
+        return journal.commit();
+    }
+
+    /**
+     * Number of changes journaled since the last snapshot.
+     */
+    public int pendingChanges() {
+        return journal.size();
+    }
+
+    /**
+     * Writes bookings.json and truncates the journal. Entries are copied under the monitor and written out
+     * after it is released; changes made meanwhile keep their journal records.
+     */
+    public void compact() throws IOException {
+        compactionLock.lock();
+        try {
+            List<Entry> snapshot;
+            Journal.Position position;
+            synchronized (this) {
+                position = journal.position();
+                snapshot = new ArrayList<>(entries.values());
+            }
+            Snapshots.writeAtomically(objectMapper, snapshotPath, snapshot);
+            journal.truncateBefore(position);
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+}
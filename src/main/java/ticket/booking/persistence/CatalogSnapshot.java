@@ -0,0 +1,369 @@
+package ticket.booking.persistence;
+
+import ticket.booking.entities.SeatInventory;
+import ticket.booking.entities.Train;
+import ticket.booking.util.TimeUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary form of the train catalog, read without going through Jackson.
+ * <p>
+ * Layout (big-endian): magic, version, a dictionary of every station name, then per train its ID and
+ * number, its stops as indexes into the dictionary, its station times and the seat bitmaps of its
+ * {@link SeatInventory}, stored once per row when every leg is alike. A CRC32 of everything before it closes
+ * the file, so a torn or corrupt snapshot is rejected instead of half-loaded.
+ * <p>
+ * Station times are stored entry by entry, so they read back exactly as written: as seconds since midnight
+ * when they are {@code HH:mm:ss}, offset by a day when they are {@code HH:mm}, and as text otherwise.
+ */
+public class CatalogSnapshot {
+    private static final int MAGIC = 0x54524E43; // "TRNC"
+    private static final int VERSION = 2;
+    private static final int ABSENT = -1;
+    // Station time codes besides seconds since midnight: TimeUtil.NO_TIME for a null time, seconds plus a day
+    // for a time written without seconds, and TIME_TEXT followed by the time for anything else
+    private static final int TIME_TEXT = -2;
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+    private static final int BUFFER_SIZE = 1 << 16;
+    // How a row's bitmaps are stored: not at all when no seat is taken, once when every leg is alike
+    private static final int ROW_EMPTY = 0;
+    private static final int ROW_SAME_ON_ALL_LEGS = 1;
+    private static final int ROW_PER_LEG = 2;
+
+    // Private constructor to prevent instantiation
+    private CatalogSnapshot() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Writes {@code trains} to a temporary sibling of {@code target} and renames it into place. Throws, leaving
+     * {@code target} as it was, if the catalog holds something the format cannot represent.
+     */
+    public static void write(Path target, List<Train> trains) throws IOException {
+        Map<String, Integer> stationIds = new LinkedHashMap<>();
+        for (Train train : trains) {
+            if (train == null) {
+                throw new IOException("Binary catalog " + target + " cannot represent a null train");
+            }
+            if (train.getStations() != null) {
+                train.getStations().stream()
+                        .filter(Objects::nonNull)
+                        .forEach(station -> stationIds.putIfAbsent(station, stationIds.size()));
+            }
+            if (train.getStationTimes() != null) {
+                train.getStationTimes().keySet().stream()
+                        .filter(Objects::nonNull)
+                        .forEach(station -> stationIds.putIfAbsent(station, stationIds.size()));
+            }
+        }
+
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        Path temp = Snapshots.tempPathFor(target);
+        try {
+            try (ChannelWriter out = new ChannelWriter(FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))) {
+                out.putInt(MAGIC);
+                out.putInt(VERSION);
+                out.putInt(stationIds.size());
+                for (String station : stationIds.keySet()) {
+                    out.putString(station);
+                }
+
+                out.putInt(trains.size());
+                for (Train train : trains) {
+                    out.putString(train.getTrainId());
+                    out.putString(train.getTrainNo());
+                    writeStops(out, train.getStations(), stationIds);
+                    writeStationTimes(out, train.getStationTimes(), stationIds);
+                    writeSeats(out, train.getSeatInventory());
+                }
+                out.finish();
+            }
+            Snapshots.moveIntoPlace(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writeStops(ChannelWriter out, List<String> stations, Map<String, Integer> stationIds)
+            throws IOException {
+        if (stations == null) {
+            out.putInt(ABSENT);
+            return;
+        }
+
+        out.putInt(stations.size());
+        for (String station : stations) {
+            out.putInt(station != null ? stationIds.get(station) : ABSENT);
+        }
+    }
+
+    private static void writeStationTimes(ChannelWriter out, Map<String, String> stationTimes,
+                                          Map<String, Integer> stationIds) throws IOException {
+        if (stationTimes == null) {
+            out.putInt(ABSENT);
+            return;
+        }
+
+        out.putInt(stationTimes.size());
+        for (Map.Entry<String, String> entry : stationTimes.entrySet()) {
+            out.putInt(entry.getKey() != null ? stationIds.get(entry.getKey()) : ABSENT);
+            String time = entry.getValue();
+            int code = timeCode(time);
+            out.putInt(code);
+            if (code == TIME_TEXT) {
+                out.putString(time);
+            }
+        }
+    }
+
+    // The code of a time that reads back as exactly the same text, or TIME_TEXT
+    private static int timeCode(String time) {
+        if (time == null) return TimeUtil.NO_TIME;
+
+        int secondOfDay = TimeUtil.toSecondOfDay(time);
+        String formatted = TimeUtil.fromSecondOfDay(secondOfDay);
+        if (formatted == null) return TIME_TEXT;
+        if (formatted.equals(time)) return secondOfDay;
+        return formatted.substring(0, 5).equals(time) ? SECONDS_PER_DAY + secondOfDay : TIME_TEXT;
+    }
+
+    private static String readTime(ByteBuffer in) {
+        int code = in.getInt();
+        if (code == TIME_TEXT) return getString(in);
+        if (code >= SECONDS_PER_DAY) return TimeUtil.fromSecondOfDay(code - SECONDS_PER_DAY).substring(0, 5);
+        return TimeUtil.fromSecondOfDay(code);
+    }
+
+    private static void writeSeats(ChannelWriter out, SeatInventory inventory) throws IOException {
+        if (inventory == null) {
+            out.putInt(ABSENT);
+            return;
+        }
+
+        out.putInt(inventory.getRowCount());
+        out.putInt(inventory.getLegCount());
+        for (int row = 0; row < inventory.getRowCount(); row++) {
+            out.putInt(inventory.getSeatCount(row));
+        }
+        for (int row = 0; row < inventory.getRowCount(); row++) {
+            long[] words = inventory.getRowWords(row);
+            int stride = wordCount(inventory.getSeatCount(row));
+            int layout = rowLayout(words, stride);
+            out.putInt(layout);
+            int stored = layout == ROW_EMPTY ? 0 : layout == ROW_SAME_ON_ALL_LEGS ? stride : words.length;
+            for (int word = 0; word < stored; word++) {
+                out.putLong(words[word]);
+            }
+        }
+    }
+
+    private static int rowLayout(long[] words, int stride) {
+        boolean empty = true;
+        boolean sameOnAllLegs = true;
+        for (int word = 0; word < words.length; word++) {
+            empty &= words[word] == 0;
+            sameOnAllLegs &= words[word] == words[word % stride];
+        }
+        return empty ? ROW_EMPTY : sameOnAllLegs ? ROW_SAME_ON_ALL_LEGS : ROW_PER_LEG;
+    }
+
+    private static int wordCount(int seats) {
+        return (seats + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    /**
+     * Reads a catalog written by {@link #write}. Throws if the file is truncated, corrupt or of another version.
+     */
+    public static List<Train> read(Path source) throws IOException {
+        MappedByteBuffer in;
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        int contentLength = in.capacity() - Long.BYTES;
+        if (contentLength < 2 * Integer.BYTES || in.getInt(0) != MAGIC) {
+            throw new IOException(source + " is not a binary train catalog");
+        }
+        if (in.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException("Unsupported binary catalog version " + in.getInt(Integer.BYTES) + " in " + source);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(in.slice(0, contentLength));
+        if (crc.getValue() != in.getLong(contentLength)) {
+            throw new IOException("Checksum mismatch in " + source);
+        }
+
+        try {
+            in.position(2 * Integer.BYTES);
+            String[] stationNames = new String[in.getInt()];
+            for (int i = 0; i < stationNames.length; i++) {
+                stationNames[i] = getString(in);
+            }
+
+            int trainCount = in.getInt();
+            List<Train> trains = new ArrayList<>(trainCount);
+            for (int i = 0; i < trainCount; i++) {
+                trains.add(readTrain(in, stationNames));
+            }
+            return trains;
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed binary catalog " + source, e);
+        }
+    }
+
+    private static Train readTrain(ByteBuffer in, String[] stationNames) {
+        String trainId = getString(in);
+        String trainNo = getString(in);
+
+        List<String> stations = null;
+        Map<String, String> stationTimes = null;
+        int stopCount = in.getInt();
+        if (stopCount != ABSENT) {
+            String[] stops = new String[stopCount];
+            for (int stop = 0; stop < stopCount; stop++) {
+                int stationId = in.getInt();
+                stops[stop] = stationId != ABSENT ? stationNames[stationId] : null;
+            }
+            stations = Arrays.asList(stops);
+        }
+        int timeCount = in.getInt();
+        if (timeCount != ABSENT) {
+            stationTimes = new LinkedHashMap<>();
+            for (int i = 0; i < timeCount; i++) {
+                int stationId = in.getInt();
+                stationTimes.put(stationId != ABSENT ? stationNames[stationId] : null, readTime(in));
+            }
+        }
+
+        Train train = Train.builder()
+                .trainId(trainId)
+                .trainNo(trainNo)
+                .stationTimes(stationTimes)
+                .stations(stations)
+                .build();
+        Supplier<SeatInventory> seatInventory = readSeats(in);
+        if (seatInventory != null) {
+            train.deferSeatInventory(seatInventory);
+        }
+        return train;
+    }
+
+    // Decodes the bitmaps now but leaves building the inventory to its first use
+    private static Supplier<SeatInventory> readSeats(ByteBuffer in) {
+        int rowCount = in.getInt();
+        if (rowCount == ABSENT) return null;
+
+        int legCount = in.getInt();
+        int[] seatCounts = new int[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            seatCounts[row] = in.getInt();
+        }
+        long[][] rowWords = new long[rowCount][];
+        for (int row = 0; row < rowCount; row++) {
+            int stride = wordCount(seatCounts[row]);
+            int stored = switch (in.getInt()) {
+                case ROW_EMPTY -> 0;
+                case ROW_SAME_ON_ALL_LEGS -> stride;
+                case ROW_PER_LEG -> stride * legCount;
+                default -> throw new IllegalStateException("Unknown row layout");
+            };
+            if (stored > 0) {
+                rowWords[row] = new long[stored];
+                in.asLongBuffer().get(rowWords[row]);
+                in.position(in.position() + stored * Long.BYTES);
+            }
+        }
+        return () -> SeatInventory.fromWords(seatCounts, legCount, rowWords);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length == ABSENT) return null;
+
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Buffers writes to the channel and checksums everything that passes through
+    private static class ChannelWriter implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CRC32 crc = new CRC32();
+
+        ChannelWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensureRemaining(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensureRemaining(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putString(String value) throws IOException {
+            if (value == null) {
+                putInt(ABSENT);
+                return;
+            }
+
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            for (int offset = 0; offset < bytes.length; offset += BUFFER_SIZE) {
+                int length = Math.min(BUFFER_SIZE, bytes.length - offset);
+                ensureRemaining(length);
+                buffer.put(bytes, offset, length);
+            }
+        }
+
+        // Appends the checksum and forces the file to disk
+        void finish() throws IOException {
+            flush();
+            ensureRemaining(Long.BYTES);
+            buffer.putLong(crc.getValue());
+            flush();
+            channel.force(true);
+        }
+
+        private void ensureRemaining(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package ticket.booking.persistence;
+
+import java.util.Locale;
+
+/**
+ * When appended journal records reach the disk, chosen with {@code -Dbooking.durability}.
+ */
+public enum Durability {
+    // Write and fsync each change before the call returns, after the store's locks are released; nothing
+    // acknowledged is ever lost
+    SYNC,
+    // Gather appends for a short interval, then write and fsync them together; callers await the commit if they need it
+    GROUP,
+    // Gather appends and write them without fsync; an OS crash can lose what the page cache had not written back
+    ASYNC;
+
+    /**
+     * Mode from {@code -Dbooking.durability}, {@link #GROUP} when unset.
+     */
+    public static Durability configured() {
+        String durability = System.getProperty("booking.durability");
+        return durability != null ? Durability.valueOf(durability.trim().toUpperCase(Locale.ROOT)) : GROUP;
+    }
+}
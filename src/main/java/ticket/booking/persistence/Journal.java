@@ -0,0 +1,345 @@
+package ticket.booking.persistence;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ticket.booking.metrics.Counter;
+import ticket.booking.metrics.LatencyHistogram;
+import ticket.booking.metrics.Metrics;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only write-ahead log of {@link JournalRecord}s, one JSON document per line.
+ * The owning service replays it on top of its last snapshot at startup and truncates it after compaction.
+ * <p>
+ * Appends only add to a buffer, so owners can append under their own locks to keep records in the order of
+ * their changes. The flusher thread writes everything gathered in the last {@code -Dbooking.groupCommitMillis}
+ * (5 by default) with one write and, unless {@link Durability#ASYNC}, one fsync; the futures returned by
+ * {@link #append} complete when that happens. Under {@link Durability#SYNC} the owner also calls {@link #sync}
+ * once its locks are released, which writes and forces the buffer on the calling thread. Buffers still pending
+ * at exit are flushed by a shutdown hook.
+ */
+public class Journal implements AutoCloseable {
+    private static final Logger log = Logger.getLogger(Journal.class.getName());
+    private static final Counter BYTES_WRITTEN = Metrics.counter("journal.bytes");
+    private static final Counter FLUSHES = Metrics.counter("journal.flushes");
+    private static final LatencyHistogram FLUSH_TIME = Metrics.histogram("journal.flush");
+    private static final long GROUP_COMMIT_MILLIS = Long.getLong("booking.groupCommitMillis", 5);
+    // Journals with a buffer waiting for the flusher
+    private static final Set<Journal> UNFLUSHED = ConcurrentHashMap.newKeySet();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(Journal::flushAll, "journal-shutdown"));
+    }
+
+    private final Path path;
+    private final ObjectMapper objectMapper;
+    private final Durability durability;
+    // Held while writing to and forcing the file, taken before the monitor that guards the buffer. Request
+    // threads take it when they sync, so it is a lock rather than a monitor that would pin a virtual thread
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private FileChannel channel;
+    private int recordCount;
+    // Bytes in the file plus the buffer, since the journal was last read or truncated
+    private long length;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    // Completes once the current buffer is written; replaced by each flush
+    private CompletableFuture<Void> pendingCommit = new CompletableFuture<>();
+    // Commit of the buffer a running flush is writing, or null when no flush is running
+    private CompletableFuture<Void> flushingCommit;
+
+    public Journal(Path path, ObjectMapper objectMapper) {
+        this(path, objectMapper, Durability.configured());
+    }
+
+    public Journal(Path path, ObjectMapper objectMapper, Durability durability) {
+        this.path = path;
+        this.objectMapper = objectMapper;
+        this.durability = durability;
+    }
+
+    /**
+     * Reads every complete record, writing buffered ones out first. A torn last line left by a crash mid-append
+     * is skipped.
+     */
+    public List<JournalRecord> readAll() throws IOException {
+        writeLock.lock();
+        try {
+            flush();
+            synchronized (this) {
+                return readRecords();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Caller holds writeLock and the monitor, with nothing buffered
+    private List<JournalRecord> readRecords() throws IOException {
+        List<JournalRecord> records = new ArrayList<>();
+        if (!Files.exists(path)) {
+            return records;
+        }
+        length = Files.size(path);
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                try {
+                    records.add(objectMapper.readValue(line, JournalRecord.class));
+                } catch (JsonProcessingException e) {
+                    log.warning("Skipping unreadable journal record in " + path + ": " + e.getOriginalMessage());
+                }
+            }
+        }
+        recordCount = records.size();
+        return records;
+    }
+
+    public CompletableFuture<Void> append(JournalRecord record) throws IOException {
+        return append(List.of(record));
+    }
+
+    /**
+     * Buffers the records to be written with a single write so a multi-record mutation lands together. The
+     * future completes when they are on disk as far as the durability mode promises, exceptionally if the
+     * write fails.
+     */
+    public CompletableFuture<Void> append(List<JournalRecord> records) throws IOException {
+        if (records.isEmpty()) return commit();
+
+        StringBuilder lines = new StringBuilder();
+        for (JournalRecord record : records) {
+            lines.append(objectMapper.writeValueAsString(record)).append('\n');
+        }
+        byte[] bytes = lines.toString().getBytes(StandardCharsets.UTF_8);
+
+        synchronized (this) {
+            if (pending.size() == 0) {
+                UNFLUSHED.add(this);
+                PersistenceScheduler.scheduleFlush(this::flushQuietly, GROUP_COMMIT_MILLIS);
+            }
+            pending.writeBytes(bytes);
+            recordCount += records.size();
+            length += bytes.length;
+            return pendingCommit;
+        }
+    }
+
+    /**
+     * Under {@link Durability#SYNC}, writes and forces every record appended so far and returns once they are
+     * on disk; otherwise leaves them to the flusher. Call it without holding the locks the records were
+     * appended under: threads syncing at the same time then share one fsync instead of queueing behind a lock.
+     */
+    public void sync() throws IOException {
+        if (durability != Durability.SYNC) return;
+
+        CompletableFuture<Void> commit = commit();
+        flush();
+        try {
+            commit.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof IOException cause ? cause : new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Completes once every record appended so far is on disk as far as the durability mode promises.
+     */
+    public synchronized CompletableFuture<Void> commit() {
+        if (pending.size() > 0) return pendingCommit;
+        // A flush may have taken the buffer without having written it yet
+        return flushingCommit != null ? flushingCommit : CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Writes the buffered records now instead of waiting for the flusher.
+     */
+    public void flush() throws IOException {
+        writeLock.lock();
+        try {
+            byte[] bytes;
+            CompletableFuture<Void> commit;
+            synchronized (this) {
+                if (pending.size() == 0) return;
+                bytes = pending.toByteArray();
+                commit = pendingCommit;
+                pending.reset();
+                pendingCommit = new CompletableFuture<>();
+                flushingCommit = commit;
+                UNFLUSHED.remove(this);
+            }
+
+            long start = System.nanoTime();
+            try {
+                write(bytes);
+                if (durability != Durability.ASYNC) {
+                    channel().force(false);
+                }
+            } catch (IOException e) {
+                commit.completeExceptionally(e);
+                throw e;
+            } finally {
+                FLUSH_TIME.recordSince(start);
+                synchronized (this) {
+                    flushingCommit = null;
+                }
+            }
+            FLUSHES.increment();
+            commit.complete(null);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            log.log(Level.SEVERE, "Failed to flush journal " + path, e);
+        }
+    }
+
+    private static void flushAll() {
+        for (Journal journal : UNFLUSHED) {
+            journal.flushQuietly();
+        }
+    }
+
+    // Caller holds writeLock
+    private void write(byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        FileChannel fileChannel = channel();
+        while (buffer.hasRemaining()) {
+            fileChannel.write(buffer);
+        }
+        BYTES_WRITTEN.add(bytes.length);
+    }
+
+    /**
+     * Number of records appended since the journal was last read or truncated.
+     */
+    public synchronized int size() {
+        return recordCount;
+    }
+
+    /**
+     * The point just past every record appended so far. The owner takes it together with a copy of its state,
+     * writes the copy out while appends carry on, then discards the records the copy already reflects with
+     * {@link #truncateBefore}.
+     */
+    public synchronized Position position() {
+        return new Position(length, recordCount);
+    }
+
+    /**
+     * Discards all records; called once their effect has been folded into a snapshot. Buffered records
+     * are written first so that callers waiting on their commit are released.
+     */
+    public void truncate() throws IOException {
+        writeLock.lock();
+        try {
+            flush();
+            synchronized (this) {
+                channel().truncate(0);
+                recordCount = 0;
+                length = 0;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Discards the records before {@code position}, keeping those appended after it. When there are any, the
+     * rest of the file is copied to a new journal that is forced and renamed over this one.
+     */
+    public void truncateBefore(Position position) throws IOException {
+        writeLock.lock();
+        try {
+            flush();
+            FileChannel fileChannel = channel();
+            long size = fileChannel.size();
+            if (position.offset() >= size) {
+                synchronized (this) {
+                    fileChannel.truncate(0);
+                    recordCount -= position.records();
+                    length -= size;
+                }
+                return;
+            }
+
+            Path temp = Snapshots.tempPathFor(path);
+            try {
+                try (FileChannel source = FileChannel.open(path, StandardOpenOption.READ);
+                     FileChannel target = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                             StandardOpenOption.TRUNCATE_EXISTING)) {
+                    long copied = 0;
+                    while (position.offset() + copied < size) {
+                        copied += source.transferTo(position.offset() + copied, size - position.offset() - copied,
+                                target);
+                    }
+                    target.force(false);
+                }
+                fileChannel.close();
+                channel = null;
+                Snapshots.moveIntoPlace(temp, path);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            synchronized (this) {
+                recordCount -= position.records();
+                length -= position.offset();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * A point in the journal, as returned by {@link #position()}: its byte offset and the records before it.
+     */
+    public record Position(long offset, int records) {}
+
+    @Override
+    public void close() throws IOException {
+        writeLock.lock();
+        try {
+            flush();
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Caller holds writeLock
+    private FileChannel channel() throws IOException {
+        if (channel == null) {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+}
@@ -0,0 +1,170 @@
+package ticket.booking.persistence;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import ticket.booking.entities.LegRange;
+import ticket.booking.entities.Ticket;
+import ticket.booking.entities.Train;
+import ticket.booking.entities.User;
+
+/**
+ * A single mutation appended to a {@link Journal}. Only the fields relevant to {@link #getType()} are set.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public class JournalRecord {
+    public enum Type {
+        USER_CREATED,
+        TICKET_ADDED,
+        TICKET_REMOVED,
+        PASSWORD_CHANGED,
+        TRAIN_UPSERTED,
+        SEAT_BOOKED,
+        SEAT_RELEASED,
+        BOOKING_ADDED,
+        BOOKING_CANCELLING,
+        BOOKING_REMOVED
+    }
+
+    private Type type;
+    private String userId;
+    private User user;
+    private Ticket ticket;
+    private String ticketId;
+    private String hashedPassword;
+    private String trainId;
+    private Train train;
+    private Integer row;
+    private Integer seat;
+    // Legs of a segment booking; absent for whole-run bookings
+    private Integer fromLeg;
+    private Integer toLeg;
+
+    // Default constructor
+    public JournalRecord() {}
+
+    private JournalRecord(Type type) {
+        this.type = type;
+    }
+
+    public static JournalRecord userCreated(User user) {
+        JournalRecord record = new JournalRecord(Type.USER_CREATED);
+        record.user = user;
+        return record;
+    }
+
+    public static JournalRecord ticketAdded(String userId, Ticket ticket) {
+        JournalRecord record = new JournalRecord(Type.TICKET_ADDED);
+        record.userId = userId;
+        record.ticket = ticket;
+        return record;
+    }
+
+    public static JournalRecord ticketRemoved(String userId, String ticketId) {
+        JournalRecord record = new JournalRecord(Type.TICKET_REMOVED);
+        record.userId = userId;
+        record.ticketId = ticketId;
+        return record;
+    }
+
+    public static JournalRecord passwordChanged(String userId, String hashedPassword) {
+        JournalRecord record = new JournalRecord(Type.PASSWORD_CHANGED);
+        record.userId = userId;
+        record.hashedPassword = hashedPassword;
+        return record;
+    }
+
+    public static JournalRecord trainUpserted(Train train) {
+        JournalRecord record = new JournalRecord(Type.TRAIN_UPSERTED);
+        record.train = train;
+        return record;
+    }
+
+    public static JournalRecord seatBooked(String trainId, int row, int seat, LegRange legs) {
+        return seatRecord(Type.SEAT_BOOKED, trainId, row, seat, legs);
+    }
+
+    public static JournalRecord seatReleased(String trainId, int row, int seat, LegRange legs) {
+        return seatRecord(Type.SEAT_RELEASED, trainId, row, seat, legs);
+    }
+
+    public static JournalRecord bookingAdded(BookingLedger.Entry entry) {
+        JournalRecord record = seatRecord(Type.BOOKING_ADDED, entry.trainId(), entry.row(), entry.seat(), entry.legs());
+        record.ticketId = entry.ticketId();
+        record.userId = entry.userId();
+        return record;
+    }
+
+    public static JournalRecord bookingCancelling(String ticketId) {
+        JournalRecord record = new JournalRecord(Type.BOOKING_CANCELLING);
+        record.ticketId = ticketId;
+        return record;
+    }
+
+    public static JournalRecord bookingRemoved(String ticketId) {
+        JournalRecord record = new JournalRecord(Type.BOOKING_REMOVED);
+        record.ticketId = ticketId;
+        return record;
+    }
+
+    private static JournalRecord seatRecord(Type type, String trainId, int row, int seat, LegRange legs) {
+        JournalRecord record = new JournalRecord(type);
+        record.trainId = trainId;
+        record.row = row;
+        record.seat = seat;
+        if (legs != null) {
+            record.fromLeg = legs.fromLeg();
+            record.toLeg = legs.toLeg();
+        }
+        return record;
+    }
+
+    // Getters and Setters
+    public Type getType() { return type; }
+    public void setType(Type type) { this.type = type; }
+
+    public String getUserId() { return userId; }
+    public void setUserId(String userId) { this.userId = userId; }
+
+    public User getUser() { return user; }
+    public void setUser(User user) { this.user = user; }
+
+    public Ticket getTicket() { return ticket; }
+    public void setTicket(Ticket ticket) { this.ticket = ticket; }
+
+    public String getTicketId() { return ticketId; }
+    public void setTicketId(String ticketId) { this.ticketId = ticketId; }
+
+    public String getHashedPassword() { return hashedPassword; }
+    public void setHashedPassword(String hashedPassword) { this.hashedPassword = hashedPassword; }
+
+    public String getTrainId() { return trainId; }
+    public void setTrainId(String trainId) { this.trainId = trainId; }
+
+    public Train getTrain() { return train; }
+    public void setTrain(Train train) { this.train = train; }
+
+    public Integer getRow() { return row; }
+    public void setRow(Integer row) { this.row = row; }
+
+    public Integer getSeat() { return seat; }
+    public void setSeat(Integer seat) { this.seat = seat; }
+
+    public Integer getFromLeg() { return fromLeg; }
+    public void setFromLeg(Integer fromLeg) { this.fromLeg = fromLeg; }
+
+    public Integer getToLeg() { return toLeg; }
+    public void setToLeg(Integer toLeg) { this.toLeg = toLeg; }
+
+    /**
+     * Legs covered by a seat record, or null for the whole run.
+     */
+    @JsonIgnore
+    public LegRange getLegRange() {
+        return fromLeg != null && toLeg != null ? new LegRange(fromLeg, toLeg) : null;
+    }
+}
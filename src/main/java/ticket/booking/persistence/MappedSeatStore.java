@@ -0,0 +1,312 @@
+package ticket.booking.persistence;
+
+import ticket.booking.entities.SeatInventory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Seat bitmaps of every train kept in one memory-mapped file, so booking or releasing a seat flips a bit
+ * in place instead of rewriting the catalog.
+ * <p>
+ * The file is a header followed by one record per train: its ID, leg count and seats per coach, then the
+ * coaches' bitmaps in {@link SeatInventory} layout (little-endian longs, 8-byte aligned). A train whose
+ * coaches change shape gets a new record appended and the old one marked dead. Each live record's bitmaps
+ * are mapped once and wrapped by the train's {@link SeatInventory}, so they are the seat state itself.
+ * <p>
+ * One process may open the file for writing at a time; others may open it read-only and see bookings as
+ * they happen. Changes reach the disk as the OS writes the pages back, or earlier as per {@link ForcePolicy}.
+ */
+public class MappedSeatStore {
+    private static final Logger log = Logger.getLogger(MappedSeatStore.class.getName());
+    private static final int MAGIC = 0x54414553; // "SEAT"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int LIVE = 1;
+    private static final int DEAD = 0;
+
+    public enum ForcePolicy {
+        // Flush the train's pages after every booking or release
+        EVERY_CHANGE,
+        // Flush on compaction and close
+        CHECKPOINT,
+        // Leave write-back entirely to the OS
+        NEVER
+    }
+
+    /**
+     * Policy named by {@code -Dbooking.seatStore=checkpoint|every_change|never}, or null when seats are not
+     * to be memory-mapped.
+     */
+    public static ForcePolicy configuredPolicy() {
+        String policy = System.getProperty("booking.seatStore");
+        return policy != null ? ForcePolicy.valueOf(policy.trim().toUpperCase(Locale.ROOT)) : null;
+    }
+
+    private final FileChannel channel;
+    private final FileLock writerLock;
+    private final boolean readOnly;
+    private final ForcePolicy forcePolicy;
+    private final Map<String, Region> regions = new HashMap<>();
+
+    // Mapped bitmaps of one live train record
+    private record Region(long recordOffset, int legCount, int[] seatCounts, MappedByteBuffer words) {}
+
+    private MappedSeatStore(FileChannel channel, FileLock writerLock, boolean readOnly, ForcePolicy forcePolicy) {
+        this.channel = channel;
+        this.writerLock = writerLock;
+        this.readOnly = readOnly;
+        this.forcePolicy = forcePolicy;
+    }
+
+    /**
+     * Opens or creates the store for booking. Fails if another process has it open for writing.
+     */
+    public static MappedSeatStore open(Path path, ForcePolicy forcePolicy) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            FileLock writerLock;
+            try {
+                writerLock = channel.tryLock(0, HEADER_BYTES, false);
+            } catch (OverlappingFileLockException e) {
+                writerLock = null;
+            }
+            if (writerLock == null) {
+                throw new IOException(path + " is open for writing in another process");
+            }
+            MappedSeatStore store = new MappedSeatStore(channel, writerLock, false, forcePolicy);
+            if (channel.size() == 0) {
+                store.writeHeader();
+            }
+            store.scan(path);
+            return store;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an existing store for reading only. Seat lookups on its inventories ({@code isBooked},
+     * {@code isAvailable}, {@code availableSeats}) see bookings made by the writing process as they happen;
+     * the free-seat counters are as of {@link #attach}.
+     */
+    public static MappedSeatStore openReadOnly(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            MappedSeatStore store = new MappedSeatStore(channel, null, true, ForcePolicy.NEVER);
+            store.scan(path);
+            return store;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        writeFully(header, 0);
+    }
+
+    // Reads every record header and maps the bitmaps of the live ones
+    private void scan(Path path) throws IOException {
+        ByteBuffer header = readAt(0, HEADER_BYTES);
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException(path + " is not a seat store of version " + VERSION);
+        }
+
+        long offset = HEADER_BYTES;
+        long size = channel.size();
+        while (offset + 2 * Integer.BYTES <= size) {
+            ByteBuffer prefix = readAt(offset, 2 * Integer.BYTES);
+            int recordLength = prefix.getInt();
+            int status = prefix.getInt();
+            if (recordLength <= 0 || offset + recordLength > size) {
+                log.warning("Ignoring torn record at the end of " + path);
+                break;
+            }
+            if (status == LIVE) {
+                ByteBuffer record = readAt(offset, recordLength);
+                record.position(2 * Integer.BYTES);
+                String trainId = getString(record);
+                int legCount = record.getInt();
+                int[] seatCounts = new int[record.getInt()];
+                for (int row = 0; row < seatCounts.length; row++) {
+                    seatCounts[row] = record.getInt();
+                }
+                long wordsOffset = offset + align(record.position());
+                regions.put(trainId, new Region(offset, legCount, seatCounts, map(wordsOffset, wordCount(seatCounts, legCount))));
+            }
+            offset += recordLength;
+        }
+    }
+
+    /**
+     * Inventory for {@code trainId} whose bitmaps live in this file. If the file already has the train with
+     * the same coaches and leg count, its stored seats are kept when {@code preferStored} is set; otherwise
+     * the train's record is (re)written from {@code current}. Returns null for a train without seats.
+     */
+    public synchronized SeatInventory attach(String trainId, SeatInventory current, boolean preferStored) throws IOException {
+        if (current == null) return null;
+
+        int[] seatCounts = new int[current.getRowCount()];
+        for (int row = 0; row < seatCounts.length; row++) {
+            seatCounts[row] = current.getSeatCount(row);
+        }
+
+        Region region = regions.get(trainId);
+        boolean sameShape = region != null && region.legCount() == current.getLegCount()
+                && Arrays.equals(region.seatCounts(), seatCounts);
+        if (!sameShape || !preferStored) {
+            if (readOnly) {
+                throw new IOException("Seat store is read-only and has no matching record for train " + trainId);
+            }
+            if (!sameShape) {
+                region = appendRecord(trainId, current.getLegCount(), seatCounts, region);
+            }
+            copyInto(region, current);
+        }
+        return SeatInventory.wrap(seatCounts, region.legCount(), rowBuffers(region));
+    }
+
+    /**
+     * Called after seats of {@code trainId} changed; forces its pages to disk under {@link ForcePolicy#EVERY_CHANGE}.
+     */
+    public void changed(String trainId) {
+        if (forcePolicy != ForcePolicy.EVERY_CHANGE) return;
+
+        Region region;
+        synchronized (this) {
+            region = regions.get(trainId);
+        }
+        if (region != null) {
+            region.words().force();
+        }
+    }
+
+    /**
+     * Forces every train's pages to disk unless the policy is {@link ForcePolicy#NEVER}.
+     */
+    public synchronized void checkpoint() {
+        if (forcePolicy == ForcePolicy.NEVER || readOnly) return;
+
+        regions.values().forEach(region -> region.words().force());
+    }
+
+    public synchronized void close() throws IOException {
+        checkpoint();
+        if (writerLock != null) {
+            writerLock.release();
+        }
+        channel.close();
+    }
+
+    private Region appendRecord(String trainId, int legCount, int[] seatCounts, Region previous) throws IOException {
+        byte[] id = trainId.getBytes(StandardCharsets.UTF_8);
+        int headerLength = (int) align(2 * Integer.BYTES + Integer.BYTES + id.length + 2 * Integer.BYTES
+                + seatCounts.length * Integer.BYTES);
+        long words = wordCount(seatCounts, legCount);
+        long recordLength = headerLength + words * Long.BYTES;
+        if (recordLength > Integer.MAX_VALUE) {
+            throw new IOException("Train " + trainId + " has too many seats for the seat store");
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(headerLength).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt((int) recordLength).putInt(LIVE).putInt(id.length).put(id).putInt(legCount).putInt(seatCounts.length);
+        for (int seatCount : seatCounts) {
+            header.putInt(seatCount);
+        }
+        header.clear();
+
+        long offset = align(channel.size());
+        writeFully(header, offset);
+        // Zero-fill the bitmaps by extending the file past them
+        writeFully(ByteBuffer.allocate(1), offset + recordLength - 1);
+
+        if (previous != null) {
+            ByteBuffer dead = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).putInt(DEAD);
+            dead.flip();
+            writeFully(dead, previous.recordOffset() + Integer.BYTES);
+        }
+
+        Region region = new Region(offset, legCount, seatCounts.clone(), map(offset + headerLength, words));
+        regions.put(trainId, region);
+        return region;
+    }
+
+    private static void copyInto(Region region, SeatInventory current) {
+        LongBuffer words = region.words().asLongBuffer();
+        for (int row = 0; row < current.getRowCount(); row++) {
+            words.put(current.getRowWords(row));
+        }
+    }
+
+    private static LongBuffer[] rowBuffers(Region region) {
+        LongBuffer words = region.words().asLongBuffer();
+        LongBuffer[] rows = new LongBuffer[region.seatCounts().length];
+        int start = 0;
+        for (int row = 0; row < rows.length; row++) {
+            int length = (region.seatCounts()[row] + Long.SIZE - 1) / Long.SIZE * region.legCount();
+            rows[row] = words.slice(start, length);
+            start += length;
+        }
+        return rows;
+    }
+
+    private MappedByteBuffer map(long offset, long words) throws IOException {
+        MappedByteBuffer buffer = channel.map(readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE,
+                offset, words * Long.BYTES);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private ByteBuffer readAt(long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of seat store");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private void writeFully(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, offset + buffer.position());
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long wordCount(int[] seatCounts, int legCount) {
+        long words = 0;
+        for (int seatCount : seatCounts) {
+            words += (long) (seatCount + Long.SIZE - 1) / Long.SIZE * legCount;
+        }
+        return words;
+    }
+
+    private static long align(long position) {
+        return (position + Long.BYTES - 1) & -Long.BYTES;
+    }
+}
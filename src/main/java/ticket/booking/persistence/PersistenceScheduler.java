@@ -0,0 +1,56 @@
+package ticket.booking.persistence;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Background threads that write on behalf of request threads: one flushes grouped journal appends, the other
+ * runs compactions, so a booking never waits for a snapshot rewrite and a long compaction never delays a
+ * group commit.
+ */
+public class PersistenceScheduler {
+    private static final Logger log = Logger.getLogger(PersistenceScheduler.class.getName());
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(
+            task -> daemonThread(task, "journal-flusher"));
+    private static final ScheduledExecutorService COMPACTOR = Executors.newSingleThreadScheduledExecutor(
+            task -> daemonThread(task, "compactor"));
+
+    // Private constructor to prevent instantiation
+    private PersistenceScheduler() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Runs {@code flush} on the flusher thread after {@code delayMillis}.
+     */
+    public static void scheduleFlush(Runnable flush, long delayMillis) {
+        FLUSHER.schedule(flush, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs {@code compaction} on the compactor thread unless one guarded by {@code scheduled} is already
+     * waiting to run, so a burst of requests past the threshold triggers a single compaction.
+     */
+    public static void compactInBackground(AtomicBoolean scheduled, Runnable compaction) {
+        if (!scheduled.compareAndSet(false, true)) return;
+
+        COMPACTOR.execute(() -> {
+            scheduled.set(false);
+            try {
+                compaction.run();
+            } catch (RuntimeException e) {
+                log.log(Level.SEVERE, "Background compaction failed", e);
+            }
+        });
+    }
+
+    private static Thread daemonThread(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
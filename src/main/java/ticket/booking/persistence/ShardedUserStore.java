@@ -0,0 +1,207 @@
+package ticket.booking.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ticket.booking.entities.Ticket;
+import ticket.booking.entities.User;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * User database split by user ID into a fixed number of {@link UserStore} shards, each with its own
+ * {@code users-NNN.json} snapshot and journal in one directory.
+ * <p>
+ * Shards are indexed on a thread pool when the store is opened, a mutation journals to its own shard only,
+ * and {@link #compact()} rewrites only the shards changed since their last snapshot. The shard count is
+ * fixed by the files already in the directory; {@code UserShardSplitter} creates them from a users.json.
+ */
+public class ShardedUserStore implements UserStorage {
+    public static final int DEFAULT_SHARD_COUNT = 8;
+    private static final int TOTAL_CACHE_SIZE = 10_000;
+    private static final Pattern SHARD_FILE = Pattern.compile("users-\\d{3}\\.json");
+
+    private final List<UserStore> shards;
+    // Serializes creates so a name cannot be taken in two shards at once
+    private final ReentrantLock createLock = new ReentrantLock();
+
+    /**
+     * Opens the shards in {@code directory}, creating {@link #DEFAULT_SHARD_COUNT} empty ones if there are none.
+     */
+    public ShardedUserStore(Path directory, ObjectMapper objectMapper) throws IOException {
+        this(directory, objectMapper, DEFAULT_SHARD_COUNT);
+    }
+
+    /**
+     * Opens the shards in {@code directory}, creating {@code newShardCount} empty ones if there are none.
+     */
+    public ShardedUserStore(Path directory, ObjectMapper objectMapper, int newShardCount) throws IOException {
+        int existing = countShardFiles(directory);
+        int shardCount = existing > 0 ? existing : newShardCount;
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        for (int shard = 0; shard < existing; shard++) {
+            if (!Files.exists(shardPath(directory, shard))) {
+                throw new IOException("Missing " + shardPath(directory, shard) + "; shards must be numbered from 000");
+            }
+        }
+        this.shards = openShards(directory, objectMapper, shardCount);
+    }
+
+    /**
+     * Snapshot file of shard {@code shard} in {@code directory}.
+     */
+    public static Path shardPath(Path directory, int shard) {
+        return directory.resolve(String.format("users-%03d.json", shard));
+    }
+
+    /**
+     * Shard holding {@code userId} when there are {@code shardCount} shards.
+     */
+    public static int shardOf(String userId, int shardCount) {
+        return Math.floorMod(userId.hashCode(), shardCount);
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    private static int countShardFiles(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) return 0;
+
+        try (Stream<Path> files = Files.list(directory)) {
+            return (int) files.filter(file -> SHARD_FILE.matcher(file.getFileName().toString()).matches()).count();
+        }
+    }
+
+    private static List<UserStore> openShards(Path directory, ObjectMapper objectMapper, int shardCount)
+            throws IOException {
+        Files.createDirectories(directory);
+        int cacheSize = Math.max(1, TOTAL_CACHE_SIZE / shardCount);
+        List<Callable<UserStore>> openers = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            Path snapshot = shardPath(directory, shard);
+            openers.add(() -> new UserStore(snapshot, objectMapper, cacheSize));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(shardCount, Runtime.getRuntime().availableProcessors()));
+        try {
+            List<UserStore> opened = new ArrayList<>(shardCount);
+            for (Future<UserStore> shard : executor.invokeAll(openers)) {
+                opened.add(shard.get());
+            }
+            return List.copyOf(opened);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while opening user shards in " + directory, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) throw ioException;
+            throw new IOException("Failed to open user shards in " + directory, e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private UserStore shardFor(String userId) {
+        return shards.get(shardOf(userId, shards.size()));
+    }
+
+    @Override
+    public boolean containsName(String name) {
+        return shards.stream().anyMatch(shard -> shard.containsName(name));
+    }
+
+    @Override
+    public Optional<User> findByName(String name) {
+        for (UserStore shard : shards) {
+            Optional<User> found = shard.findByName(name);
+            if (found.isPresent()) return found;
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<User> findById(String userId) {
+        return userId == null ? Optional.empty() : shardFor(userId).findById(userId);
+    }
+
+    @Override
+    public Optional<List<Ticket>> findTickets(String userId) {
+        return userId == null ? Optional.empty() : shardFor(userId).findTickets(userId);
+    }
+
+    @Override
+    public int size() {
+        return shards.stream().mapToInt(UserStore::size).sum();
+    }
+
+    @Override
+    public boolean create(User newUser) throws IOException {
+        if (newUser.getUserId() == null) return false;
+
+        UserStore shard = shardFor(newUser.getUserId());
+        createLock.lock();
+        try {
+            if (containsName(newUser.getName()) || !shard.createUnsynced(newUser)) return false;
+        } finally {
+            createLock.unlock();
+        }
+        shard.sync();
+        return true;
+    }
+
+    @Override
+    public boolean addTickets(String userId, List<Ticket> tickets) throws IOException {
+        return userId != null && shardFor(userId).addTickets(userId, tickets);
+    }
+
+    @Override
+    public boolean removeTicket(String userId, String ticketId) throws IOException {
+        return userId != null && shardFor(userId).removeTicket(userId, ticketId);
+    }
+
+    @Override
+    public boolean updatePassword(String userId, String hashedPassword) throws IOException {
+        return userId != null && shardFor(userId).updatePassword(userId, hashedPassword);
+    }
+
+    @Override
+    public CompletableFuture<Void> commit() {
+        return CompletableFuture.allOf(shards.stream().map(UserStore::commit).toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Largest journal of any shard, so compaction is triggered by the shard that needs it most rather than
+     * by the sum over all of them.
+     */
+    @Override
+    public int pendingChanges() {
+        return shards.stream().mapToInt(UserStore::pendingChanges).max().orElse(0);
+    }
+
+    /**
+     * Compacts every shard with journaled changes; untouched shards are not rewritten.
+     */
+    @Override
+    public void compact() throws IOException {
+        for (UserStore shard : shards) {
+            if (shard.pendingChanges() > 0) {
+                shard.compact();
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ticket.booking.persistence;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+public class Snapshots {
+
+    // Private constructor to prevent instantiation
+    private Snapshots() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Writes {@code value} to a temporary sibling of {@code target}, forces it to disk and renames it into
+     * place, so readers never observe a half-written snapshot and the journal it replaces can be truncated.
+     */
+    public static void writeAtomically(ObjectMapper objectMapper, Path target, Object value) throws IOException {
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        Path temp = tempPathFor(target);
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp.toFile())) {
+                // Keep the stream open after writing so it can still be synced
+                objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(out, value);
+                out.getFD().sync();
+            }
+            moveIntoPlace(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Temporary sibling of {@code target} that {@link #moveIntoPlace} can rename over it.
+     */
+    public static Path tempPathFor(Path target) {
+        return target.toAbsolutePath().resolveSibling(target.getFileName() + ".tmp");
+    }
+
+    /**
+     * Renames a fully written {@code temp} file over {@code target}, atomically where the file system allows.
+     */
+    public static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Journal file kept next to a snapshot, e.g. {@code users.json} -> {@code users.journal}.
+     */
+    public static Path journalPathFor(Path snapshot) {
+        String fileName = snapshot.getFileName().toString();
+        int extension = fileName.lastIndexOf('.');
+        String baseName = extension > 0 ? fileName.substring(0, extension) : fileName;
+        return snapshot.resolveSibling(baseName + ".journal");
+    }
+}
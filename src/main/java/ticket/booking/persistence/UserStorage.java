@@ -0,0 +1,63 @@
+package ticket.booking.persistence;
+
+import ticket.booking.entities.Ticket;
+import ticket.booking.entities.User;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Persistent user accounts and their tickets, as used by {@code UserBookingService}: a single
+ * {@link UserStore} or a {@link ShardedUserStore} over several.
+ */
+public interface UserStorage {
+    boolean containsName(String name);
+
+    Optional<User> findByName(String name);
+
+    Optional<User> findById(String userId);
+
+    /**
+     * Copy of the user's tickets, or empty if there is no such user.
+     */
+    Optional<List<Ticket>> findTickets(String userId);
+
+    int size();
+
+    /**
+     * Adds a new user; returns false if the name is taken.
+     */
+    boolean create(User newUser) throws IOException;
+
+    /**
+     * Adds the tickets to the user; returns false if there is no such user.
+     */
+    boolean addTickets(String userId, List<Ticket> tickets) throws IOException;
+
+    /**
+     * Removes the ticket from the user; returns false if the user has no such ticket.
+     */
+    boolean removeTicket(String userId, String ticketId) throws IOException;
+
+    /**
+     * Replaces the user's password hash; returns false if there is no such user.
+     */
+    boolean updatePassword(String userId, String hashedPassword) throws IOException;
+
+    /**
+     * Completes once every mutation made so far is on disk as far as the journal's {@link Durability} promises.
+     */
+    CompletableFuture<Void> commit();
+
+    /**
+     * Number of mutations journaled since the last snapshot.
+     */
+    int pendingChanges();
+
+    /**
+     * Folds journaled mutations into the snapshot and truncates the journal.
+     */
+    void compact() throws IOException;
+}
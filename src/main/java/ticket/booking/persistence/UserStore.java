@@ -0,0 +1,492 @@
+package ticket.booking.persistence;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ticket.booking.entities.Ticket;
+import ticket.booking.entities.User;
+import ticket.booking.metrics.Counter;
+import ticket.booking.metrics.LatencyHistogram;
+import ticket.booking.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Lazily loaded user database backed by a users.json snapshot and a {@link Journal}.
+ * <p>
+ * Opening the store makes one streaming pass over the snapshot with a {@link JsonParser} and records
+ * where each user's object sits in the file; a {@link User} and its tickets are only deserialized when
+ * that user is looked up, and recently used users are kept in a bounded cache. Users changed since the
+ * snapshot are pinned in memory until {@link #compact()} writes a new snapshot, which copies every
+ * unchanged user's bytes straight across without parsing them.
+ */
+public class UserStore implements UserStorage {
+    private static final Logger log = Logger.getLogger(UserStore.class.getName());
+    private static final LatencyHistogram LOAD_TIME = Metrics.histogram("users.load");
+    private static final LatencyHistogram SAVE_TIME = Metrics.histogram("users.save");
+    private static final Counter SAVE_BYTES = Metrics.counter("users.save.bytes");
+    private static final int DEFAULT_CACHE_SIZE = 10_000;
+
+    private final Path snapshotPath;
+    private final ObjectMapper objectMapper;
+    private final Journal journal;
+
+    // Where each user of the current snapshot lives, in file order
+    private final List<UserLocation> snapshotUsers = new ArrayList<>();
+    private final Map<String, UserLocation> locationsById = new HashMap<>();
+    // Name -> user ID for snapshot and new users
+    private final Map<String, String> idsByName = new HashMap<>();
+    // Users created or modified since the snapshot, by user ID, in creation order for new users
+    private final Map<String, User> dirtyUsers = new LinkedHashMap<>();
+    // Value of changeCount when each dirty user last changed, so compaction knows which ones it has saved
+    private final Map<String, Long> dirtySince = new HashMap<>();
+    private long changeCount;
+    private final Map<String, User> cache;
+    // Guards the indexes, dirty users and cache. Lookups may read a user from the snapshot file while holding
+    // it, so it is a lock rather than the monitor, which would pin a virtual thread to its carrier for the read
+    private final ReentrantLock lock = new ReentrantLock();
+    // Held for a whole compaction; lookups and mutations only wait for its short copy and swap steps
+    private final ReentrantLock compactionLock = new ReentrantLock();
+
+    private record UserLocation(String name, String userId, long offset, int length) {}
+
+    // A user as the new snapshot will hold it: serialized, or copied from the old snapshot when bytes is null
+    private record SnapshotEntry(String name, String userId, UserLocation source, byte[] bytes) {}
+
+    public UserStore(Path snapshotPath, ObjectMapper objectMapper) throws IOException {
+        this(snapshotPath, objectMapper, DEFAULT_CACHE_SIZE);
+    }
+
+    public UserStore(Path snapshotPath, ObjectMapper objectMapper, int cacheSize) throws IOException {
+        this.snapshotPath = snapshotPath;
+        this.objectMapper = objectMapper;
+        this.journal = new Journal(Snapshots.journalPathFor(snapshotPath), objectMapper);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, User> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        open();
+    }
+
+    private void open() throws IOException {
+        if (!Files.exists(snapshotPath)) {
+            // Create empty user list file if it doesn't exist
+            Files.createDirectories(snapshotPath.toAbsolutePath().getParent());
+            Files.writeString(snapshotPath, "[]");
+        }
+
+        long start = System.nanoTime();
+        try {
+            indexSnapshot();
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to index users file, starting with empty list", e);
+            snapshotUsers.clear();
+            locationsById.clear();
+            idsByName.clear();
+        }
+        replayJournal();
+        LOAD_TIME.recordSince(start);
+    }
+
+    // Streams the snapshot once, reading only each user's name and ID and skipping everything else
+    private void indexSnapshot() throws IOException {
+        try (InputStream input = Files.newInputStream(snapshotPath);
+             JsonParser parser = objectMapper.getFactory().createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array of users in " + snapshotPath);
+            }
+
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                long start = parser.currentTokenLocation().getByteOffset();
+                String name = null;
+                String userId = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    JsonToken value = parser.nextToken();
+                    if ("name".equals(field) && value == JsonToken.VALUE_STRING) {
+                        name = parser.getText();
+                    } else if ("user_id".equals(field) && value == JsonToken.VALUE_STRING) {
+                        userId = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                long end = parser.currentTokenLocation().getByteOffset() + 1;
+                addLocation(new UserLocation(name, userId, start, (int) (end - start)));
+            }
+        }
+    }
+
+    private void addLocation(UserLocation location) {
+        snapshotUsers.add(location);
+        if (location.userId() == null) return;
+
+        locationsById.putIfAbsent(location.userId(), location);
+        if (location.name() != null) {
+            idsByName.putIfAbsent(location.name(), location.userId());
+        }
+    }
+
+    // Applies mutations recorded since the last snapshot; every record is idempotent
+    private void replayJournal() throws IOException {
+        for (JournalRecord record : journal.readAll()) {
+            switch (record.getType()) {
+                case USER_CREATED -> {
+                    User createdUser = record.getUser();
+                    if (createdUser != null && createdUser.getName() != null && createdUser.getUserId() != null
+                            && !idsByName.containsKey(createdUser.getName())) {
+                        putDirty(createdUser);
+                    }
+                }
+                case TICKET_ADDED -> findById(record.getUserId()).ifPresent(existingUser -> {
+                    Ticket ticket = record.getTicket();
+                    if (ticket == null) return;
+                    tickets(existingUser).removeIf(booked -> booked.getTicketId().equals(ticket.getTicketId()));
+                    tickets(existingUser).add(ticket);
+                    putDirty(existingUser);
+                });
+                case TICKET_REMOVED -> findById(record.getUserId()).ifPresent(existingUser -> {
+                    if (tickets(existingUser).removeIf(ticket -> ticket.getTicketId().equals(record.getTicketId()))) {
+                        putDirty(existingUser);
+                    }
+                });
+                case PASSWORD_CHANGED -> findById(record.getUserId()).ifPresent(existingUser -> {
+                    existingUser.setHashedPassword(record.getHashedPassword());
+                    putDirty(existingUser);
+                });
+                default -> log.warning("Ignoring unexpected user journal record " + record.getType());
+            }
+        }
+    }
+
+    @Override
+    public boolean containsName(String name) {
+        lock.lock();
+        try {
+            return name != null && idsByName.containsKey(name);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<User> findByName(String name) {
+        lock.lock();
+        try {
+            return name == null ? Optional.empty() : findById(idsByName.get(name));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<User> findById(String userId) {
+        if (userId == null) return Optional.empty();
+
+        lock.lock();
+        try {
+            User dirtyUser = dirtyUsers.get(userId);
+            if (dirtyUser != null) return Optional.of(dirtyUser);
+
+            User cachedUser = cache.get(userId);
+            if (cachedUser != null) return Optional.of(cachedUser);
+
+            UserLocation location = locationsById.get(userId);
+            if (location == null) return Optional.empty();
+
+            User loadedUser = readUser(location);
+            cache.put(userId, loadedUser);
+            return Optional.of(loadedUser);
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to load user " + userId, e);
+            return Optional.empty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<List<Ticket>> findTickets(String userId) {
+        lock.lock();
+        try {
+            return findById(userId).map(existingUser -> List.copyOf(tickets(existingUser)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return locationsById.size() + (int) dirtyUsers.keySet().stream()
+                    .filter(userId -> !locationsById.containsKey(userId))
+                    .count();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean create(User newUser) throws IOException {
+        if (!createUnsynced(newUser)) return false;
+
+        journal.sync();
+        return true;
+    }
+
+    // Creates the user without waiting for the journal, for callers that sync it once their own locks are released
+    boolean createUnsynced(User newUser) throws IOException {
+        lock.lock();
+        try {
+            if (newUser.getName() == null || newUser.getUserId() == null || idsByName.containsKey(newUser.getName())) {
+                return false;
+            }
+
+            journal.append(JournalRecord.userCreated(newUser));
+            putDirty(newUser);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean addTickets(String userId, List<Ticket> tickets) throws IOException {
+        lock.lock();
+        try {
+            Optional<User> existingUser = findById(userId);
+            if (existingUser.isEmpty()) return false;
+
+            journal.append(tickets.stream()
+                    .map(ticket -> JournalRecord.ticketAdded(userId, ticket))
+                    .toList());
+            tickets(existingUser.get()).addAll(tickets);
+            putDirty(existingUser.get());
+        } finally {
+            lock.unlock();
+        }
+        journal.sync();
+        return true;
+    }
+
+    @Override
+    public boolean removeTicket(String userId, String ticketId) throws IOException {
+        lock.lock();
+        try {
+            Optional<User> existingUser = findById(userId);
+            boolean hasTicket = existingUser.isPresent() && tickets(existingUser.get()).stream()
+                    .anyMatch(ticket -> ticket.getTicketId().equals(ticketId));
+            if (!hasTicket) return false;
+
+            journal.append(JournalRecord.ticketRemoved(userId, ticketId));
+            tickets(existingUser.get()).removeIf(ticket -> ticket.getTicketId().equals(ticketId));
+            putDirty(existingUser.get());
+        } finally {
+            lock.unlock();
+        }
+        journal.sync();
+        return true;
+    }
+
+    @Override
+    public boolean updatePassword(String userId, String hashedPassword) throws IOException {
+        lock.lock();
+        try {
+            Optional<User> existingUser = findById(userId);
+            if (existingUser.isEmpty()) return false;
+
+            journal.append(JournalRecord.passwordChanged(userId, hashedPassword));
+            existingUser.get().setHashedPassword(hashedPassword);
+            putDirty(existingUser.get());
+        } finally {
+            lock.unlock();
+        }
+        journal.sync();
+        return true;
+    }
+
+    /**
+     * Forces the changes made so far to disk under {@link Durability#SYNC}; see {@link Journal#sync}.
+     */
+    void sync() throws IOException {
+        journal.sync();
+    }
+
+    @Override
+    public CompletableFuture<Void> commit() {
+        return journal.commit();
+    }
+
+    @Override
+    public int pendingChanges() {
+        return journal.size();
+    }
+
+    /**
+     * Writes a new snapshot and truncates the journal. Unchanged users are copied byte for byte from the
+     * old snapshot; only users modified since then are serialized.
+     * <p>
+     * The lock is only held to serialize the changed users and note where the journal stands, and later to
+     * rename the new file into place; the file itself is written and forced in between while requests carry
+     * on. Changes made meanwhile stay pending and keep their journal records.
+     */
+    @Override
+    public void compact() throws IOException {
+        compactionLock.lock();
+        try {
+            long start = System.nanoTime();
+            List<SnapshotEntry> snapshot;
+            Journal.Position position;
+            long compactedChange;
+            lock.lock();
+            try {
+                position = journal.position();
+                compactedChange = changeCount;
+                snapshot = snapshotEntries();
+            } finally {
+                lock.unlock();
+            }
+
+            Path temp = Snapshots.tempPathFor(snapshotPath);
+            try {
+                List<UserLocation> newLocations = writeSnapshot(temp, snapshot);
+                lock.lock();
+                try {
+                    // Lookups read the snapshot at the recorded offsets, so the file and offsets change together
+                    Snapshots.moveIntoPlace(temp, snapshotPath);
+                    snapshotUsers.clear();
+                    locationsById.clear();
+                    newLocations.forEach(this::addLocation);
+                    dirtySince.entrySet().removeIf(changed -> {
+                        if (changed.getValue() > compactedChange) return false;
+                        cache.put(changed.getKey(), dirtyUsers.remove(changed.getKey()));
+                        return true;
+                    });
+                } finally {
+                    lock.unlock();
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            journal.truncateBefore(position);
+            SAVE_TIME.recordSince(start);
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    // Caller holds the lock
+    private List<SnapshotEntry> snapshotEntries() throws IOException {
+        List<SnapshotEntry> snapshot = new ArrayList<>(snapshotUsers.size() + dirtyUsers.size());
+        for (UserLocation location : snapshotUsers) {
+            User dirtyUser = location.userId() != null && locationsById.get(location.userId()) == location
+                    ? dirtyUsers.get(location.userId()) : null;
+            snapshot.add(new SnapshotEntry(location.name(), location.userId(), location,
+                    dirtyUser != null ? objectMapper.writeValueAsBytes(dirtyUser) : null));
+        }
+        for (User newUser : dirtyUsers.values()) {
+            if (locationsById.containsKey(newUser.getUserId())) continue;
+
+            snapshot.add(new SnapshotEntry(newUser.getName(), newUser.getUserId(), null,
+                    objectMapper.writeValueAsBytes(newUser)));
+        }
+        return snapshot;
+    }
+
+    // Only compaction replaces the snapshot, and it holds compactionLock, so the old file can be read unlocked
+    private List<UserLocation> writeSnapshot(Path temp, List<SnapshotEntry> snapshot) throws IOException {
+        List<UserLocation> newLocations = new ArrayList<>(snapshot.size());
+        try (FileChannel source = FileChannel.open(snapshotPath, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(target, "[\n");
+            for (SnapshotEntry entry : snapshot) {
+                writeSeparator(target, newLocations);
+                long offset = target.position();
+                if (entry.bytes() != null) {
+                    write(target, entry.bytes());
+                } else {
+                    transfer(source, entry.source(), target);
+                }
+                newLocations.add(new UserLocation(entry.name(), entry.userId(), offset,
+                        (int) (target.position() - offset)));
+            }
+            write(target, "\n]\n");
+            SAVE_BYTES.add(target.position());
+            target.force(false);
+        }
+        return newLocations;
+    }
+
+    private void putDirty(User existingUser) {
+        dirtyUsers.put(existingUser.getUserId(), existingUser);
+        dirtySince.put(existingUser.getUserId(), ++changeCount);
+        cache.remove(existingUser.getUserId());
+        if (existingUser.getName() != null) {
+            idsByName.putIfAbsent(existingUser.getName(), existingUser.getUserId());
+        }
+    }
+
+    private static List<Ticket> tickets(User existingUser) {
+        if (existingUser.getTicketsBooked() == null) {
+            existingUser.setTicketsBooked(new ArrayList<>());
+        }
+        return existingUser.getTicketsBooked();
+    }
+
+    private User readUser(UserLocation location) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(location.length());
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, location.offset() + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of " + snapshotPath);
+                }
+            }
+        }
+        return objectMapper.readValue(buffer.array(), User.class);
+    }
+
+    private static void transfer(FileChannel source, UserLocation location, FileChannel target) throws IOException {
+        long copied = 0;
+        while (copied < location.length()) {
+            copied += source.transferTo(location.offset() + copied, location.length() - copied, target);
+        }
+    }
+
+    private static void writeSeparator(FileChannel target, List<UserLocation> written) throws IOException {
+        if (!written.isEmpty()) {
+            write(target, ",\n");
+        }
+    }
+
+    private static void write(FileChannel target, String text) throws IOException {
+        write(target, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void write(FileChannel target, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,505 @@
+package ticket.booking.server;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import ticket.booking.entities.LegRange;
+import ticket.booking.entities.SeatInventory;
+import ticket.booking.entities.Ticket;
+import ticket.booking.entities.Train;
+import ticket.booking.entities.User;
+import ticket.booking.metrics.Metrics;
+import ticket.booking.persistence.MappedSeatStore;
+import ticket.booking.service.SeatHoldService;
+import ticket.booking.service.SessionManager;
+import ticket.booking.service.TrainService;
+import ticket.booking.service.UserBookingService;
+import ticket.booking.util.TimeUtil;
+import ticket.booking.util.UserServiceUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * JSON booking API over the JDK's built-in HTTP server, sharing one {@link UserBookingService} and
+ * {@link TrainService} across all requests.
+ * <p>
+ * Endpoints (authenticated ones take {@code Authorization: Bearer <token>} from {@code /login}):
+ * <pre>
+ * POST   /signup                  {"name", "password"}
+ * POST   /login                   {"name", "password"}            -> {"token"}
+ * POST   /logout                  (authenticated)
+ * GET    /trains?source=&amp;destination=[&amp;departFrom=HH:mm&amp;departTo=HH:mm][&amp;minSeats=]
+ *                                  -> [{"train_id", "train_no", "departure", "arrival", "free_seats"}]
+ * GET    /trains/{id}/seats?source=&amp;destination=                 -> 1 marks a seat taken on the journey
+ * GET    /bookings                (authenticated)
+ * POST   /bookings                (authenticated) {"train_id", "source", "destination", "row", "seat"} or {..., "count"}
+ * DELETE /bookings/{ticketId}     (authenticated)
+ * </pre>
+ * Each request runs on its own virtual thread where the JVM supports them, and on a fixed pool otherwise.
+ */
+public class BookingServer {
+    private static final Logger log = Logger.getLogger(BookingServer.class.getName());
+    private static final int DEFAULT_PORT = 8080;
+    private static final int BACKLOG = 1024;
+    private static final int FALLBACK_THREADS = 256;
+
+    private final HttpServer httpServer;
+    private final ExecutorService executor;
+    private final UserBookingService userBookingService;
+    private final TrainService trainService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public BookingServer(InetSocketAddress address, UserBookingService userBookingService, TrainService trainService)
+            throws IOException {
+        this.userBookingService = userBookingService;
+        this.trainService = trainService;
+        this.httpServer = HttpServer.create(address, BACKLOG);
+        this.executor = newRequestExecutor();
+        httpServer.setExecutor(executor);
+        httpServer.createContext("/signup", route(this::signUp));
+        httpServer.createContext("/login", route(this::login));
+        httpServer.createContext("/logout", route(this::logout));
+        httpServer.createContext("/trains", route(this::trains));
+        httpServer.createContext("/bookings", route(this::bookings));
+        httpServer.createContext("/holds", route(this::holds));
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : Integer.getInteger("booking.port", DEFAULT_PORT);
+
+        Metrics.registerMBean();
+        TrainService trainService = new TrainService(MappedSeatStore.configuredPolicy());
+        UserBookingService userBookingService = new UserBookingService(null, new SessionManager(), trainService);
+        trainService.watchForChanges();
+
+        BookingServer server = new BookingServer(new InetSocketAddress(port), userBookingService, trainService);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(1);
+            userBookingService.close();
+            userBookingService.compact();
+            trainService.compact();
+        }, "booking-server-shutdown"));
+        server.start();
+        System.out.println("Train Booking API listening on port " + server.getPort());
+    }
+
+    public void start() {
+        httpServer.start();
+    }
+
+    /**
+     * Stops accepting requests, waits up to {@code delaySeconds} for running ones, then stops the executor.
+     */
+    public void stop(int delaySeconds) {
+        httpServer.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    // Virtual threads (Java 21+) let thousands of requests block on I/O without a platform thread each
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.info("Virtual threads are not available, serving requests on " + FALLBACK_THREADS + " threads");
+            return Executors.newFixedThreadPool(FALLBACK_THREADS);
+        }
+    }
+
+    private Response signUp(HttpExchange exchange) throws IOException {
+        requireMethod(exchange, "POST");
+        JsonNode body = readBody(exchange);
+        String name = requiredText(body, "name");
+        String password = requiredText(body, "password");
+        if (!UserServiceUtil.isValidPassword(password)) {
+            throw new ApiException(400, "Password must be between 6 and 100 characters");
+        }
+
+        User user = await(userBookingService.signUpAsync(name, password))
+                .orElseThrow(() -> new ApiException(409, "User already exists"));
+        await(userBookingService.commit());
+        return new Response(201, Map.of("user_id", user.getUserId()));
+    }
+
+    private Response login(HttpExchange exchange) throws IOException {
+        requireMethod(exchange, "POST");
+        JsonNode body = readBody(exchange);
+        return await(userBookingService.loginUserAsync(requiredText(body, "name"), requiredText(body, "password")))
+                .map(token -> new Response(200, Map.of("token", token)))
+                .orElseThrow(() -> new ApiException(401, "Invalid username or password"));
+    }
+
+    private Response logout(HttpExchange exchange) {
+        requireMethod(exchange, "POST");
+        userBookingService.logout(requireSession(exchange));
+        return new Response(204, null);
+    }
+
+    private Response trains(HttpExchange exchange) {
+        requireMethod(exchange, "GET");
+        Map<String, String> query = queryParameters(exchange);
+        List<String> path = pathSegments(exchange);
+
+        if (path.size() == 1) {
+            String source = query.get("source");
+            String destination = query.get("destination");
+            if (source == null || destination == null) {
+                throw new ApiException(400, "Query parameters source and destination are required");
+            }
+            boolean inWindow = query.containsKey("departFrom") || query.containsKey("departTo");
+            int departFrom = inWindow ? timeParameter(query, "departFrom", "00:00") : 0;
+            int departTo = inWindow ? timeParameter(query, "departTo", "23:59:59") : 0;
+            int minSeats = query.containsKey("minSeats") ? seatsParameter(query.get("minSeats")) : 0;
+            List<TrainService.TrainAvailability> results = inWindow
+                    ? userBookingService.getAvailableTrains(source, destination, departFrom, departTo, minSeats)
+                    : userBookingService.getAvailableTrains(source, destination, minSeats);
+            return new Response(200, results.stream()
+                    .map(result -> trainSummary(result, source, destination))
+                    .toList());
+        }
+        if (path.size() == 3 && "seats".equals(path.get(2))) {
+            Train train = findTrain(path.get(1));
+            LegRange legs = journeyLegs(train, query.get("source"), query.get("destination"));
+            return new Response(200, seatMap(train, legs));
+        }
+        throw new ApiException(404, "Not found");
+    }
+
+    private Response bookings(HttpExchange exchange) throws IOException {
+        String token = requireSession(exchange);
+        List<String> path = pathSegments(exchange);
+
+        if (path.size() == 1 && "GET".equals(exchange.getRequestMethod())) {
+            return userBookingService.getBookings(token)
+                    .map(tickets -> new Response(200, tickets))
+                    .orElseThrow(() -> new ApiException(401, "Session expired"));
+        }
+        if (path.size() == 1 && "POST".equals(exchange.getRequestMethod())) {
+            return book(token, readBody(exchange));
+        }
+        if (path.size() == 2 && "DELETE".equals(exchange.getRequestMethod())) {
+            if (!userBookingService.cancelBooking(token, path.get(1))) {
+                throw new ApiException(404, "No booking " + path.get(1));
+            }
+            await(userBookingService.commit());
+            return new Response(204, null);
+        }
+        throw new ApiException(path.size() <= 2 ? 405 : 404, path.size() <= 2 ? "Method not allowed" : "Not found");
+    }
+
+    private Response book(String token, JsonNode body) {
+        Train train = findTrain(requiredText(body, "train_id"));
+        String source = body.path("source").asText(firstStation(train));
+        String destination = body.path("destination").asText(lastStation(train));
+        journeyLegs(train, source, destination);
+
+        if (body.has("count")) {
+            int count = body.path("count").asInt();
+            if (count <= 0) {
+                throw new ApiException(400, "Field count must be positive");
+            }
+            List<Ticket> tickets = userBookingService.bookGroup(token, train, source, destination, count);
+            if (tickets.isEmpty()) {
+                throw new ApiException(409, "Can't find " + count + " free seats on this train");
+            }
+            await(userBookingService.commit());
+            return new Response(201, tickets);
+        }
+
+        if (!body.path("row").canConvertToInt() || !body.path("seat").canConvertToInt()) {
+            throw new ApiException(400, "Fields row and seat, or count, are required");
+        }
+        int row = body.path("row").asInt();
+        int seat = body.path("seat").asInt();
+        if (train.getSeatInventory() == null || !train.getSeatInventory().isValidSeat(row, seat)) {
+            throw new ApiException(400, "Invalid row or seat number");
+        }
+        Ticket ticket = userBookingService.bookTicket(token, train, source, destination, row, seat)
+                .orElseThrow(() -> new ApiException(409, "Seat is already booked"));
+        await(userBookingService.commit());
+        return new Response(201, List.of(ticket));
+    }
+
+    private Response holds(HttpExchange exchange) throws IOException {
+        String token = requireSession(exchange);
+        List<String> path = pathSegments(exchange);
+
+        if (path.size() == 1 && "POST".equals(exchange.getRequestMethod())) {
+            return hold(token, readBody(exchange));
+        }
+        if (path.size() == 3 && "confirm".equals(path.get(2)) && "POST".equals(exchange.getRequestMethod())) {
+            List<Ticket> tickets = userBookingService.confirmHold(token, path.get(1));
+            if (tickets.isEmpty()) {
+                throw new ApiException(404, "No hold " + path.get(1));
+            }
+            await(userBookingService.commit());
+            return new Response(201, tickets);
+        }
+        if (path.size() == 2 && "DELETE".equals(exchange.getRequestMethod())) {
+            if (!userBookingService.releaseHold(token, path.get(1))) {
+                throw new ApiException(404, "No hold " + path.get(1));
+            }
+            return new Response(204, null);
+        }
+        throw new ApiException(path.size() <= 3 ? 405 : 404, path.size() <= 3 ? "Method not allowed" : "Not found");
+    }
+
+    private Response hold(String token, JsonNode body) {
+        Train train = findTrain(requiredText(body, "train_id"));
+        String source = body.path("source").asText(firstStation(train));
+        String destination = body.path("destination").asText(lastStation(train));
+        journeyLegs(train, source, destination);
+
+        if (body.has("count")) {
+            int count = body.path("count").asInt();
+            if (count <= 0) {
+                throw new ApiException(400, "Field count must be positive");
+            }
+            return userBookingService.holdSeats(token, train, source, destination, count)
+                    .map(hold -> new Response(201, holdView(hold)))
+                    .orElseThrow(() -> new ApiException(409, "Can't find " + count + " free seats on this train"));
+        }
+
+        if (!body.path("row").canConvertToInt() || !body.path("seat").canConvertToInt()) {
+            throw new ApiException(400, "Fields row and seat, or count, are required");
+        }
+        int row = body.path("row").asInt();
+        int seat = body.path("seat").asInt();
+        if (train.getSeatInventory() == null || !train.getSeatInventory().isValidSeat(row, seat)) {
+            throw new ApiException(400, "Invalid row or seat number");
+        }
+        return userBookingService.holdSeat(token, train, source, destination, row, seat)
+                .map(hold -> new Response(201, holdView(hold)))
+                .orElseThrow(() -> new ApiException(409, "Seat is already taken"));
+    }
+
+    private static Map<String, Object> holdView(SeatHoldService.Hold hold) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("hold_id", hold.holdId());
+        view.put("train_id", hold.trainId());
+        view.put("source", hold.source());
+        view.put("destination", hold.destination());
+        view.put("seats", hold.seats());
+        view.put("expires_in_seconds", Math.max(0, (hold.expiresAtMillis() - System.currentTimeMillis()) / 1000));
+        return view;
+    }
+
+    // What a search result shows of a train: its times and free seats for the journey, not its seat map
+    private static Map<String, Object> trainSummary(TrainService.TrainAvailability result, String source,
+                                                    String destination) {
+        Train train = result.train();
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("train_id", train.getTrainId());
+        summary.put("train_no", train.getTrainNo());
+        summary.put("departure", train.timeAt(source));
+        summary.put("arrival", train.timeAt(destination));
+        summary.put("free_seats", result.freeSeats());
+        return summary;
+    }
+
+    private Map<String, Object> seatMap(Train train, LegRange legs) {
+        SeatInventory inventory = userBookingService.fetchSeats(train);
+        List<List<Integer>> seats = new ArrayList<>(inventory.getRowCount());
+        for (int row = 0; row < inventory.getRowCount(); row++) {
+            List<Integer> rowSeats = new ArrayList<>(inventory.getSeatCount(row));
+            for (int seat = 0; seat < inventory.getSeatCount(row); seat++) {
+                rowSeats.add(inventory.isAvailable(row, seat, legs.fromLeg(), legs.toLeg()) ? 0 : 1);
+            }
+            seats.add(rowSeats);
+        }
+
+        Map<String, Object> seatMap = new LinkedHashMap<>();
+        seatMap.put("train_id", train.getTrainId());
+        seatMap.put("seats", seats);
+        return seatMap;
+    }
+
+    private Train findTrain(String trainId) {
+        return trainService.findTrain(trainId)
+                .orElseThrow(() -> new ApiException(404, "No train " + trainId));
+    }
+
+    // Legs between the two stations, or the whole run when neither is given
+    private static LegRange journeyLegs(Train train, String source, String destination) {
+        if (source == null && destination == null) {
+            return train.fullRun();
+        }
+        return train.legRange(source != null ? source : firstStation(train), destination != null ? destination : lastStation(train))
+                .orElseThrow(() -> new ApiException(400, "Train " + train.getTrainId() + " does not run from "
+                        + source + " to " + destination));
+    }
+
+    private static String firstStation(Train train) {
+        return train.getStations() != null && !train.getStations().isEmpty() ? train.getStations().get(0) : null;
+    }
+
+    private static String lastStation(Train train) {
+        List<String> stations = train.getStations();
+        return stations != null && !stations.isEmpty() ? stations.get(stations.size() - 1) : null;
+    }
+
+    private String requireSession(HttpExchange exchange) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        String token = authorization != null && authorization.startsWith("Bearer ")
+                ? authorization.substring("Bearer ".length()).trim() : null;
+        if (userBookingService.findSessionUser(token).isEmpty()) {
+            throw new ApiException(401, "Login required");
+        }
+        return token;
+    }
+
+    private static void requireMethod(HttpExchange exchange, String method) {
+        if (!method.equals(exchange.getRequestMethod())) {
+            throw new ApiException(405, "Method not allowed");
+        }
+    }
+
+    private JsonNode readBody(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            JsonNode json = objectMapper.readTree(body);
+            if (json == null || !json.isObject()) {
+                throw new ApiException(400, "Expected a JSON object");
+            }
+            return json;
+        } catch (JsonProcessingException e) {
+            throw new ApiException(400, "Malformed JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private static String requiredText(JsonNode body, String field) {
+        JsonNode value = body.get(field);
+        if (value == null || !value.isTextual() || value.asText().isBlank()) {
+            throw new ApiException(400, "Field " + field + " is required");
+        }
+        return value.asText();
+    }
+
+    private static int timeParameter(Map<String, String> query, String name, String defaultValue) {
+        int seconds = TimeUtil.toSecondOfDay(query.getOrDefault(name, defaultValue));
+        if (seconds == TimeUtil.NO_TIME) {
+            throw new ApiException(400, "Query parameter " + name + " must be a time such as 06:30");
+        }
+        return seconds;
+    }
+
+    private static int seatsParameter(String value) {
+        try {
+            int seats = Integer.parseInt(value.trim());
+            if (seats >= 0) return seats;
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new ApiException(400, "Query parameter minSeats must be a non-negative number");
+    }
+
+    // Path below the context root, e.g. /trains/123/seats -> [trains, 123, seats]
+    private static List<String> pathSegments(HttpExchange exchange) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : exchange.getRequestURI().getRawPath().split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(URLDecoder.decode(segment, StandardCharsets.UTF_8));
+            }
+        }
+        return segments;
+    }
+
+    private static Map<String, String> queryParameters(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) return parameters;
+
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private HttpHandler route(Route route) {
+        return exchange -> {
+            Response response;
+            try {
+                response = route.handle(exchange);
+            } catch (ApiException e) {
+                response = new Response(e.status, Map.of("error", e.getMessage()));
+            } catch (RejectedExecutionException e) {
+                response = new Response(503, Map.of("error", "Server is busy, try again shortly"));
+            } catch (RuntimeException | IOException e) {
+                log.log(Level.SEVERE, "Failed to handle " + exchange.getRequestMethod() + " " + exchange.getRequestURI(), e);
+                response = new Response(500, Map.of("error", "Internal server error"));
+            }
+            send(exchange, response);
+        };
+    }
+
+    // Waits for password work or a journal commit on the request's own (virtual) thread, surfacing its failure as thrown
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void send(HttpExchange exchange, Response response) throws IOException {
+        try (exchange) {
+            if (response.body() == null) {
+                exchange.sendResponseHeaders(response.status(), -1);
+                return;
+            }
+            byte[] bytes = objectMapper.writeValueAsBytes(response.body());
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(response.status(), bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    private record Response(int status, Object body) {}
+
+    @FunctionalInterface
+    private interface Route {
+        Response handle(HttpExchange exchange) throws IOException;
+    }
+
+    private static class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
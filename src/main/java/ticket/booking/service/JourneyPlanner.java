@@ -0,0 +1,289 @@
+package ticket.booking.service;
+
+import ticket.booking.entities.Train;
+import ticket.booking.util.TimeUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Journeys with changes of train, found with the Connection Scan Algorithm.
+ * <p>
+ * The catalog is compiled once into elementary connections (one train running from one timed stop to the
+ * next) held in parallel arrays sorted by departure. A query is then a few linear scans over those arrays
+ * from the requested departure onward, with per-query arrays indexed by station and trip; no graph is
+ * built. Each scan allows one more train than the previous one, which yields the earliest arrival for every
+ * number of changes up to the limit. Stations are matched case-insensitively.
+ * <p>
+ * Timetables repeat daily and {@code stationTimes} holds times of day, so a time earlier than the previous
+ * stop's is taken to be on the next day, and every connection is compiled for two consecutive days so that
+ * evening queries can continue on the next morning's trains. Query and result times are seconds after
+ * midnight of the day of departure and may exceed one day.
+ */
+public class JourneyPlanner {
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+    private static final int DAYS = 2;
+    private static final int UNREACHED = Integer.MAX_VALUE;
+
+    private final int minTransferSeconds;
+    private final Map<String, Integer> stationIds;
+    private final String[] stationNames;
+    private final String[] tripTrainIds;
+    // Connection c runs trip tripOf[c] from fromStation[c] at departure[c] to toStation[c] at arrival[c]
+    private final int[] fromStation;
+    private final int[] toStation;
+    private final int[] departure;
+    private final int[] arrival;
+    private final int[] tripOf;
+
+    /**
+     * A ride on one train from {@code from} to {@code to}.
+     */
+    public record Leg(String trainId, String from, String to, int departure, int arrival) {}
+
+    /**
+     * Rides in travel order; consecutive legs change train at the same station.
+     */
+    public record Journey(List<Leg> legs) {
+        public int departure() {
+            return legs.get(0).departure();
+        }
+
+        public int arrival() {
+            return legs.get(legs.size() - 1).arrival();
+        }
+
+        public int transfers() {
+            return legs.size() - 1;
+        }
+    }
+
+    private JourneyPlanner(int minTransferSeconds, Map<String, Integer> stationIds, String[] stationNames,
+                           String[] tripTrainIds, int[] fromStation, int[] toStation, int[] departure, int[] arrival,
+                           int[] tripOf) {
+        this.minTransferSeconds = minTransferSeconds;
+        this.stationIds = stationIds;
+        this.stationNames = stationNames;
+        this.tripTrainIds = tripTrainIds;
+        this.fromStation = fromStation;
+        this.toStation = toStation;
+        this.departure = departure;
+        this.arrival = arrival;
+        this.tripOf = tripOf;
+    }
+
+    /**
+     * Compiles the timed stops of {@code trains}. Changing trains takes at least {@code minTransferSeconds}.
+     */
+    public static JourneyPlanner compile(List<Train> trains, int minTransferSeconds) {
+        Map<String, Integer> stationIds = new HashMap<>();
+        List<String> stationNames = new ArrayList<>();
+        List<String> trainIds = new ArrayList<>();
+        // Per connection of the first day, in trip and stop order: from, to, departure, arrival, train
+        List<int[]> dayConnections = new ArrayList<>();
+
+        for (Train train : trains) {
+            if (train == null || train.getTrainId() == null || train.getStations() == null) continue;
+
+            int trainIndex = trainIds.size();
+            trainIds.add(train.getTrainId());
+            int previousStation = -1;
+            int previousTime = 0;
+            int dayOffset = 0;
+            for (String station : train.getStations()) {
+                int timeOfDay = station != null ? TimeUtil.toSecondOfDay(train.timeAt(station)) : TimeUtil.NO_TIME;
+                // Stops without a time cannot be boarded or left; the train runs through them
+                if (timeOfDay == TimeUtil.NO_TIME) continue;
+
+                int stationId = stationIds.computeIfAbsent(StationIndex.normalize(station), key -> {
+                    stationNames.add(station.trim());
+                    return stationNames.size() - 1;
+                });
+                if (previousStation != -1 && dayOffset + timeOfDay < previousTime) {
+                    dayOffset += SECONDS_PER_DAY;
+                }
+                int time = dayOffset + timeOfDay;
+                if (previousStation != -1 && previousStation != stationId) {
+                    dayConnections.add(new int[] {previousStation, stationId, previousTime, time, trainIndex});
+                }
+                previousStation = stationId;
+                previousTime = time;
+            }
+        }
+
+        // Sort by departure; ties keep trip and stop order, so a trip's zero-length hops are scanned in sequence
+        int count = dayConnections.size() * DAYS;
+        long[] order = new long[count];
+        for (int day = 0; day < DAYS; day++) {
+            for (int index = 0; index < dayConnections.size(); index++) {
+                int connection = day * dayConnections.size() + index;
+                long departure = dayConnections.get(index)[2] + (long) day * SECONDS_PER_DAY;
+                order[connection] = departure << 32 | connection;
+            }
+        }
+        Arrays.sort(order);
+
+        int[] fromStation = new int[count];
+        int[] toStation = new int[count];
+        int[] departure = new int[count];
+        int[] arrival = new int[count];
+        int[] tripOf = new int[count];
+        for (int position = 0; position < count; position++) {
+            int connection = (int) order[position];
+            int day = connection / Math.max(1, dayConnections.size());
+            int[] dayConnection = dayConnections.get(connection % dayConnections.size());
+            fromStation[position] = dayConnection[0];
+            toStation[position] = dayConnection[1];
+            departure[position] = dayConnection[2] + day * SECONDS_PER_DAY;
+            arrival[position] = dayConnection[3] + day * SECONDS_PER_DAY;
+            // Each day's run of a train is its own trip
+            tripOf[position] = dayConnection[4] * DAYS + day;
+        }
+
+        String[] tripTrainIds = new String[trainIds.size() * DAYS];
+        for (int trip = 0; trip < tripTrainIds.length; trip++) {
+            tripTrainIds[trip] = trainIds.get(trip / DAYS);
+        }
+        return new JourneyPlanner(minTransferSeconds, stationIds, stationNames.toArray(new String[0]), tripTrainIds,
+                fromStation, toStation, departure, arrival, tripOf);
+    }
+
+    public int getConnectionCount() {
+        return departure.length;
+    }
+
+    /**
+     * Journey from {@code source} to {@code destination} leaving at or after {@code departAfter} (seconds
+     * after midnight) that arrives first, with any number of changes.
+     */
+    public List<Journey> earliestArrival(String source, String destination, int departAfter) {
+        List<Journey> journeys = plan(source, destination, departAfter, Integer.MAX_VALUE);
+        return journeys.isEmpty() ? journeys : List.of(journeys.get(journeys.size() - 1));
+    }
+
+    /**
+     * Earliest-arriving journeys with at most {@code maxTransfers} changes: the best direct journey, then
+     * the best with one change if it arrives earlier, and so on. Empty if the destination cannot be reached.
+     */
+    public List<Journey> plan(String source, String destination, int departAfter, int maxTransfers) {
+        Integer origin = source != null ? stationIds.get(StationIndex.normalize(source)) : null;
+        Integer target = destination != null ? stationIds.get(StationIndex.normalize(destination)) : null;
+        if (origin == null || target == null || origin.equals(target) || departAfter < 0 || maxTransfers < 0) {
+            return List.of();
+        }
+
+        int stations = stationNames.length;
+        int first = firstDepartureAtOrAfter(departAfter);
+        // Earliest time a train can be boarded at each station using the rounds so far
+        int[] ready = new int[stations];
+        Arrays.fill(ready, UNREACHED);
+        ready[origin] = departAfter;
+
+        // Per round (1 = direct): arrival at each station and the connections boarded and left to get there
+        List<int[]> arrivals = new ArrayList<>();
+        List<int[]> boardings = new ArrayList<>();
+        List<int[]> alightings = new ArrayList<>();
+        int[] boarded = new int[tripTrainIds.length];
+        int bestArrival = UNREACHED;
+        List<Journey> journeys = new ArrayList<>();
+
+        for (int round = 1; round - 1 <= maxTransfers; round++) {
+            int[] roundArrival = new int[stations];
+            int[] roundBoarding = new int[stations];
+            int[] roundAlighting = new int[stations];
+            Arrays.fill(roundArrival, UNREACHED);
+            Arrays.fill(boarded, -1);
+
+            for (int connection = first; connection < departure.length; connection++) {
+                // Nothing departing later can beat the best arrival found so far
+                if (departure[connection] >= bestArrival) break;
+
+                int trip = tripOf[connection];
+                if (boarded[trip] == -1 && ready[fromStation[connection]] <= departure[connection]) {
+                    boarded[trip] = connection;
+                }
+                int station = toStation[connection];
+                if (boarded[trip] != -1 && arrival[connection] < roundArrival[station]) {
+                    roundArrival[station] = arrival[connection];
+                    roundBoarding[station] = boarded[trip];
+                    roundAlighting[station] = connection;
+                }
+            }
+            arrivals.add(roundArrival);
+            boardings.add(roundBoarding);
+            alightings.add(roundAlighting);
+
+            if (roundArrival[target] < bestArrival) {
+                bestArrival = roundArrival[target];
+                journeys.add(reconstruct(arrivals, boardings, alightings, origin, target, round));
+            }
+
+            boolean improved = false;
+            for (int station = 0; station < stations; station++) {
+                if (roundArrival[station] != UNREACHED && roundArrival[station] + minTransferSeconds < ready[station]) {
+                    ready[station] = roundArrival[station] + minTransferSeconds;
+                    improved = true;
+                }
+            }
+            if (!improved) break;
+        }
+        return journeys;
+    }
+
+    // Walks back from the target: each leg was boarded at a station reached in some earlier round in time to change
+    private Journey reconstruct(List<int[]> arrivals, List<int[]> boardings, List<int[]> alightings, int origin,
+                                int target, int round) {
+        List<Leg> legs = new ArrayList<>();
+        int station = target;
+        int legRound = round;
+        while (true) {
+            int boarding = boardings.get(legRound - 1)[station];
+            int alighting = alightings.get(legRound - 1)[station];
+            legs.add(new Leg(tripTrainIds[tripOf[boarding]], stationNames[fromStation[boarding]],
+                    stationNames[toStation[alighting]], departure[boarding], arrival[alighting]));
+
+            station = fromStation[boarding];
+            if (station == origin) break;
+
+            int boardingTime = departure[boarding];
+            int previousRound = 1;
+            while (arrivals.get(previousRound - 1)[station] == UNREACHED
+                    || arrivals.get(previousRound - 1)[station] + minTransferSeconds > boardingTime) {
+                previousRound++;
+            }
+            legRound = previousRound;
+        }
+
+        List<Leg> inOrder = new ArrayList<>(legs.size());
+        for (int leg = legs.size() - 1; leg >= 0; leg--) {
+            inOrder.add(legs.get(leg));
+        }
+        return new Journey(inOrder);
+    }
+
+    private int firstDepartureAtOrAfter(int time) {
+        int low = 0;
+        int high = departure.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (departure[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * {@code HH:mm:ss} of a planner time, with {@code (+n)} when it falls on a later day.
+     */
+    public static String formatTime(int time) {
+        String timeOfDay = TimeUtil.fromSecondOfDay(time % SECONDS_PER_DAY);
+        int days = time / SECONDS_PER_DAY;
+        return days > 0 ? timeOfDay + " (+" + days + ")" : timeOfDay;
+    }
+}
@@ -0,0 +1,88 @@
+package ticket.booking.service;
+
+import ticket.booking.metrics.Counter;
+import ticket.booking.metrics.Metrics;
+import ticket.booking.util.UserServiceUtil;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs BCrypt hashing and checking on a dedicated pool with one thread per core and a bounded queue, so a
+ * signup or login spike costs at most those cores and the rest of the service keeps serving. When the queue
+ * is full, new work is refused immediately with {@link RejectedExecutionException} instead of queueing up
+ * behind seconds of hashing.
+ */
+public class PasswordService implements AutoCloseable {
+    private static final int QUEUED_TASKS_PER_THREAD = 16;
+    private static final Counter REJECTIONS = Metrics.counter("password.rejections");
+
+    private final ThreadPoolExecutor executor;
+
+    public PasswordService() {
+        this(Runtime.getRuntime().availableProcessors(),
+                Runtime.getRuntime().availableProcessors() * QUEUED_TASKS_PER_THREAD);
+    }
+
+    public PasswordService(int threads, int queueCapacity) {
+        if (threads <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Password pool size and queue capacity must be positive");
+        }
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), daemonThreads(), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Hashes {@code plainPassword} at the configured cost.
+     *
+     * @throws RejectedExecutionException if the pool is saturated
+     */
+    public CompletableFuture<String> hash(String plainPassword) {
+        return submit(() -> UserServiceUtil.hashPassword(plainPassword));
+    }
+
+    /**
+     * Whether {@code plainPassword} matches {@code hashedPassword}.
+     *
+     * @throws RejectedExecutionException if the pool is saturated
+     */
+    public CompletableFuture<Boolean> check(String plainPassword, String hashedPassword) {
+        return submit(() -> UserServiceUtil.checkPassword(plainPassword, hashedPassword));
+    }
+
+    /**
+     * Tasks waiting for a thread.
+     */
+    public int queuedTasks() {
+        return executor.getQueue().size();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            REJECTIONS.increment();
+            throw e;
+        }
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger count = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, "password-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,201 @@
+package ticket.booking.service;
+
+import ticket.booking.entities.LegRange;
+import ticket.booking.entities.SeatPosition;
+import ticket.booking.entities.Train;
+import ticket.booking.metrics.Counter;
+import ticket.booking.metrics.Metrics;
+import ticket.booking.util.TimingWheel;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Seats held for a user while a booking is being completed. A hold keeps the seats from everyone else until it
+ * is confirmed, released or runs out ({@code -Dbooking.holdSeconds}, 300 by default), and is never persisted:
+ * after a restart the seats are simply free again.
+ * <p>
+ * Expiry runs on a {@link TimingWheel} advanced by one ticker thread shared by all services, so holding and
+ * expiring cost the same however many holds are live, and no hold has a timer of its own. Whichever of
+ * expiry, confirmation and release removes a hold from the map first owns its seats. {@link #close} stops the
+ * service's ticking and releases the holds still live.
+ */
+public class SeatHoldService implements AutoCloseable {
+    private static final Logger log = Logger.getLogger(SeatHoldService.class.getName());
+    private static final Counter HOLDS = Metrics.counter("holds.created");
+    private static final Counter EXPIRED = Metrics.counter("holds.expired");
+    private static final long TICK_MILLIS = 100;
+    private static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofSeconds(Long.getLong("booking.holdSeconds", 300));
+    private static final ScheduledExecutorService TICKER = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "seat-hold-expiry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Seats held on legs {@code legs} of a train until {@code expiresAtMillis}.
+     */
+    public record Hold(String holdId, String userId, String trainId, String source, String destination, LegRange legs,
+                       List<SeatPosition> seats, long expiresAtMillis) {}
+
+    private static final class ActiveHold {
+        private final Hold hold;
+        // Set right after the hold is in the map, so that an expiry can always find it there
+        private volatile TimingWheel.Timeout<String> timeout;
+
+        private ActiveHold(Hold hold) {
+            this.hold = hold;
+        }
+    }
+
+    private final TrainService trainService;
+    private final long timeToLiveMillis;
+    private final Map<String, ActiveHold> holds = new ConcurrentHashMap<>();
+    private final TimingWheel<String> wheel = new TimingWheel<>(TICK_MILLIS, System.currentTimeMillis());
+    // Expiry task on the shared ticker, started by the first hold; both fields change under the monitor
+    private volatile ScheduledFuture<?> ticker;
+    private boolean closed;
+
+    public SeatHoldService(TrainService trainService) {
+        this(trainService, DEFAULT_TIME_TO_LIVE);
+    }
+
+    public SeatHoldService(TrainService trainService, Duration timeToLive) {
+        this.trainService = trainService;
+        this.timeToLiveMillis = timeToLive.toMillis();
+    }
+
+    /**
+     * Holds {@code count} seats on legs {@code legs} of the catalog train, side by side when possible.
+     */
+    public Optional<Hold> holdGroup(String userId, Train train, String source, String destination, LegRange legs,
+                                    int count) {
+        List<SeatPosition> seats = trainService.holdGroup(train, count, legs);
+        return seats.isEmpty() ? Optional.empty() : Optional.of(register(userId, train, source, destination, legs, seats));
+    }
+
+    /**
+     * Holds the given seats on legs {@code legs} of the catalog train, all of them or none.
+     */
+    public Optional<Hold> holdSeats(String userId, Train train, String source, String destination, LegRange legs,
+                                    List<SeatPosition> seats) {
+        return trainService.holdSeats(train, seats, legs)
+                ? Optional.of(register(userId, train, source, destination, legs, seats))
+                : Optional.empty();
+    }
+
+    private Hold register(String userId, Train train, String source, String destination, LegRange legs,
+                          List<SeatPosition> seats) {
+        Hold hold = new Hold(UUID.randomUUID().toString(), userId, train.getTrainId(), source, destination, legs,
+                List.copyOf(seats), System.currentTimeMillis() + timeToLiveMillis);
+        ActiveHold active = new ActiveHold(hold);
+        holds.put(hold.holdId(), active);
+        active.timeout = wheel.schedule(hold.holdId(), hold.expiresAtMillis());
+        HOLDS.increment();
+        startTicking();
+        return hold;
+    }
+
+    /**
+     * The live hold with this ID, if any.
+     */
+    public Optional<Hold> find(String holdId) {
+        return Optional.ofNullable(holdId).map(holds::get).map(active -> active.hold);
+    }
+
+    /**
+     * Takes the user's live hold out of the service so it can no longer expire; its seats stay held for the
+     * caller to confirm or release through {@link TrainService}. Empty if there is no such hold or it belongs to
+     * someone else.
+     */
+    public Optional<Hold> take(String userId, String holdId) {
+        ActiveHold active = holdId != null ? holds.get(holdId) : null;
+        if (active == null || !active.hold.userId().equals(userId) || !holds.remove(holdId, active)) {
+            return Optional.empty();
+        }
+        wheel.cancel(active.timeout);
+        return Optional.of(active.hold);
+    }
+
+    /**
+     * Drops the user's hold and puts its seats back on sale; returns false if there was no such hold.
+     */
+    public boolean release(String userId, String holdId) {
+        Optional<Hold> hold = take(userId, holdId);
+        hold.ifPresent(this::releaseSeats);
+        return hold.isPresent();
+    }
+
+    /**
+     * Number of live holds.
+     */
+    public int size() {
+        return holds.size();
+    }
+
+    /**
+     * Releases every hold whose time ran out by {@code nowMillis}. Called by the ticker.
+     */
+    void expire(long nowMillis) {
+        for (String holdId : wheel.advance(nowMillis)) {
+            ActiveHold active = holds.remove(holdId);
+            if (active != null) {
+                releaseSeats(active.hold);
+                EXPIRED.increment();
+            }
+        }
+    }
+
+    private void releaseSeats(Hold hold) {
+        trainService.findTrain(hold.trainId())
+                .ifPresent(train -> trainService.releaseHeldSeats(train, hold.seats(), hold.legs()));
+    }
+
+    private void startTicking() {
+        if (ticker != null) return;
+
+        synchronized (this) {
+            if (ticker != null || closed) return;
+
+            ticker = TICKER.scheduleAtFixedRate(() -> {
+                try {
+                    expire(System.currentTimeMillis());
+                } catch (RuntimeException e) {
+                    log.log(Level.SEVERE, "Failed to expire seat holds", e);
+                }
+            }, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Cancels the expiry task and puts the seats of every live hold back on sale. Holds made afterwards are
+     * never expired, so the owner closes the service only once it takes no more requests.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            if (ticker != null) {
+                ticker.cancel(false);
+                ticker = null;
+            }
+        }
+        for (String holdId : holds.keySet()) {
+            ActiveHold active = holds.remove(holdId);
+            if (active != null) {
+                wheel.cancel(active.timeout);
+                releaseSeats(active.hold);
+            }
+        }
+    }
+}
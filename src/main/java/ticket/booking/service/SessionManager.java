@@ -0,0 +1,98 @@
+package ticket.booking.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Bounded, expiring table of login sessions.
+ * Tokens have the form {@code <id>.<secret>}: the id selects the session and the secret is compared
+ * in constant time, so validating a request costs a map lookup instead of a BCrypt check.
+ */
+public class SessionManager {
+    private static final int DEFAULT_MAX_SESSIONS = 10_000;
+    private static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(30);
+    private static final int ID_BYTES = 12;
+    private static final int SECRET_BYTES = 24;
+
+    private final SecureRandom random = new SecureRandom();
+    private final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    private final long timeToLiveNanos;
+    private final Map<String, Session> sessions;
+
+    public SessionManager() {
+        this(DEFAULT_MAX_SESSIONS, DEFAULT_TIME_TO_LIVE);
+    }
+
+    public SessionManager(int maxSessions, Duration timeToLive) {
+        if (maxSessions <= 0 || timeToLive.isNegative() || timeToLive.isZero()) {
+            throw new IllegalArgumentException("Session limits must be positive");
+        }
+        this.timeToLiveNanos = timeToLive.toNanos();
+        // Access-ordered so the least recently used session is evicted once the table is full
+        this.sessions = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+                return size() > maxSessions;
+            }
+        };
+    }
+
+    public String createSession(String userId) {
+        if (userId == null) {
+            throw new IllegalArgumentException("User ID cannot be null");
+        }
+
+        String id = randomToken(ID_BYTES);
+        String secret = randomToken(SECRET_BYTES);
+        synchronized (sessions) {
+            sessions.put(id, new Session(userId, secret.getBytes(StandardCharsets.US_ASCII),
+                    System.nanoTime() + timeToLiveNanos));
+        }
+        return id + "." + secret;
+    }
+
+    /**
+     * Returns the user ID the token was issued to, or empty if it is unknown, forged or expired.
+     */
+    public Optional<String> resolveUserId(String token) {
+        if (token == null) return Optional.empty();
+
+        int separator = token.indexOf('.');
+        if (separator <= 0) return Optional.empty();
+
+        String id = token.substring(0, separator);
+        byte[] secret = token.substring(separator + 1).getBytes(StandardCharsets.US_ASCII);
+        synchronized (sessions) {
+            Session session = sessions.get(id);
+            if (session == null) return Optional.empty();
+
+            if (System.nanoTime() - session.expiresAtNanos() >= 0) {
+                sessions.remove(id);
+                return Optional.empty();
+            }
+            return MessageDigest.isEqual(session.secret(), secret) ? Optional.of(session.userId()) : Optional.empty();
+        }
+    }
+
+    public void invalidate(String token) {
+        if (resolveUserId(token).isEmpty()) return;
+
+        synchronized (sessions) {
+            sessions.remove(token.substring(0, token.indexOf('.')));
+        }
+    }
+
+    private String randomToken(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return encoder.encodeToString(bytes);
+    }
+
+    private record Session(String userId, byte[] secret, long expiresAtNanos) {}
+}
@@ -0,0 +1,176 @@
+package ticket.booking.service;
+
+import ticket.booking.entities.Train;
+import ticket.booking.util.TimeUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Inverted index from normalized station name to the trains stopping there.
+ * Each posting maps a normalized train ID to the stop position of the station on that train,
+ * so a source/destination query only touches the two posting lists involved.
+ * Departure times are kept per station as well, parsed to seconds once, and sorted on first use so a
+ * departure-window query is a binary search plus a scan of the trains inside the window.
+ */
+class StationIndex {
+    private final Map<String, Map<String, Integer>> postings = new HashMap<>();
+    // Normalized station -> normalized train ID -> time at that stop in seconds after midnight, for timed stops
+    private final Map<String, Map<String, Integer>> departureTimes = new HashMap<>();
+    // Sorted copy of departureTimes per station, built by queries (under the caller's read lock, hence
+    // concurrent) and dropped whenever a train at that station changes
+    private final Map<String, Departures> sortedDepartures = new ConcurrentHashMap<>();
+
+    private record Departures(int[] seconds, String[] trainKeys) {}
+
+    static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    void add(Train train) {
+        if (train == null || train.getTrainId() == null || train.getStations() == null) {
+            return;
+        }
+
+        String trainKey = normalize(train.getTrainId());
+        List<String> stations = train.getStations();
+        for (int position = 0; position < stations.size(); position++) {
+            String station = stations.get(position);
+            if (station == null) continue;
+            // Keep the first occurrence so a looping route still answers "source before destination"
+            String stationKey = normalize(station);
+            if (postings.computeIfAbsent(stationKey, key -> new LinkedHashMap<>()).putIfAbsent(trainKey, position) == null) {
+                int time = TimeUtil.toSecondOfDay(train.timeAt(station));
+                if (time != TimeUtil.NO_TIME) {
+                    departureTimes.computeIfAbsent(stationKey, key -> new HashMap<>()).put(trainKey, time);
+                }
+            }
+            sortedDepartures.remove(stationKey);
+        }
+    }
+
+    void remove(Train train) {
+        if (train == null || train.getTrainId() == null || train.getStations() == null) {
+            return;
+        }
+
+        String trainKey = normalize(train.getTrainId());
+        for (String station : train.getStations()) {
+            if (station == null) continue;
+            String stationKey = normalize(station);
+            Map<String, Integer> stationPostings = postings.get(stationKey);
+            if (stationPostings == null) continue;
+            stationPostings.remove(trainKey);
+            if (stationPostings.isEmpty()) {
+                postings.remove(stationKey);
+            }
+            Map<String, Integer> stationTimes = departureTimes.get(stationKey);
+            if (stationTimes != null) {
+                stationTimes.remove(trainKey);
+                if (stationTimes.isEmpty()) {
+                    departureTimes.remove(stationKey);
+                }
+            }
+            sortedDepartures.remove(stationKey);
+        }
+    }
+
+    /**
+     * Returns the normalized IDs of trains that stop at {@code source} before {@code destination}.
+     */
+    List<String> findTrainKeys(String source, String destination) {
+        Map<String, Integer> sourcePostings = postings.get(normalize(source));
+        Map<String, Integer> destinationPostings = postings.get(normalize(destination));
+        if (sourcePostings == null || destinationPostings == null) {
+            return Collections.emptyList();
+        }
+
+        List<String> trainKeys = new ArrayList<>();
+        sourcePostings.forEach((trainKey, sourcePosition) -> {
+            Integer destinationPosition = destinationPostings.get(trainKey);
+            if (destinationPosition != null && sourcePosition < destinationPosition) {
+                trainKeys.add(trainKey);
+            }
+        });
+        return trainKeys;
+    }
+
+    /**
+     * Like {@link #findTrainKeys}, restricted to trains leaving {@code source} between {@code fromSecond} and
+     * {@code toSecond} inclusive, in order of departure. A window ending before it starts wraps past midnight.
+     */
+    List<String> findTrainKeysDeparting(String source, String destination, int fromSecond, int toSecond) {
+        String sourceKey = normalize(source);
+        Map<String, Integer> sourcePostings = postings.get(sourceKey);
+        Map<String, Integer> destinationPostings = postings.get(normalize(destination));
+        if (sourcePostings == null || destinationPostings == null) {
+            return Collections.emptyList();
+        }
+
+        Departures departures = sortedDepartures.computeIfAbsent(sourceKey, this::sortDepartures);
+        List<String> trainKeys = new ArrayList<>();
+        if (fromSecond <= toSecond) {
+            collectDepartures(departures, fromSecond, toSecond, sourcePostings, destinationPostings, trainKeys);
+        } else {
+            collectDepartures(departures, fromSecond, Integer.MAX_VALUE, sourcePostings, destinationPostings, trainKeys);
+            collectDepartures(departures, 0, toSecond, sourcePostings, destinationPostings, trainKeys);
+        }
+        return trainKeys;
+    }
+
+    private static void collectDepartures(Departures departures, int fromSecond, int toSecond,
+                                          Map<String, Integer> sourcePostings, Map<String, Integer> destinationPostings,
+                                          List<String> trainKeys) {
+        int[] seconds = departures.seconds();
+        int low = 0;
+        int high = seconds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (seconds[mid] < fromSecond) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        for (int index = low; index < seconds.length && seconds[index] <= toSecond; index++) {
+            String trainKey = departures.trainKeys()[index];
+            Integer destinationPosition = destinationPostings.get(trainKey);
+            if (destinationPosition != null && sourcePostings.get(trainKey) < destinationPosition) {
+                trainKeys.add(trainKey);
+            }
+        }
+    }
+
+    private Departures sortDepartures(String stationKey) {
+        Map<String, Integer> stationTimes = departureTimes.getOrDefault(stationKey, Map.of());
+        String[] unsortedKeys = stationTimes.keySet().toArray(new String[0]);
+        // Time in the high half, position in the low half: one primitive sort orders by time
+        long[] order = new long[unsortedKeys.length];
+        for (int index = 0; index < unsortedKeys.length; index++) {
+            order[index] = (long) stationTimes.get(unsortedKeys[index]) << 32 | index;
+        }
+        Arrays.sort(order);
+
+        int[] seconds = new int[order.length];
+        String[] trainKeys = new String[order.length];
+        for (int index = 0; index < order.length; index++) {
+            seconds[index] = (int) (order[index] >>> 32);
+            trainKeys[index] = unsortedKeys[(int) order[index]];
+        }
+        return new Departures(seconds, trainKeys);
+    }
+
+    void clear() {
+        postings.clear();
+        departureTimes.clear();
+        sortedDepartures.clear();
+    }
+}
@@ -2,46 +2,310 @@ package ticket.booking.service;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import ticket.booking.entities.LegRange;
+import ticket.booking.entities.SeatInventory;
+import ticket.booking.entities.SeatPosition;
+import ticket.booking.entities.Ticket;
 import ticket.booking.entities.Train;
+import ticket.booking.metrics.Counter;
+import ticket.booking.metrics.LatencyHistogram;
+import ticket.booking.metrics.Metrics;
+import ticket.booking.persistence.CatalogSnapshot;
+import ticket.booking.persistence.Journal;
+import ticket.booking.persistence.JournalRecord;
+import ticket.booking.persistence.PersistenceScheduler;
+import ticket.booking.persistence.MappedSeatStore;
+import ticket.booking.persistence.Snapshots;
 
-import java.io.File;
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.IntStream;
 
 public class TrainService {
     private static final Logger log = Logger.getLogger(TrainService.class.getName());
+    private static final LatencyHistogram SEARCH_TIME = Metrics.histogram("train.search");
+    private static final LatencyHistogram BOOK_TIME = Metrics.histogram("train.book");
+    private static final LatencyHistogram RELEASE_TIME = Metrics.histogram("train.release");
+    private static final LatencyHistogram LOAD_TIME = Metrics.histogram("trains.load");
+    private static final LatencyHistogram SAVE_TIME = Metrics.histogram("trains.save");
+    private static final Counter BOOKINGS = Metrics.counter("train.bookings");
+    private static final Counter BOOKING_FAILURES = Metrics.counter("train.bookingFailures");
+    private static final Counter SAVE_BYTES = Metrics.counter("trains.save.bytes");
     private List<Train> trainList;
+    // Keyed by normalized train ID, in catalog order
+    private final Map<String, Train> trainsById = new LinkedHashMap<>();
+    private final StationIndex stationIndex = new StationIndex();
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private static final String TRAIN_DB_PATH = "src/main/java/ticket/booking/localDb/trains.json";
+    private static final String DEFAULT_DATA_DIRECTORY = "src/main/java/ticket/booking/localDb";
+    private static final int COMPACTION_THRESHOLD = 1000;
+    private static final int GROUP_BOOKING_ATTEMPTS = 3;
+    private static final int MIN_TRANSFER_SECONDS = Integer.getInteger("booking.minTransferMinutes", 10) * 60;
+    private final Path trainFilePath;
+    // Optional binary copy of trains.json, preferred at startup while it is at least as new
+    private final Path binaryFilePath;
+    private final Journal journal;
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    // Held for a whole compaction, so two never write the snapshot at once, and while the watcher compares
+    // modification times, so that it never sees trains.json renamed into place before its time is recorded
+    private final ReentrantLock compactionLock = new ReentrantLock();
+    // Readers and seat bookings share the lock; catalog changes take it exclusively, and so does compaction
+    // while it copies the catalog
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Modification time of trains.json as last read or written by this service
+    private volatile FileTime snapshotModifiedTime;
+    private WatchService watchService;
+    // When set, seat bitmaps live in a memory-mapped file and seat changes are not journaled
+    private final MappedSeatStore seatStore;
+    // Compiled timetable for connecting journeys; dropped whenever a train changes and rebuilt on the next query
+    private volatile JourneyPlanner journeyPlanner;
+    // Normalized IDs of the trains whose inventory is backed by the seat store
+    private final Set<String> mappedTrains = new HashSet<>();
+
+    /**
+     * A search result: the train and the seats free on every leg of the searched journey.
+     */
+    public record TrainAvailability(Train train, int freeSeats) {}
 
     public TrainService() throws IOException {
+        this(null);
+    }
+
+    /**
+     * Creates the service with seats kept in a memory-mapped file flushed per {@code seatStorePolicy},
+     * or on the heap and journaled when it is null.
+     */
+    public TrainService(MappedSeatStore.ForcePolicy seatStorePolicy) throws IOException {
+        this(Paths.get(DEFAULT_DATA_DIRECTORY), seatStorePolicy);
+    }
+
+    /**
+     * Creates the service on the trains.json (and trains.bin, trains.seats) in {@code dataDirectory}.
+     */
+    public TrainService(Path dataDirectory, MappedSeatStore.ForcePolicy seatStorePolicy) throws IOException {
+        this.trainFilePath = dataDirectory.resolve("trains.json");
+        this.binaryFilePath = dataDirectory.resolve("trains.bin");
+        this.journal = new Journal(Snapshots.journalPathFor(trainFilePath), objectMapper);
+        this.seatStore = seatStorePolicy != null
+                ? MappedSeatStore.open(dataDirectory.resolve("trains.seats"), seatStorePolicy) : null;
         loadTrainListFromFile();
     }
 
     private void loadTrainListFromFile() throws IOException {
-        Path filePath = Paths.get(TRAIN_DB_PATH);
+        Path filePath = trainFilePath;
         if (!Files.exists(filePath)) {
             // Create empty train list file if it doesn't exist
             Files.createDirectories(filePath.getParent());
             trainList = new ArrayList<>();
-            saveTrainListToFile();
-            return;
+            saveTrainListToFile(trainList);
+        } else {
+            trainList = readTrainListFromFile(filePath);
+        }
+        rebuildIndexes();
+        if (replayJournal()) {
+            compact();
+        }
+    }
+
+    private List<Train> readTrainListFromFile(Path filePath) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return readTrainList(filePath);
+        } finally {
+            LOAD_TIME.recordSince(start);
+        }
+    }
+
+    private List<Train> readTrainList(Path filePath) throws IOException {
+        FileTime modifiedTime = Files.getLastModifiedTime(filePath);
+        Path binaryPath = binaryFilePath;
+        if (Files.exists(binaryPath) && Files.getLastModifiedTime(binaryPath).compareTo(modifiedTime) >= 0) {
+            try {
+                List<Train> trains = CatalogSnapshot.read(binaryPath);
+                snapshotModifiedTime = modifiedTime;
+                return trains;
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Failed to load binary train catalog, falling back to " + filePath, e);
+            }
         }
 
         try {
-            trainList = objectMapper.readValue(filePath.toFile(), new TypeReference<List<Train>>() {});
+            List<Train> trains = objectMapper.readValue(filePath.toFile(), new TypeReference<List<Train>>() {});
+            snapshotModifiedTime = modifiedTime;
+            return trains;
         } catch (IOException e) {
             log.log(Level.WARNING, "Failed to load trains from file, starting with empty list", e);
-            trainList = new ArrayList<>();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Re-reads trains.json and the journal, replacing the in-memory catalog.
+     * The file is parsed before the lock is taken, so searches keep running on the old catalog meanwhile.
+     */
+    public void reload() throws IOException {
+        Path filePath = trainFilePath;
+        if (!Files.exists(filePath)) {
+            log.warning("Train file " + filePath + " no longer exists, keeping the current catalog");
+            return;
+        }
+
+        List<Train> loadedTrains = readTrainListFromFile(filePath);
+        boolean replayedMappedSeats;
+        lock.writeLock().lock();
+        try {
+            trainList = loadedTrains;
+            rebuildIndexes();
+            replayedMappedSeats = replayJournal();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (replayedMappedSeats) {
+            compact();
+        }
+        log.info("Reloaded " + loadedTrains.size() + " trains from " + filePath);
+    }
+
+    /**
+     * Reloads the catalog if trains.json was changed on disk by someone other than this service.
+     * Returns true if a reload happened.
+     */
+    public boolean reloadIfModified() throws IOException {
+        Path filePath = trainFilePath;
+        compactionLock.lock();
+        try {
+            if (!Files.exists(filePath) || Files.getLastModifiedTime(filePath).equals(snapshotModifiedTime)) {
+                return false;
+            }
+
+            reload();
+            return true;
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    /**
+     * Starts a daemon thread that reloads the catalog whenever trains.json changes on disk.
+     */
+    public synchronized void watchForChanges() throws IOException {
+        if (watchService != null) return;
+
+        Path directory = trainFilePath.toAbsolutePath().getParent();
+        Path fileName = trainFilePath.getFileName();
+        watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        WatchService service = watchService;
+        Thread watcher = new Thread(() -> {
+            try {
+                while (true) {
+                    WatchKey key = service.take();
+                    boolean changed = key.pollEvents().stream()
+                            .anyMatch(event -> fileName.equals(event.context()));
+                    key.reset();
+                    if (changed) {
+                        try {
+                            reloadIfModified();
+                        } catch (IOException e) {
+                            log.log(Level.WARNING, "Failed to reload trains after file change", e);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ClosedWatchServiceException e) {
+                // stopWatching() was called
+            }
+        }, "train-catalog-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    public synchronized void stopWatching() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+            watchService = null;
+        }
+    }
+
+    // Applies mutations recorded since the last snapshot; every record is idempotent. Returns true if seat
+    // records were applied to trains kept in the seat store. The caller must then compact: the store goes on
+    // to hold later changes of those seats, which are not journaled, so replaying the same records on top of
+    // it at the next start would undo them.
+    private boolean replayJournal() {
+        List<JournalRecord> records;
+        try {
+            records = journal.readAll();
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to read train journal, continuing from snapshot", e);
+            return false;
+        }
+
+        boolean replayedMappedSeats = false;
+        for (JournalRecord record : records) {
+            switch (record.getType()) {
+                case TRAIN_UPSERTED -> upsertTrain(record.getTrain(), true);
+                case SEAT_BOOKED -> replayedMappedSeats |= applySeat(record, true);
+                case SEAT_RELEASED -> replayedMappedSeats |= applySeat(record, false);
+                default -> log.warning("Ignoring unexpected train journal record " + record.getType());
+            }
+        }
+        return replayedMappedSeats;
+    }
+
+    private void rebuildIndexes() {
+        trainsById.clear();
+        stationIndex.clear();
+        mappedTrains.clear();
+        trainList.stream()
+                .filter(train -> train != null && train.getTrainId() != null)
+                .forEach(train -> indexTrain(train, true));
+    }
+
+    private void indexTrain(Train train, boolean preferStoredSeats) {
+        String trainKey = StationIndex.normalize(train.getTrainId());
+        Train previous = trainsById.put(trainKey, train);
+        stationIndex.remove(previous);
+        stationIndex.add(train);
+        journeyPlanner = null;
+        attachToSeatStore(trainKey, train, preferStoredSeats);
+    }
+
+    // Moves the train's seats into the seat store; seats already stored there win unless told otherwise
+    private void attachToSeatStore(String trainKey, Train train, boolean preferStoredSeats) {
+        if (seatStore == null) return;
+
+        mappedTrains.remove(trainKey);
+        try {
+            SeatInventory mapped = seatStore.attach(trainKey, train.getSeatInventory(), preferStoredSeats);
+            if (mapped != null) {
+                train.setSeatInventory(mapped);
+                mappedTrains.add(trainKey);
+            }
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to map seats of train " + train.getTrainId() + ", journaling them instead", e);
         }
     }
 
@@ -50,9 +314,115 @@ public class TrainService {
             return new ArrayList<>();
         }
 
-        return trainList.stream()
-                .filter(train -> isValidTrain(train, source.trim(), destination.trim()))
-                .toList();
+        long start = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            return stationIndex.findTrainKeys(source, destination).stream()
+                    .map(trainsById::get)
+                    .filter(Objects::nonNull)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+            SEARCH_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * Trains from {@code source} to {@code destination} leaving {@code source} between {@code departFrom} and
+     * {@code departTo} (seconds after midnight, inclusive), earliest departure first. A window that ends
+     * before it starts wraps past midnight, e.g. 22:00 to 02:00. Trains without a time at {@code source}
+     * are left out.
+     */
+    public List<Train> searchTrains(String source, String destination, int departFrom, int departTo) {
+        if (source == null || destination == null || source.trim().isEmpty() || destination.trim().isEmpty()
+                || departFrom < 0 || departTo < 0) {
+            return new ArrayList<>();
+        }
+
+        long start = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            return stationIndex.findTrainKeysDeparting(source, destination, departFrom, departTo).stream()
+                    .map(trainsById::get)
+                    .filter(Objects::nonNull)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+            SEARCH_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * Trains from {@code source} to {@code destination} with at least {@code minFreeSeats} seats free for that
+     * journey, each with its free seat count. Counts come from the inventories' per-journey counters, so no
+     * seat map is scanned.
+     */
+    public List<TrainAvailability> searchAvailableTrains(String source, String destination, int minFreeSeats) {
+        return withAvailability(searchTrains(source, destination), source, destination, minFreeSeats);
+    }
+
+    /**
+     * As {@link #searchAvailableTrains(String, String, int)}, for trains leaving within a departure window;
+     * see {@link #searchTrains(String, String, int, int)}.
+     */
+    public List<TrainAvailability> searchAvailableTrains(String source, String destination, int departFrom, int departTo,
+                                                         int minFreeSeats) {
+        return withAvailability(searchTrains(source, destination, departFrom, departTo), source, destination,
+                minFreeSeats);
+    }
+
+    private static List<TrainAvailability> withAvailability(List<Train> trains, String source, String destination,
+                                                            int minFreeSeats) {
+        List<TrainAvailability> available = new ArrayList<>(trains.size());
+        for (Train train : trains) {
+            SeatInventory inventory = train.getSeatInventory();
+            int freeSeats = inventory == null ? 0 : train.legRange(source, destination)
+                    .map(legs -> inventory.countAvailable(legs.fromLeg(), legs.toLeg()))
+                    .orElse(0);
+            if (freeSeats >= minFreeSeats) {
+                available.add(new TrainAvailability(train, freeSeats));
+            }
+        }
+        return available;
+    }
+
+    /**
+     * Earliest-arriving journeys from {@code source} to {@code destination} leaving at or after
+     * {@code departAfter} (seconds after midnight), changing trains at most {@code maxTransfers} times:
+     * the best direct journey first, then each journey with more changes that arrives earlier.
+     */
+    public List<JourneyPlanner.Journey> planJourneys(String source, String destination, int departAfter, int maxTransfers) {
+        if (source == null || destination == null || source.trim().isEmpty() || destination.trim().isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        return journeyPlanner().plan(source, destination, departAfter, maxTransfers);
+    }
+
+    private JourneyPlanner journeyPlanner() {
+        JourneyPlanner planner = journeyPlanner;
+        if (planner != null) return planner;
+
+        // Trains only change under the write lock, so the planner cannot go stale while it is compiled here
+        lock.readLock().lock();
+        try {
+            planner = JourneyPlanner.compile(trainList, MIN_TRANSFER_SECONDS);
+            journeyPlanner = planner;
+            return planner;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Optional<Train> findTrain(String trainId) {
+        if (trainId == null) return Optional.empty();
+
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(trainsById.get(StationIndex.normalize(trainId)));
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     public void addTrain(Train newTrain) {
@@ -61,16 +431,7 @@ public class TrainService {
             return;
         }
 
-        Optional<Train> existingTrain = trainList.stream()
-                .filter(train -> train.getTrainId().equalsIgnoreCase(newTrain.getTrainId()))
-                .findFirst();
-
-        if (existingTrain.isPresent()) {
-            updateTrain(newTrain);
-        } else {
-            trainList.add(newTrain);
-            saveTrainListToFile();
-        }
+        saveTrain(newTrain);
     }
 
     public void updateTrain(Train updatedTrain) {
@@ -79,45 +440,462 @@ public class TrainService {
             return;
         }
 
-        OptionalInt index = IntStream.range(0, trainList.size())
-                .filter(i -> trainList.get(i).getTrainId().equalsIgnoreCase(updatedTrain.getTrainId()))
-                .findFirst();
-
-        if (index.isPresent()) {
-            trainList.set(index.getAsInt(), updatedTrain);
-            saveTrainListToFile();
-        } else {
+        if (findTrain(updatedTrain.getTrainId()).isEmpty()) {
             log.info("Train not found for update, adding as new train");
-            addTrain(updatedTrain);
         }
+        saveTrain(updatedTrain);
+    }
+
+    /**
+     * Atomically books a seat for the whole run on the catalog copy of {@code train} and journals it.
+     * Returns false if the seat is taken, out of range, or the booking could not be recorded.
+     */
+    public boolean bookSeat(Train train, int row, int seat) {
+        return train != null && bookSeat(train, row, seat, train.fullRun());
+    }
+
+    /**
+     * Atomically books a seat on legs {@code legs} of the catalog copy of {@code train} and journals it.
+     * The seat stays available to journeys on other legs.
+     */
+    public boolean bookSeat(Train train, int row, int seat, LegRange legs) {
+        long start = System.nanoTime();
+        boolean booked = bookAndJournalSeat(train, row, seat, legs);
+        BOOK_TIME.recordSince(start);
+        (booked ? BOOKINGS : BOOKING_FAILURES).increment();
+        return booked;
+    }
+
+    private boolean bookAndJournalSeat(Train train, int row, int seat, LegRange legs) {
+        if (train == null || train.getTrainId() == null || train.getSeatInventory() == null || legs == null) {
+            log.warning("Cannot book a seat on null train or train with null ID");
+            return false;
+        }
+
+        Train catalogTrain;
+        lock.readLock().lock();
+        try {
+            catalogTrain = catalogTrain(train);
+            if (catalogTrain != null && !bookAndJournalSeat(catalogTrain, List.of(new SeatPosition(row, seat)), legs)) {
+                return false;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (catalogTrain == null) {
+            if (!isBookable(train.getSeatInventory(), row, seat, legs)
+                    || !train.getSeatInventory().book(row, seat, legs.fromLeg(), legs.toLeg())) {
+                return false;
+            }
+            addTrain(train);
+            return true;
+        }
+        if (!syncJournal()) {
+            releaseAndJournalSeats(catalogTrain, List.of(new SeatPosition(row, seat)), legs);
+            return false;
+        }
+
+        if (catalogTrain != train && isBookable(train.getSeatInventory(), row, seat, legs)) {
+            // Keep the caller's copy of the seat map in step with the catalog
+            train.getSeatInventory().book(row, seat, legs.fromLeg(), legs.toLeg());
+        }
+        compactIfNeeded();
+        return true;
+    }
+
+    /**
+     * Books {@code count} seats on legs {@code legs} of the catalog train, side by side in one row when possible.
+     * Either every seat is booked and journaled with a single write, or nothing is; returns the seats booked.
+     */
+    public List<SeatPosition> bookGroup(Train train, int count, LegRange legs) {
+        long start = System.nanoTime();
+        List<SeatPosition> seats = bookAndJournalGroup(train, count, legs);
+        BOOK_TIME.recordSince(start);
+        (seats.isEmpty() ? BOOKING_FAILURES : BOOKINGS).increment();
+        return seats;
+    }
+
+    private List<SeatPosition> bookAndJournalGroup(Train train, int count, LegRange legs) {
+        if (legs == null || count <= 0) {
+            return List.of();
+        }
+
+        Train catalogTrain;
+        List<SeatPosition> booked = List.of();
+        lock.readLock().lock();
+        try {
+            catalogTrain = catalogTrain(train);
+            SeatInventory inventory = catalogTrain != null ? catalogTrain.getSeatInventory() : null;
+            if (inventory == null) {
+                return List.of();
+            }
+
+            // The proposal is made without seat locks, so another booking may take a seat first; re-plan in that case
+            for (int attempt = 0; attempt < GROUP_BOOKING_ATTEMPTS && booked.isEmpty(); attempt++) {
+                List<SeatPosition> seats = inventory.findSeats(count, legs.fromLeg(), legs.toLeg());
+                if (seats.isEmpty()) {
+                    return List.of();
+                }
+                if (bookAndJournalSeat(catalogTrain, seats, legs)) {
+                    booked = seats;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (!booked.isEmpty() && !syncJournal()) {
+            releaseAndJournalSeats(catalogTrain, booked, legs);
+            return List.of();
+        }
+
+        if (!booked.isEmpty()) {
+            if (catalogTrain != train && train.getSeatInventory() != null) {
+                // Keep the caller's copy of the seat map in step with the catalog
+                booked.stream()
+                        .filter(position -> isBookable(train.getSeatInventory(), position.row(), position.seat(), legs))
+                        .forEach(position -> train.getSeatInventory()
+                                .book(position.row(), position.seat(), legs.fromLeg(), legs.toLeg()));
+            }
+            compactIfNeeded();
+        }
+        return booked;
+    }
+
+    /**
+     * Frees seats booked on legs {@code legs} of the catalog train and journals the release.
+     */
+    public void releaseSeats(Train train, List<SeatPosition> seats, LegRange legs) {
+        long start = System.nanoTime();
+        releaseAndJournalSeats(train, seats, legs);
+        RELEASE_TIME.recordSince(start);
+    }
+
+    private void releaseAndJournalSeats(Train train, List<SeatPosition> seats, LegRange legs) {
+        if (legs == null) return;
+
+        Train catalogTrain;
+        lock.readLock().lock();
+        try {
+            catalogTrain = catalogTrain(train);
+            SeatInventory inventory = catalogTrain != null ? catalogTrain.getSeatInventory() : null;
+            if (inventory == null || !inventory.isValidLegs(legs.fromLeg(), legs.toLeg())) {
+                return;
+            }
+
+            LegRange recordedLegs = legs.equals(catalogTrain.fullRun()) ? null : legs;
+            inventory.releaseAll(seats, legs.fromLeg(), legs.toLeg());
+            recordSeatChange(catalogTrain, seats.stream()
+                    .map(position -> JournalRecord.seatReleased(catalogTrain.getTrainId(), position.row(),
+                            position.seat(), recordedLegs))
+                    .toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+        syncJournal();
+
+        if (catalogTrain != train && train.getSeatInventory() != null) {
+            train.getSeatInventory().releaseAll(seats, legs.fromLeg(), legs.toLeg());
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Holds {@code count} seats on legs {@code legs} of the catalog train, side by side in one row when possible,
+     * so nobody else can book them until the hold is confirmed or released. Holds live only in memory and are
+     * not journaled; returns the seats held, or an empty list if there are not enough free.
+     */
+    public List<SeatPosition> holdGroup(Train train, int count, LegRange legs) {
+        if (legs == null || count <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Train catalogTrain = catalogTrain(train);
+            SeatInventory inventory = catalogTrain != null ? catalogTrain.getSeatInventory() : null;
+            if (inventory == null || !inventory.isValidLegs(legs.fromLeg(), legs.toLeg())) {
+                return List.of();
+            }
+
+            for (int attempt = 0; attempt < GROUP_BOOKING_ATTEMPTS; attempt++) {
+                List<SeatPosition> seats = inventory.findSeats(count, legs.fromLeg(), legs.toLeg());
+                if (seats.isEmpty()) {
+                    return List.of();
+                }
+                if (inventory.holdAll(seats, legs.fromLeg(), legs.toLeg())) {
+                    return seats;
+                }
+            }
+            return List.of();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Holds the given seats on legs {@code legs} of the catalog train, all of them or none.
+     */
+    public boolean holdSeats(Train train, List<SeatPosition> seats, LegRange legs) {
+        if (legs == null || seats.isEmpty()) return false;
+
+        lock.readLock().lock();
+        try {
+            Train catalogTrain = catalogTrain(train);
+            SeatInventory inventory = catalogTrain != null ? catalogTrain.getSeatInventory() : null;
+            return inventory != null && inventory.isValidLegs(legs.fromLeg(), legs.toLeg())
+                    && inventory.holdAll(seats, legs.fromLeg(), legs.toLeg());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Drops holds on legs {@code legs} of the catalog train, putting the seats back on sale.
+     */
+    public void releaseHeldSeats(Train train, List<SeatPosition> seats, LegRange legs) {
+        if (legs == null) return;
+
+        lock.readLock().lock();
+        try {
+            Train catalogTrain = catalogTrain(train);
+            SeatInventory inventory = catalogTrain != null ? catalogTrain.getSeatInventory() : null;
+            if (inventory != null && inventory.isValidLegs(legs.fromLeg(), legs.toLeg())) {
+                inventory.releaseHolds(seats, legs.fromLeg(), legs.toLeg());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Books seats held on legs {@code legs} of the catalog train and journals them with a single write.
+     * Returns false, booking nothing, if any of them is no longer held or the booking could not be recorded;
+     * in the latter case the holds are dropped as well.
+     */
+    public boolean confirmHeldSeats(Train train, List<SeatPosition> seats, LegRange legs) {
+        long start = System.nanoTime();
+        boolean booked = confirmAndJournalSeats(train, seats, legs);
+        BOOK_TIME.recordSince(start);
+        (booked ? BOOKINGS : BOOKING_FAILURES).increment();
+        return booked;
+    }
+
+    private boolean confirmAndJournalSeats(Train train, List<SeatPosition> seats, LegRange legs) {
+        if (legs == null || seats.isEmpty()) return false;
+
+        Train catalogTrain;
+        lock.readLock().lock();
+        try {
+            catalogTrain = catalogTrain(train);
+            SeatInventory inventory = catalogTrain != null ? catalogTrain.getSeatInventory() : null;
+            if (inventory == null || !inventory.isValidLegs(legs.fromLeg(), legs.toLeg())
+                    || !inventory.confirmHolds(seats, legs.fromLeg(), legs.toLeg())) {
+                return false;
+            }
+            if (!recordSeatChange(catalogTrain, seatBookedRecords(catalogTrain, seats, legs))) {
+                inventory.releaseAll(seats, legs.fromLeg(), legs.toLeg());
+                return false;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (!syncJournal()) {
+            releaseAndJournalSeats(catalogTrain, seats, legs);
+            return false;
+        }
+        compactIfNeeded();
+        return true;
+    }
+
+    /**
+     * The catalog train a ticket refers to.
+     */
+    public Optional<Train> resolveTrain(Ticket ticket) {
+        return Optional.ofNullable(ticket).map(Ticket::getTrainId).flatMap(this::findTrain);
+    }
+
+    // The catalog copy of the train, resolved under the caller's read lock so that a reload cannot swap it out
+    // before the caller has changed its seats
+    private Train catalogTrain(Train train) {
+        return train != null && train.getTrainId() != null
+                ? trainsById.get(StationIndex.normalize(train.getTrainId())) : null;
+    }
+
+    // Caller holds the read lock
+    private boolean bookAndJournalSeat(Train catalogTrain, List<SeatPosition> seats, LegRange legs) {
+        SeatInventory inventory = catalogTrain.getSeatInventory();
+        if (inventory == null || !inventory.isValidLegs(legs.fromLeg(), legs.toLeg())
+                || !inventory.bookAll(seats, legs.fromLeg(), legs.toLeg())) {
+            return false;
+        }
+        if (!recordSeatChange(catalogTrain, seatBookedRecords(catalogTrain, seats, legs))) {
+            inventory.releaseAll(seats, legs.fromLeg(), legs.toLeg());
+            return false;
+        }
+        return true;
     }
 
-    private void saveTrainListToFile() {
+    private static List<JournalRecord> seatBookedRecords(Train catalogTrain, List<SeatPosition> seats, LegRange legs) {
+        LegRange recordedLegs = legs.equals(catalogTrain.fullRun()) ? null : legs;
+        return seats.stream()
+                .map(position -> JournalRecord.seatBooked(catalogTrain.getTrainId(), position.row(), position.seat(),
+                        recordedLegs))
+                .toList();
+    }
+
+    private static boolean isBookable(SeatInventory inventory, int row, int seat, LegRange legs) {
+        return inventory != null && inventory.isValidSeat(row, seat) && inventory.isValidLegs(legs.fromLeg(), legs.toLeg());
+    }
+
+    /**
+     * Completes once every change journaled so far is on disk as far as the journal's durability mode promises.
+     * Seat changes kept in the memory-mapped seat store follow its own force policy instead.
+     */
+    public CompletableFuture<Void> commit() {
+        return journal.commit();
+    }
+
+    /**
+     * Folds the journal into trains.json and truncates it. The catalog is only locked while the trains and
+     * their seat bitmaps are copied; the copy is serialized and forced to disk while bookings and searches
+     * carry on, and changes made meanwhile keep their journal records.
+     */
+    public void compact() {
+        compactionLock.lock();
         try {
-            objectMapper.writeValue(new File(TRAIN_DB_PATH), trainList);
+            List<Train> snapshot;
+            Journal.Position position;
+            lock.writeLock().lock();
+            try {
+                position = journal.position();
+                snapshot = trainList.stream()
+                        .map(train -> train != null ? train.snapshotCopy() : null)
+                        .toList();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            saveTrainListToFile(snapshot);
+            // Startup prefers the stored seats to trains.json, so they must be on disk before the journal
+            // records that led to them are dropped
+            if (seatStore != null) {
+                seatStore.checkpoint();
+            }
+            journal.truncateBefore(position);
         } catch (IOException e) {
-            log.log(Level.SEVERE, "Failed to save train list to file", e);
+            log.log(Level.SEVERE, "Failed to compact train journal", e);
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    private void saveTrain(Train train) {
+        lock.writeLock().lock();
+        try {
+            upsertTrain(train, false);
+            appendToJournal(JournalRecord.trainUpserted(train));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        syncJournal();
+        compactIfNeeded();
+    }
+
+    private void upsertTrain(Train train, boolean preferStoredSeats) {
+        if (train == null || train.getTrainId() == null) return;
+
+        Train existingTrain = trainsById.get(StationIndex.normalize(train.getTrainId()));
+        if (existingTrain != null) {
+            trainList.set(trainList.indexOf(existingTrain), train);
+        } else {
+            trainList.add(train);
+        }
+        indexTrain(train, preferStoredSeats);
+    }
+
+    // Returns true if the seat belongs to a train kept in the seat store
+    private boolean applySeat(JournalRecord record, boolean booked) {
+        String trainKey = record.getTrainId() != null ? StationIndex.normalize(record.getTrainId()) : null;
+        Train train = trainKey != null ? trainsById.get(trainKey) : null;
+        Integer row = record.getRow();
+        Integer seat = record.getSeat();
+        if (train == null || row == null || seat == null) return false;
+
+        LegRange legs = record.getLegRange() != null ? record.getLegRange() : train.fullRun();
+        SeatInventory inventory = train.getSeatInventory();
+        if (!isBookable(inventory, row, seat, legs)) return false;
+
+        if (booked) {
+            inventory.book(row, seat, legs.fromLeg(), legs.toLeg());
+        } else {
+            inventory.release(row, seat, legs.fromLeg(), legs.toLeg());
+        }
+        return mappedTrains.contains(trainKey);
+    }
+
+    // Seat changes of mapped trains are already in the seat store; the rest go to the journal
+    private boolean recordSeatChange(Train catalogTrain, List<JournalRecord> records) {
+        String trainKey = StationIndex.normalize(catalogTrain.getTrainId());
+        if (mappedTrains.contains(trainKey)) {
+            seatStore.changed(trainKey);
+            return true;
         }
+        return appendToJournal(records);
     }
 
-    private boolean isValidTrain(Train train, String source, String destination) {
-        if (train == null || train.getStations() == null || train.getStations().isEmpty()) {
+    private boolean appendToJournal(JournalRecord record) {
+        return appendToJournal(List.of(record));
+    }
+
+    private boolean appendToJournal(List<JournalRecord> records) {
+        try {
+            journal.append(records);
+            return true;
+        } catch (IOException e) {
+            log.log(Level.SEVERE, "Failed to append to train journal", e);
             return false;
         }
+    }
 
-        List<String> stationOrder = train.getStations();
+    // Appends happen under the lock, which orders them; under SYNC durability they are forced here, once it is released
+    private boolean syncJournal() {
+        try {
+            journal.sync();
+            return true;
+        } catch (IOException e) {
+            log.log(Level.SEVERE, "Failed to force train journal", e);
+            return false;
+        }
+    }
 
-        // Case-insensitive search for stations
-        int sourceIndex = stationOrder.stream()
-                .map(String::toLowerCase)
-                .toList()
-                .indexOf(source.toLowerCase());
+    // Compaction takes the lock exclusively and rewrites trains.json, so it runs off the caller's thread
+    private void compactIfNeeded() {
+        if (journal.size() >= COMPACTION_THRESHOLD) {
+            PersistenceScheduler.compactInBackground(compactionScheduled, this::compact);
+        }
+    }
 
-        int destinationIndex = stationOrder.stream()
-                .map(String::toLowerCase)
-                .toList()
-                .indexOf(destination.toLowerCase());
+    private void saveTrainListToFile(List<Train> trains) throws IOException {
+        long start = System.nanoTime();
+        Path filePath = trainFilePath;
+        Snapshots.writeAtomically(objectMapper, filePath, trains);
+        snapshotModifiedTime = Files.getLastModifiedTime(filePath);
+        SAVE_BYTES.add(Files.size(filePath));
 
-        return sourceIndex != -1 && destinationIndex != -1 && sourceIndex < destinationIndex;
+        Path binaryPath = binaryFilePath;
+        if (Files.exists(binaryPath)) {
+            // Written second, so it is never older than the JSON it mirrors
+            try {
+                CatalogSnapshot.write(binaryPath, trains);
+                SAVE_BYTES.add(Files.size(binaryPath));
+            } catch (IOException e) {
+                // A stale copy could still be picked over trains.json, so drop it rather than keep it
+                log.log(Level.WARNING, "Failed to write binary train catalog, removing " + binaryPath
+                        + " and keeping trains.json only", e);
+                Files.deleteIfExists(binaryPath);
+            }
+        }
+        SAVE_TIME.recordSince(start);
     }
 }
\ No newline at end of file
@@ -1,66 +1,222 @@
 package ticket.booking.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import ticket.booking.entities.LegRange;
+import ticket.booking.entities.SeatInventory;
+import ticket.booking.entities.SeatPosition;
 import ticket.booking.entities.Ticket;
 import ticket.booking.entities.Train;
 import ticket.booking.entities.User;
+import ticket.booking.metrics.Counter;
+import ticket.booking.metrics.LatencyHistogram;
+import ticket.booking.metrics.Metrics;
+import ticket.booking.persistence.BookingLedger;
+import ticket.booking.persistence.PersistenceScheduler;
+import ticket.booking.persistence.ShardedUserStore;
+import ticket.booking.persistence.UserStorage;
+import ticket.booking.persistence.UserStore;
 import ticket.booking.util.UserServiceUtil;
 
-import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-public class UserBookingService {
+public class UserBookingService implements AutoCloseable {
     private static final Logger log = Logger.getLogger(UserBookingService.class.getName());
+    private static final LatencyHistogram LOGIN_TIME = Metrics.histogram("user.login");
+    private static final LatencyHistogram CANCEL_TIME = Metrics.histogram("user.cancel");
+    private static final Counter LOGIN_FAILURES = Metrics.counter("user.loginFailures");
+    private static final Counter CANCELLATIONS = Metrics.counter("user.cancellations");
 
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private List<User> userList;
+    private final UserStorage userStore;
+    private final BookingLedger bookingLedger;
+    private final SessionManager sessionManager;
+    private final TrainService trainService;
+    private final PasswordService passwordService;
+    // Whether the pool was made by this service, which then shuts it down on close
+    private final boolean ownsPasswordService;
+    private final SeatHoldService seatHolds;
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
     private User user;
-    private static final String USER_FILE_PATH = "src/main/java/ticket/booking/localDb/users.json";
+    private String sessionToken;
+    private static final String DEFAULT_DATA_DIRECTORY = "src/main/java/ticket/booking/localDb";
+    private static final int COMPACTION_THRESHOLD = 1000;
 
     public UserBookingService(User user) throws IOException {
-        this.user = user;
-        loadUserListFromFile();
+        this(user, new SessionManager());
     }
 
     public UserBookingService() throws IOException {
-        loadUserListFromFile();
+        this(null, new SessionManager());
+    }
+
+    public UserBookingService(User user, SessionManager sessionManager) throws IOException {
+        this(user, sessionManager, new TrainService());
+    }
+
+    /**
+     * Creates a service on top of a shared train catalog, so searches and bookings never re-read trains.json.
+     */
+    public UserBookingService(User user, SessionManager sessionManager, TrainService trainService) throws IOException {
+        this(user, sessionManager, trainService, Paths.get(DEFAULT_DATA_DIRECTORY));
+    }
+
+    /**
+     * Creates a service on the users in {@code dataDirectory}: the shards in its {@code users} subdirectory
+     * if there is one, otherwise users.json.
+     */
+    public UserBookingService(User user, SessionManager sessionManager, TrainService trainService, Path dataDirectory)
+            throws IOException {
+        this(user, sessionManager, trainService, dataDirectory, new PasswordService(), true);
+    }
+
+    /**
+     * Creates a service that hashes and checks passwords on {@code passwordService}'s pool. The pool stays the
+     * caller's to close, so several services can share it.
+     */
+    public UserBookingService(User user, SessionManager sessionManager, TrainService trainService, Path dataDirectory,
+                              PasswordService passwordService) throws IOException {
+        this(user, sessionManager, trainService, dataDirectory, passwordService, false);
+    }
+
+    private UserBookingService(User user, SessionManager sessionManager, TrainService trainService, Path dataDirectory,
+                               PasswordService passwordService, boolean ownsPasswordService) throws IOException {
+        this.user = user;
+        this.sessionManager = sessionManager;
+        this.trainService = trainService;
+        this.passwordService = passwordService;
+        this.ownsPasswordService = ownsPasswordService;
+        this.seatHolds = new SeatHoldService(trainService);
+        try {
+            Path shardDirectory = dataDirectory.resolve("users");
+            this.userStore = Files.isDirectory(shardDirectory)
+                    ? new ShardedUserStore(shardDirectory, objectMapper)
+                    : new UserStore(dataDirectory.resolve("users.json"), objectMapper);
+            this.bookingLedger = new BookingLedger(dataDirectory.resolve("bookings.json"), objectMapper);
+            finishInterruptedCancellations();
+        } catch (IOException | RuntimeException e) {
+            if (ownsPasswordService) {
+                passwordService.close();
+            }
+            throw e;
+        }
+    }
+
+    public Optional<User> findUserById(String userId) {
+        return userStore.findById(userId);
+    }
+
+    /**
+     * Verifies the credentials once and returns a session token for the subsequent operations.
+     */
+    public Optional<String> loginUser(String name, String password) {
+        if (name == null || password == null) return Optional.empty();
+
+        long start = System.nanoTime();
+        Optional<String> token = userStore.findByName(name)
+                .filter(existingUser -> existingUser.getUserId() != null)
+                .filter(existingUser -> UserServiceUtil.checkPassword(password, existingUser.getHashedPassword()))
+                .map(existingUser -> {
+                    rehashIfNeeded(existingUser.getUserId(), existingUser.getHashedPassword(), password);
+                    return sessionManager.createSession(existingUser.getUserId());
+                });
+        LOGIN_TIME.recordSince(start);
+        if (token.isEmpty()) {
+            LOGIN_FAILURES.increment();
+        }
+        return token;
     }
 
-    private void loadUserListFromFile() throws IOException {
-        Path filePath = Paths.get(USER_FILE_PATH);
-        if (!Files.exists(filePath)) {
-            // Create empty user list file if it doesn't exist
-            Files.createDirectories(filePath.getParent());
-            userList = new ArrayList<>();
-            saveUserListToFile();
+    /**
+     * Like {@link #loginUser(String, String)}, but the password is checked on the password pool rather than
+     * the calling thread.
+     *
+     * @throws RejectedExecutionException if the password pool is saturated
+     */
+    public CompletableFuture<Optional<String>> loginUserAsync(String name, String password) {
+        Optional<User> existingUser = name == null || password == null ? Optional.empty()
+                : userStore.findByName(name).filter(found -> found.getUserId() != null);
+        if (existingUser.isEmpty()) {
+            LOGIN_FAILURES.increment();
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        long start = System.nanoTime();
+        String userId = existingUser.get().getUserId();
+        String hashedPassword = existingUser.get().getHashedPassword();
+        return passwordService.check(password, hashedPassword).thenApply(matches -> {
+            LOGIN_TIME.recordSince(start);
+            if (!matches) {
+                LOGIN_FAILURES.increment();
+                return Optional.empty();
+            }
+            rehashIfNeeded(userId, hashedPassword, password);
+            return Optional.of(sessionManager.createSession(userId));
+        });
+    }
+
+    // Upgrades a hash made at a lower cost than the configured one in the background; the login does not wait
+    private void rehashIfNeeded(String userId, String hashedPassword, String password) {
+        if (!UserServiceUtil.needsRehash(hashedPassword)) return;
+
+        try {
+            passwordService.hash(password).thenAccept(newHash -> replacePassword(userId, hashedPassword, newHash));
+        } catch (RejectedExecutionException e) {
+            log.fine("Password pool is busy, leaving the hash of user " + userId + " for the next login");
+        }
+    }
+
+    // Not locked: two logins racing to upgrade the same hash both store a valid hash of the same password
+    private void replacePassword(String userId, String oldHash, String newHash) {
+        // Another login may have upgraded it already
+        if (userStore.findById(userId).filter(found -> oldHash.equals(found.getHashedPassword())).isEmpty()) {
             return;
         }
 
         try {
-            userList = objectMapper.readValue(filePath.toFile(), new TypeReference<List<User>>() {});
+            userStore.updatePassword(userId, newHash);
+            compactIfNeeded();
         } catch (IOException e) {
-            log.log(Level.WARNING, "Failed to load users from file, starting with empty list", e);
-            userList = new ArrayList<>();
+            log.log(Level.WARNING, "Failed to save the upgraded password hash of user " + userId, e);
         }
     }
 
     public boolean loginUser() {
         if (user == null) return false;
 
-        return userList.stream()
-                .anyMatch(existingUser ->
-                        existingUser.getName().equals(user.getName()) &&
-                                UserServiceUtil.checkPassword(user.getPassword(), existingUser.getHashedPassword())
-                );
+        sessionToken = loginUser(user.getName(), user.getPassword()).orElse(null);
+        return sessionToken != null;
+    }
+
+    public void logout(String token) {
+        sessionManager.invalidate(token);
+    }
+
+    /**
+     * The user a session token belongs to, if the session is still valid.
+     */
+    public Optional<User> findSessionUser(String token) {
+        return sessionManager.resolveUserId(token).flatMap(userStore::findById);
+    }
+
+    // Reuses the current session and only falls back to a password check when it is missing or expired
+    private String currentSessionToken() {
+        if (sessionManager.resolveUserId(sessionToken).isEmpty()) {
+            loginUser();
+        }
+        return sessionToken;
     }
 
     public boolean signUp(User newUser) {
@@ -68,18 +224,17 @@ public class UserBookingService {
             return false;
         }
 
-        // Check if user already exists
-        boolean userExists = userList.stream()
-                .anyMatch(existingUser -> existingUser.getName().equals(newUser.getName()));
-
-        if (userExists) {
+        // Check if user already exists; the store re-checks atomically when creating
+        if (userStore.containsName(newUser.getName())) {
             System.out.println("User already exists!");
             return false;
         }
 
         try {
-            userList.add(newUser);
-            saveUserListToFile();
+            if (!userStore.create(newUser)) {
+                return false;
+            }
+            compactIfNeeded();
             return true;
         } catch (IOException ex) {
             log.log(Level.SEVERE, "Failed to save user", ex);
@@ -87,8 +242,66 @@ public class UserBookingService {
         }
     }
 
-    private void saveUserListToFile() throws IOException {
-        objectMapper.writeValue(new File(USER_FILE_PATH), userList);
+    /**
+     * Creates a user named {@code name}, hashing the password on the password pool. Completes with the new
+     * user, or empty if the name is taken.
+     *
+     * @throws RejectedExecutionException if the password pool is saturated
+     */
+    public CompletableFuture<Optional<User>> signUpAsync(String name, String password) {
+        if (name == null || password == null || userStore.containsName(name)) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        return passwordService.hash(password).thenApply(hashedPassword -> {
+            User newUser = User.builder()
+                    .name(name)
+                    .password(password)
+                    .hashedPassword(hashedPassword)
+                    .ticketsBooked(new ArrayList<>())
+                    .userId(UUID.randomUUID().toString())
+                    .build();
+            return signUp(newUser) ? Optional.of(newUser) : Optional.empty();
+        });
+    }
+
+    /**
+     * Folds the user and booking journals into their snapshots and truncates them. Each store only blocks
+     * requests while it copies its state, not while the snapshot is written.
+     */
+    public void compact() {
+        try {
+            userStore.compact();
+            bookingLedger.compact();
+        } catch (IOException e) {
+            log.log(Level.SEVERE, "Failed to compact user journal", e);
+        }
+    }
+
+    /**
+     * Stops expiring seat holds and puts the seats of the live ones back on sale; see {@link SeatHoldService#close}.
+     * Also shuts down the password pool if this service made it.
+     */
+    @Override
+    public void close() {
+        seatHolds.close();
+        if (ownsPasswordService) {
+            passwordService.close();
+        }
+    }
+
+    private void compactIfNeeded() {
+        if (Math.max(userStore.pendingChanges(), bookingLedger.pendingChanges()) >= COMPACTION_THRESHOLD) {
+            PersistenceScheduler.compactInBackground(compactionScheduled, this::compact);
+        }
+    }
+
+    /**
+     * Completes once every user and seat change made so far is on disk as far as the configured durability
+     * mode promises, for callers that must not acknowledge a booking before then.
+     */
+    public CompletableFuture<Void> commit() {
+        return CompletableFuture.allOf(userStore.commit(), bookingLedger.commit(), trainService.commit());
     }
 
     public void fetchBookings() {
@@ -97,16 +310,27 @@ public class UserBookingService {
             return;
         }
 
-        userList.stream()
-                .filter(existingUser ->
-                        existingUser.getName().equals(user.getName()) &&
-                                UserServiceUtil.checkPassword(user.getPassword(), existingUser.getHashedPassword())
-                )
-                .findFirst()
-                .ifPresentOrElse(
-                        User::printTickets,
-                        () -> System.out.println("User not found or invalid credentials!")
-                );
+        fetchBookings(currentSessionToken());
+    }
+
+    public void fetchBookings(String token) {
+        // Prints a copy taken under the store's lock; the live User can change under another session's booking
+        getBookings(token).ifPresentOrElse(
+                tickets -> {
+                    if (tickets.isEmpty()) {
+                        System.out.println("No tickets booked.");
+                    }
+                    tickets.forEach(ticket -> System.out.println(ticket.getTicketInfo()));
+                },
+                () -> System.out.println("User not found or invalid credentials!")
+        );
+    }
+
+    /**
+     * Tickets of the session's user, or empty if the session is invalid.
+     */
+    public Optional<List<Ticket>> getBookings(String token) {
+        return sessionManager.resolveUserId(token).flatMap(userStore::findTickets);
     }
 
     public boolean cancelBooking(String ticketId) {
@@ -115,17 +339,22 @@ public class UserBookingService {
             return false;
         }
 
+        return cancelBooking(currentSessionToken(), ticketId);
+    }
+
+    /**
+     * Cancels the session user's ticket and frees its seat. Only one of several concurrent cancellations of a
+     * ticket can remove it from the user, so only that one releases the seat. The ledger entry is marked before
+     * the ticket is removed and dropped after the seat is released, so a crash in between is finished at the
+     * next start; see {@link #finishInterruptedCancellations}.
+     */
+    public boolean cancelBooking(String token, String ticketId) {
         if (ticketId == null || ticketId.trim().isEmpty()) {
             System.out.println("Ticket ID cannot be null or empty.");
             return false;
         }
 
-        Optional<User> userOptional = userList.stream()
-                .filter(existingUser ->
-                        existingUser.getName().equals(user.getName()) &&
-                                UserServiceUtil.checkPassword(user.getPassword(), existingUser.getHashedPassword())
-                )
-                .findFirst();
+        Optional<User> userOptional = findSessionUser(token);
 
         if (userOptional.isEmpty()) {
             System.out.println("User not found!");
@@ -133,66 +362,350 @@ public class UserBookingService {
         }
 
         User foundUser = userOptional.get();
-        boolean removed = foundUser.getTicketsBooked().removeIf(ticket ->
-                ticket.getTicketId().equals(ticketId.trim())
-        );
-
-        if (removed) {
-            try {
-                saveUserListToFile();
+        String cancelledId = ticketId.trim();
+        long start = System.nanoTime();
+        try {
+            Optional<BookingLedger.Entry> heldSeat = heldSeat(foundUser.getUserId(), cancelledId);
+            bookingLedger.markCancelling(cancelledId);
+            if (userStore.removeTicket(foundUser.getUserId(), cancelledId)) {
+                heldSeat.ifPresent(this::releaseSeat);
+                bookingLedger.remove(cancelledId);
+                CANCEL_TIME.recordSince(start);
+                CANCELLATIONS.increment();
+                compactIfNeeded();
                 System.out.println("Ticket with ID " + ticketId + " has been cancelled.");
                 return true;
-            } catch (IOException e) {
-                log.log(Level.SEVERE, "Failed to save after cancellation", e);
+            } else {
+                System.out.println("No ticket found with ID " + ticketId);
                 return false;
             }
-        } else {
-            System.out.println("No ticket found with ID " + ticketId);
+        } catch (IOException e) {
+            log.log(Level.SEVERE, "Failed to save after cancellation", e);
             return false;
         }
     }
 
-    public List<Train> getTrains(String source, String destination) {
-        try {
-            TrainService trainService = new TrainService();
-            return trainService.searchTrains(source, destination);
-        } catch (IOException ex) {
-            log.log(Level.WARNING, "Failed to get trains", ex);
-            return new ArrayList<>();
+    // The ledger knows the seat of every ticket booked since it was introduced; older tickets carry enough to
+    // work it out from their stations
+    private Optional<BookingLedger.Entry> heldSeat(String userId, String ticketId) {
+        Optional<BookingLedger.Entry> recorded = bookingLedger.find(ticketId)
+                .filter(entry -> userId.equals(entry.userId()));
+        if (recorded.isPresent()) return recorded;
+
+        return userStore.findTickets(userId).stream()
+                .flatMap(List::stream)
+                .filter(ticket -> ticketId.equals(ticket.getTicketId()))
+                .filter(ticket -> ticket.getRow() != null && ticket.getSeat() != null)
+                .findFirst()
+                .flatMap(ticket -> trainService.resolveTrain(ticket)
+                        .flatMap(train -> train.legRange(ticket.getSource(), ticket.getDestination()))
+                        .map(legs -> new BookingLedger.Entry(ticketId, userId, ticket.getTrainId(), ticket.getRow(),
+                                ticket.getSeat(), legs)));
+    }
+
+    /**
+     * Completes the cancellations whose ledger entries are still marked, left by a crash: if the ticket is gone
+     * from its user, the seat is released unless another ticket already holds it again, and the entry dropped;
+     * otherwise the ticket stands and only the mark is cleared.
+     */
+    private void finishInterruptedCancellations() throws IOException {
+        for (BookingLedger.Entry entry : bookingLedger.cancelling()) {
+            boolean ticketKept = userStore.findTickets(entry.userId()).stream()
+                    .flatMap(List::stream)
+                    .anyMatch(ticket -> entry.ticketId().equals(ticket.getTicketId()));
+            if (ticketKept) {
+                bookingLedger.unmarkCancelling(entry.ticketId());
+                continue;
+            }
+
+            if (!bookingLedger.isHeldByAnother(entry)) {
+                releaseSeat(entry);
+            }
+            bookingLedger.remove(entry.ticketId());
+            log.info("Finished the interrupted cancellation of ticket " + entry.ticketId());
         }
     }
 
-    public List<List<Integer>> fetchSeats(Train train) {
-        return train != null ? train.getSeats() : new ArrayList<>();
+    private void releaseSeat(BookingLedger.Entry heldSeat) {
+        trainService.findTrain(heldSeat.trainId()).ifPresent(train -> trainService.releaseSeats(train,
+                List.of(new SeatPosition(heldSeat.row(), heldSeat.seat())), heldSeat.legs()));
+    }
+
+    public List<Train> getTrains(String source, String destination) {
+        return trainService.searchTrains(source, destination);
+    }
+
+    /**
+     * Trains leaving {@code source} within a departure window; see {@link TrainService#searchTrains(String, String, int, int)}.
+     */
+    public List<Train> getTrains(String source, String destination, int departFrom, int departTo) {
+        return trainService.searchTrains(source, destination, departFrom, departTo);
+    }
+
+    /**
+     * Trains with at least {@code minFreeSeats} seats free between the stations, with their free seat counts.
+     */
+    public List<TrainService.TrainAvailability> getAvailableTrains(String source, String destination, int minFreeSeats) {
+        return trainService.searchAvailableTrains(source, destination, minFreeSeats);
+    }
+
+    /**
+     * As {@link #getAvailableTrains(String, String, int)}, for trains leaving {@code source} within a departure window.
+     */
+    public List<TrainService.TrainAvailability> getAvailableTrains(String source, String destination, int departFrom,
+                                                                   int departTo, int minFreeSeats) {
+        return trainService.searchAvailableTrains(source, destination, departFrom, departTo, minFreeSeats);
+    }
+
+    /**
+     * Journeys with changes of train; see {@link TrainService#planJourneys}.
+     */
+    public List<JourneyPlanner.Journey> planJourneys(String source, String destination, int departAfter, int maxTransfers) {
+        return trainService.planJourneys(source, destination, departAfter, maxTransfers);
+    }
+
+    public SeatInventory fetchSeats(Train train) {
+        return train != null && train.getSeatInventory() != null ? train.getSeatInventory() : new SeatInventory(new int[0]);
     }
 
     public boolean bookTrainSeat(Train train, int row, int seat) {
-        if (train == null || train.getSeats() == null) {
+        if (train == null || train.getSeatInventory() == null) {
             return false;
         }
 
+        return bookTrainSeat(train, train.fullRun(), row, seat);
+    }
+
+    /**
+     * Books the seat only between {@code source} and {@code destination}, leaving it sellable on the other legs.
+     */
+    public boolean bookTrainSeat(Train train, String source, String destination, int row, int seat) {
+        if (train == null || train.getSeatInventory() == null) {
+            return false;
+        }
+
+        Optional<LegRange> legs = train.legRange(source, destination);
+        if (legs.isEmpty()) {
+            System.out.println("This train does not run from " + source + " to " + destination + "!");
+            return false;
+        }
+        return bookTrainSeat(train, legs.get(), row, seat);
+    }
+
+    /**
+     * Books the seat for the session's user between {@code source} and {@code destination} and issues a ticket.
+     */
+    public Optional<Ticket> bookTicket(String token, Train train, String source, String destination, int row, int seat) {
+        Optional<User> bookingUser = findSessionUser(token);
+        if (bookingUser.isEmpty()) {
+            System.out.println("Please login first!");
+            return Optional.empty();
+        }
+        if (train == null || train.getSeatInventory() == null) {
+            return Optional.empty();
+        }
+
+        Optional<LegRange> legs = train.legRange(source, destination);
+        if (legs.isEmpty()) {
+            System.out.println("This train does not run from " + source + " to " + destination + "!");
+            return Optional.empty();
+        }
+        if (!bookTrainSeat(train, legs.get(), row, seat)) {
+            return Optional.empty();
+        }
+
+        List<SeatPosition> seats = List.of(new SeatPosition(row, seat));
+        List<Ticket> tickets = issueTickets(bookingUser.get(), train, source, destination, seats);
+        if (!recordTickets(bookingUser.get(), tickets, legs.get())) {
+            trainService.releaseSeats(train, seats, legs.get());
+            return Optional.empty();
+        }
+        return Optional.of(tickets.get(0));
+    }
+
+    /**
+     * Books {@code count} seats for a group between {@code source} and {@code destination}, adjacent when
+     * possible, and issues one ticket per seat. Either all seats are booked or none.
+     */
+    public List<Ticket> bookGroup(String token, Train train, String source, String destination, int count) {
+        Optional<User> bookingUser = findSessionUser(token);
+        if (bookingUser.isEmpty()) {
+            System.out.println("Please login first!");
+            return List.of();
+        }
+        if (train == null || count <= 0) {
+            return List.of();
+        }
+
+        Optional<LegRange> legs = train.legRange(source, destination);
+        if (legs.isEmpty()) {
+            System.out.println("This train does not run from " + source + " to " + destination + "!");
+            return List.of();
+        }
+
+        List<SeatPosition> seats = trainService.bookGroup(train, count, legs.get());
+        if (seats.isEmpty()) {
+            return List.of();
+        }
+
+        List<Ticket> tickets = issueTickets(bookingUser.get(), train, source, destination, seats);
+        if (!recordTickets(bookingUser.get(), tickets, legs.get())) {
+            trainService.releaseSeats(train, seats, legs.get());
+            return List.of();
+        }
+        return tickets;
+    }
+
+    /**
+     * Holds {@code count} seats for the session's user between {@code source} and {@code destination}, adjacent
+     * when possible, without booking them; nobody else can take them until the hold is confirmed with
+     * {@link #confirmHold}, released, or runs out.
+     */
+    public Optional<SeatHoldService.Hold> holdSeats(String token, Train train, String source, String destination,
+                                                    int count) {
+        Optional<User> holdingUser = findSessionUser(token);
+        Optional<LegRange> legs = holdingUser.isPresent() && train != null
+                ? train.legRange(source, destination)
+                : Optional.empty();
+        if (legs.isEmpty() || count <= 0) {
+            return Optional.empty();
+        }
+        return seatHolds.holdGroup(holdingUser.get().getUserId(), train, source, destination, legs.get(), count);
+    }
+
+    /**
+     * Holds one chosen seat for the session's user between {@code source} and {@code destination}.
+     */
+    public Optional<SeatHoldService.Hold> holdSeat(String token, Train train, String source, String destination,
+                                                   int row, int seat) {
+        Optional<User> holdingUser = findSessionUser(token);
+        Optional<LegRange> legs = holdingUser.isPresent() && train != null
+                ? train.legRange(source, destination)
+                : Optional.empty();
+        if (legs.isEmpty()) {
+            return Optional.empty();
+        }
+        return seatHolds.holdSeats(holdingUser.get().getUserId(), train, source, destination, legs.get(),
+                List.of(new SeatPosition(row, seat)));
+    }
+
+    /**
+     * Books the seats of the session user's hold and issues one ticket per seat. Empty if the hold is unknown,
+     * belongs to someone else or has run out, in which case nothing is booked.
+     */
+    public List<Ticket> confirmHold(String token, String holdId) {
+        Optional<User> bookingUser = findSessionUser(token);
+        Optional<SeatHoldService.Hold> hold = bookingUser.flatMap(found -> seatHolds.take(found.getUserId(), holdId));
+        if (hold.isEmpty()) {
+            return List.of();
+        }
+
+        SeatHoldService.Hold confirmed = hold.get();
+        Optional<Train> train = trainService.findTrain(confirmed.trainId());
+        if (train.isEmpty() || !trainService.confirmHeldSeats(train.get(), confirmed.seats(), confirmed.legs())) {
+            train.ifPresent(found -> trainService.releaseHeldSeats(found, confirmed.seats(), confirmed.legs()));
+            return List.of();
+        }
+
+        List<Ticket> tickets = issueTickets(bookingUser.get(), train.get(), confirmed.source(), confirmed.destination(),
+                confirmed.seats());
+        if (!recordTickets(bookingUser.get(), tickets, confirmed.legs())) {
+            trainService.releaseSeats(train.get(), confirmed.seats(), confirmed.legs());
+            return List.of();
+        }
+        return tickets;
+    }
+
+    /**
+     * Drops the session user's hold and puts its seats back on sale; returns false if there was no such hold.
+     */
+    public boolean releaseHold(String token, String holdId) {
+        return findSessionUser(token)
+                .map(holdingUser -> seatHolds.release(holdingUser.getUserId(), holdId))
+                .orElse(false);
+    }
+
+    private List<Ticket> issueTickets(User bookingUser, Train train, String source, String destination,
+                                      List<SeatPosition> seats) {
+        String dateOfTravel = LocalDate.now().toString();
+        return seats.stream()
+                .map(position -> Ticket.builder()
+                        .ticketId(UUID.randomUUID().toString())
+                        .userId(bookingUser.getUserId())
+                        .source(source.trim())
+                        .destination(destination.trim())
+                        .dateOfTravel(dateOfTravel)
+                        .trainId(train.getTrainId())
+                        .row(position.row())
+                        .seat(position.seat())
+                        .departureTime(train.timeAt(source))
+                        .arrivalTime(train.timeAt(destination))
+                        .build())
+                .toList();
+    }
+
+    // The ledger is written before the user's tickets, so a cancellation that can see a ticket always finds its
+    // seat there. Each store orders its own changes, and neither holds a lock while its journal is forced.
+    private boolean recordTickets(User bookingUser, List<Ticket> tickets, LegRange legs) {
+        String userId = bookingUser.getUserId();
+        boolean ledgered = false;
         try {
-            TrainService trainService = new TrainService();
-            List<List<Integer>> seats = train.getSeats();
-
-            if (row >= 0 && row < seats.size() &&
-                    seat >= 0 && seat < seats.get(row).size()) {
-
-                if (seats.get(row).get(seat) == 0) {
-                    seats.get(row).set(seat, 1);
-                    train.setSeats(seats);
-                    trainService.updateTrain(train);
-                    return true;
-                } else {
-                    System.out.println("Seat is already booked!");
-                    return false;
-                }
-            } else {
-                System.out.println("Invalid row or seat number!");
-                return false;
+            bookingLedger.add(tickets.stream()
+                    .map(ticket -> new BookingLedger.Entry(ticket.getTicketId(), userId, ticket.getTrainId(),
+                            ticket.getRow(), ticket.getSeat(), legs))
+                    .toList());
+            ledgered = true;
+        } catch (IOException ex) {
+            // The tickets stand; cancelling them falls back to working out the seat from the ticket
+            log.log(Level.WARNING, "Failed to record tickets in the booking ledger", ex);
+        }
+
+        try {
+            if (userStore.addTickets(userId, tickets)) {
+                compactIfNeeded();
+                return true;
             }
         } catch (IOException ex) {
-            log.log(Level.SEVERE, "Failed to book seat", ex);
+            log.log(Level.SEVERE, "Failed to save tickets", ex);
+            // The tickets may already be in memory; take them back out since the booking is being undone
+            removeTickets(userId, tickets);
+        }
+        if (ledgered) {
+            removeFromLedger(tickets);
+        }
+        return false;
+    }
+
+    private void removeTickets(String userId, List<Ticket> tickets) {
+        for (Ticket ticket : tickets) {
+            try {
+                userStore.removeTicket(userId, ticket.getTicketId());
+            } catch (IOException ex) {
+                log.log(Level.WARNING, "Failed to take back ticket " + ticket.getTicketId(), ex);
+            }
+        }
+    }
+
+    private void removeFromLedger(List<Ticket> tickets) {
+        for (Ticket ticket : tickets) {
+            try {
+                bookingLedger.remove(ticket.getTicketId());
+            } catch (IOException ex) {
+                log.log(Level.WARNING, "Failed to take ticket " + ticket.getTicketId() + " back out of the ledger", ex);
+            }
+        }
+    }
+
+    private boolean bookTrainSeat(Train train, LegRange legs, int row, int seat) {
+        if (!train.getSeatInventory().isValidSeat(row, seat)) {
+            System.out.println("Invalid row or seat number!");
+            return false;
+        }
+
+        if (trainService.bookSeat(train, row, seat, legs)) {
+            return true;
+        } else {
+            System.out.println("Seat is already booked!");
             return false;
         }
     }
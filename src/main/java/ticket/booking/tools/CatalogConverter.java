@@ -0,0 +1,37 @@
+package ticket.booking.tools;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ticket.booking.entities.Train;
+import ticket.booking.persistence.CatalogSnapshot;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Converts trains.json into the binary catalog that {@code TrainService} loads at startup when present.
+ * Usage: {@code CatalogConverter [input] [output]}. Once the binary file exists, compaction keeps it up to date.
+ */
+public class CatalogConverter {
+    private static final String DEFAULT_TRAINS_PATH = "src/main/java/ticket/booking/localDb/trains.json";
+    private static final String DEFAULT_BINARY_PATH = "src/main/java/ticket/booking/localDb/trains.bin";
+
+    public static void main(String[] args) throws IOException {
+        Path input = Paths.get(args.length > 0 ? args[0] : DEFAULT_TRAINS_PATH);
+        Path output = Paths.get(args.length > 1 ? args[1] : DEFAULT_BINARY_PATH);
+
+        long start = System.nanoTime();
+        List<Train> trains = new ObjectMapper().readValue(input.toFile(), new TypeReference<List<Train>>() {});
+        long parsed = System.nanoTime();
+        CatalogSnapshot.write(output, trains);
+        long written = System.nanoTime();
+        CatalogSnapshot.read(output);
+        long read = System.nanoTime();
+
+        System.out.printf("Converted %d trains into %s (JSON parse %d ms, binary write %d ms, binary read %d ms)%n",
+                trains.size(), output, (parsed - start) / 1_000_000, (written - parsed) / 1_000_000,
+                (read - written) / 1_000_000);
+    }
+}
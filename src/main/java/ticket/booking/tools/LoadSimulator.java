@@ -0,0 +1,534 @@
+package ticket.booking.tools;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.mindrot.jbcrypt.BCrypt;
+import ticket.booking.entities.LegRange;
+import ticket.booking.entities.SeatInventory;
+import ticket.booking.entities.SeatPosition;
+import ticket.booking.entities.Ticket;
+import ticket.booking.entities.Train;
+import ticket.booking.entities.User;
+import ticket.booking.service.SessionManager;
+import ticket.booking.service.TrainService;
+import ticket.booking.service.UserBookingService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Reproduces a booking rush: a generated station network, catalog and user base are written to a scratch
+ * directory, every user logs in, and then all worker threads are released at the same instant to search,
+ * book and sometimes cancel through {@link UserBookingService}, mostly on a few hot trains. Afterwards every
+ * ticket is checked against the seat maps for overselling, and a JSON summary (throughput, p50/p99/p999
+ * latency per operation, conflict rate, oversell check) is printed or written to {@code --out}.
+ * <p>
+ * Options, all {@code --name=value}: users, stations, trains, hotTrains, hotShare, rows, seatsPerRow,
+ * threads, seconds, cancelRate, seed, out, and keepData to leave the scratch directory behind.
+ */
+public class LoadSimulator {
+    // bcrypt cost of the generated users' shared hash; logins are warm-up, not what the rush measures
+    private static final int HASH_ROUNDS = 4;
+    private static final String PASSWORD = "rush-password";
+
+    private final Map<String, String> options;
+    private final Random random;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final int userCount;
+    private final int stationCount;
+    private final int trainCount;
+    private final int hotTrains;
+    private final double hotShare;
+    private final int rows;
+    private final int seatsPerRow;
+    private final int threads;
+    private final int seconds;
+    private final double cancelRate;
+
+    private final AtomicLong bookingAttempts = new AtomicLong();
+    private final AtomicLong bookings = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong soldOut = new AtomicLong();
+    private final AtomicLong cancellations = new AtomicLong();
+    private final AtomicLong emptySearches = new AtomicLong();
+
+    public LoadSimulator(Map<String, String> options) {
+        this.options = options;
+        this.random = new Random(longOption("seed", 42));
+        this.userCount = intOption("users", 5000);
+        this.stationCount = intOption("stations", 300);
+        this.trainCount = intOption("trains", 200);
+        this.hotTrains = Math.min(intOption("hotTrains", 3), trainCount);
+        this.hotShare = doubleOption("hotShare", 0.8);
+        this.rows = intOption("rows", 12);
+        this.seatsPerRow = intOption("seatsPerRow", 72);
+        this.threads = intOption("threads", 64);
+        this.seconds = intOption("seconds", 10);
+        this.cancelRate = doubleOption("cancelRate", 0.1);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Options take the form --name=value: " + arg);
+            }
+            int equals = arg.indexOf('=');
+            options.put(equals < 0 ? arg.substring(2) : arg.substring(2, equals), equals < 0 ? "true" : arg.substring(equals + 1));
+        }
+
+        LoadSimulator simulator = new LoadSimulator(options);
+        String summary = simulator.objectMapper.enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValueAsString(simulator.run());
+        if (options.containsKey("out")) {
+            Files.writeString(Paths.get(options.get("out")), summary);
+        } else {
+            System.out.println(summary);
+        }
+    }
+
+    /**
+     * Runs the whole simulation in a scratch directory and returns the summary.
+     */
+    public ObjectNode run() throws Exception {
+        Path dataDirectory = Files.createTempDirectory("booking-rush");
+        PrintStream console = System.out;
+        // The services report every failed booking on stdout; silence them so only the summary is printed
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            List<Train> trains = generateTrains();
+            objectMapper.writeValue(dataDirectory.resolve("trains.json").toFile(), trains);
+            objectMapper.writeValue(dataDirectory.resolve("users.json").toFile(), generateUsers());
+
+            TrainService trainService = new TrainService(dataDirectory, null);
+            UserBookingService userBookingService = new UserBookingService(null,
+                    new SessionManager(userCount, Duration.ofHours(1)), trainService, dataDirectory);
+
+            ExecutorService workers = Executors.newFixedThreadPool(threads);
+            try {
+                String[] tokens = logIn(userBookingService, workers);
+                Map<String, long[]> latencies = new LinkedHashMap<>();
+                long elapsed = rush(userBookingService, trains, tokens, workers, latencies);
+                ObjectNode oversell = checkOversell(userBookingService, trainService, trains, tokens);
+                return summary(elapsed, latencies, oversell);
+            } finally {
+                workers.shutdownNow();
+                userBookingService.close();
+                userBookingService.compact();
+                trainService.compact();
+            }
+        } finally {
+            System.setOut(console);
+            if (options.containsKey("keepData")) {
+                console.println("Simulation data kept in " + dataDirectory);
+            } else {
+                deleteDirectory(dataDirectory);
+            }
+        }
+    }
+
+    /**
+     * A few long corridors through hub stations; each train runs a contiguous stretch of one corridor,
+     * in either direction, with 10 to 90 minutes between stops.
+     */
+    private List<Train> generateTrains() {
+        int hubCount = Math.max(2, stationCount / 10);
+        int corridorCount = Math.max(1, stationCount / 40);
+        List<List<String>> corridors = new ArrayList<>();
+        for (int corridor = 0; corridor < corridorCount; corridor++) {
+            List<String> stops = new ArrayList<>();
+            for (int station = hubCount + corridor; station < stationCount; station += corridorCount) {
+                stops.add(stationName(station));
+                if (random.nextInt(5) == 0) {
+                    String hub = stationName(random.nextInt(hubCount));
+                    if (!stops.contains(hub)) {
+                        stops.add(hub);
+                    }
+                }
+            }
+            corridors.add(stops);
+        }
+
+        List<Train> trains = new ArrayList<>(trainCount);
+        for (int train = 0; train < trainCount; train++) {
+            List<String> corridor = corridors.get(random.nextInt(corridors.size()));
+            int length = Math.min(corridor.size(), 5 + random.nextInt(20));
+            int start = random.nextInt(corridor.size() - length + 1);
+            List<String> stations = new ArrayList<>(corridor.subList(start, start + length));
+            if (random.nextBoolean()) {
+                Collections.reverse(stations);
+            }
+
+            Map<String, String> stationTimes = new LinkedHashMap<>();
+            int minutes = random.nextInt(24 * 60);
+            for (String station : stations) {
+                stationTimes.put(station, String.format("%02d:%02d:00", minutes / 60 % 24, minutes % 60));
+                minutes += 10 + random.nextInt(81);
+            }
+
+            List<List<Integer>> seats = new ArrayList<>(rows);
+            for (int row = 0; row < rows; row++) {
+                seats.add(new ArrayList<>(Collections.nCopies(seatsPerRow, 0)));
+            }
+            trains.add(Train.builder()
+                    .trainId("R" + train)
+                    .trainNo(String.valueOf(20000 + train))
+                    .seats(seats)
+                    .stationTimes(stationTimes)
+                    .stations(stations)
+                    .build());
+        }
+        return trains;
+    }
+
+    private List<User> generateUsers() {
+        String hashedPassword = BCrypt.hashpw(PASSWORD, BCrypt.gensalt(HASH_ROUNDS));
+        List<User> users = new ArrayList<>(userCount);
+        for (int user = 0; user < userCount; user++) {
+            users.add(User.builder()
+                    .name(userName(user))
+                    .hashedPassword(hashedPassword)
+                    .ticketsBooked(new ArrayList<>())
+                    .userId("rush-" + user)
+                    .build());
+        }
+        return users;
+    }
+
+    private String[] logIn(UserBookingService userBookingService, ExecutorService workers) throws Exception {
+        String[] tokens = new String[userCount];
+        List<Future<?>> logins = new ArrayList<>(userCount);
+        for (int user = 0; user < userCount; user++) {
+            int index = user;
+            logins.add(workers.submit(() -> {
+                tokens[index] = userBookingService.loginUser(userName(index), PASSWORD)
+                        .orElseThrow(() -> new IllegalStateException("Login failed for " + userName(index)));
+            }));
+        }
+        for (Future<?> login : logins) {
+            login.get();
+        }
+        return tokens;
+    }
+
+    /**
+     * Releases every worker at once and lets them book until the time is up; returns the elapsed nanoseconds.
+     */
+    private long rush(UserBookingService userBookingService, List<Train> trains, String[] tokens,
+                      ExecutorService workers, Map<String, long[]> latencies) throws Exception {
+        CountDownLatch startGate = new CountDownLatch(1);
+        List<Future<LatencyLog[]>> results = new ArrayList<>(threads);
+        for (int worker = 0; worker < threads; worker++) {
+            results.add(workers.submit(() -> {
+                LatencyLog[] logs = {new LatencyLog(), new LatencyLog(), new LatencyLog()};
+                startGate.await();
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+                while (System.nanoTime() < deadline) {
+                    journey(userBookingService, trains, tokens, logs);
+                }
+                return logs;
+            }));
+        }
+
+        long start = System.nanoTime();
+        startGate.countDown();
+        LatencyLog[] merged = {new LatencyLog(), new LatencyLog(), new LatencyLog()};
+        for (Future<LatencyLog[]> result : results) {
+            LatencyLog[] logs = result.get();
+            for (int operation = 0; operation < merged.length; operation++) {
+                merged[operation].addAll(logs[operation]);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        latencies.put("search", merged[0].sorted());
+        latencies.put("book", merged[1].sorted());
+        latencies.put("cancel", merged[2].sorted());
+        return elapsed;
+    }
+
+    // One user's search -> pick a seat that looks free -> book -> maybe cancel
+    private void journey(UserBookingService userBookingService, List<Train> trains, String[] tokens,
+                         LatencyLog[] logs) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String token = tokens[random.nextInt(tokens.length)];
+        Train wanted = trains.get(random.nextDouble() < hotShare ? random.nextInt(hotTrains) : random.nextInt(trains.size()));
+        List<String> stations = wanted.getStations();
+        int from = random.nextInt(stations.size() - 1);
+        int to = from + 1 + random.nextInt(stations.size() - from - 1);
+        String source = stations.get(from);
+        String destination = stations.get(to);
+
+        long start = System.nanoTime();
+        List<Train> found = userBookingService.getTrains(source, destination);
+        logs[0].add(System.nanoTime() - start);
+        Optional<Train> train = found.stream()
+                .filter(candidate -> candidate.getTrainId().equals(wanted.getTrainId()))
+                .findFirst();
+        if (train.isEmpty()) {
+            emptySearches.incrementAndGet();
+            return;
+        }
+
+        SeatPosition seat = pickFreeSeat(train.get(), source, destination, random);
+        if (seat == null) {
+            soldOut.incrementAndGet();
+            return;
+        }
+
+        bookingAttempts.incrementAndGet();
+        start = System.nanoTime();
+        Optional<Ticket> ticket = userBookingService.bookTicket(token, train.get(), source, destination,
+                seat.row(), seat.seat());
+        logs[1].add(System.nanoTime() - start);
+        if (ticket.isEmpty()) {
+            // The seat looked free a moment ago; someone else got it first
+            conflicts.incrementAndGet();
+            return;
+        }
+        bookings.incrementAndGet();
+
+        if (random.nextDouble() < cancelRate) {
+            start = System.nanoTime();
+            if (userBookingService.cancelBooking(token, ticket.get().getTicketId())) {
+                cancellations.incrementAndGet();
+            }
+            logs[2].add(System.nanoTime() - start);
+        }
+    }
+
+    // A random seat among those free for the journey, as a user would pick from the seat map
+    private static SeatPosition pickFreeSeat(Train train, String source, String destination, ThreadLocalRandom random) {
+        SeatInventory inventory = train.getSeatInventory();
+        Optional<LegRange> legs = train.legRange(source, destination);
+        if (inventory == null || legs.isEmpty()) return null;
+
+        int rowCount = inventory.getRowCount();
+        int firstRow = random.nextInt(rowCount);
+        for (int offset = 0; offset < rowCount; offset++) {
+            int row = (firstRow + offset) % rowCount;
+            long[] available = inventory.availableSeats(row, legs.get().fromLeg(), legs.get().toLeg());
+            int free = 0;
+            for (long word : available) {
+                free += Long.bitCount(word);
+            }
+            if (free == 0) continue;
+
+            int pick = random.nextInt(free);
+            for (int word = 0; word < available.length; word++) {
+                int count = Long.bitCount(available[word]);
+                if (pick < count) {
+                    long bits = available[word];
+                    for (int skip = 0; skip < pick; skip++) {
+                        bits &= bits - 1;
+                    }
+                    return new SeatPosition(row, word * Long.SIZE + Long.numberOfTrailingZeros(bits));
+                }
+                pick -= count;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Every ticket must hold its seat on its legs alone, and the seat maps must hold exactly the seat-legs
+     * the tickets account for.
+     */
+    private ObjectNode checkOversell(UserBookingService userBookingService, TrainService trainService, List<Train> trains,
+                                     String[] tokens) {
+        Map<String, Long> claimedLegs = new HashMap<>();
+        Map<String, Long> ticketSeatLegs = new HashMap<>();
+        long tickets = 0;
+        long oversold = 0;
+        long unbooked = 0;
+
+        for (String token : tokens) {
+            for (Ticket ticket : userBookingService.getBookings(token).orElse(List.of())) {
+                tickets++;
+                Optional<Train> train = trainService.resolveTrain(ticket);
+                Optional<LegRange> legs = train.flatMap(found -> found.legRange(ticket.getSource(), ticket.getDestination()));
+                if (legs.isEmpty()) {
+                    unbooked++;
+                    continue;
+                }
+
+                long mask = legMask(legs.get());
+                String key = ticket.getTrainId() + "/" + ticket.getRow() + "/" + ticket.getSeat();
+                long claimed = claimedLegs.getOrDefault(key, 0L);
+                if ((claimed & mask) != 0) {
+                    oversold++;
+                }
+                claimedLegs.put(key, claimed | mask);
+                ticketSeatLegs.merge(ticket.getTrainId(), (long) Long.bitCount(mask), Long::sum);
+
+                SeatInventory inventory = train.get().getSeatInventory();
+                for (int leg = legs.get().fromLeg(); leg < legs.get().toLeg(); leg++) {
+                    if (inventory.isAvailable(ticket.getRow(), ticket.getSeat(), leg, leg + 1)) {
+                        unbooked++;
+                        break;
+                    }
+                }
+            }
+        }
+
+        long mismatchedTrains = 0;
+        for (Train generated : trains) {
+            Train train = trainService.findTrain(generated.getTrainId()).orElse(generated);
+            SeatInventory inventory = train.getSeatInventory();
+            if (inventory == null) continue;
+
+            long bookedSeatLegs = 0;
+            int totalSeats = rows * seatsPerRow;
+            for (int leg = 0; leg < inventory.getLegCount(); leg++) {
+                bookedSeatLegs += totalSeats - inventory.countAvailable(leg, leg + 1);
+            }
+            if (bookedSeatLegs != ticketSeatLegs.getOrDefault(train.getTrainId(), 0L)) {
+                mismatchedTrains++;
+            }
+        }
+
+        ObjectNode check = objectMapper.createObjectNode();
+        check.put("ticketsChecked", tickets);
+        check.put("oversoldTickets", oversold);
+        check.put("ticketsWithoutSeat", unbooked);
+        check.put("trainsWithUnticketedSeats", mismatchedTrains);
+        check.put("ok", oversold == 0 && unbooked == 0 && mismatchedTrains == 0);
+        return check;
+    }
+
+    private ObjectNode summary(long elapsedNanos, Map<String, long[]> latencies, ObjectNode oversell) {
+        ObjectNode summary = objectMapper.createObjectNode();
+        ObjectNode config = summary.putObject("config");
+        config.put("users", userCount);
+        config.put("stations", stationCount);
+        config.put("trains", trainCount);
+        config.put("hotTrains", hotTrains);
+        config.put("hotShare", hotShare);
+        config.put("seatsPerTrain", rows * seatsPerRow);
+        config.put("threads", threads);
+        config.put("seconds", seconds);
+        config.put("cancelRate", cancelRate);
+
+        double elapsedSeconds = elapsedNanos / 1e9;
+        long operations = latencies.values().stream().mapToLong(values -> values.length).sum();
+        summary.put("elapsedSeconds", elapsedSeconds);
+        summary.put("operations", operations);
+        summary.put("operationsPerSecond", operations / elapsedSeconds);
+        summary.put("bookingsPerSecond", bookings.get() / elapsedSeconds);
+
+        ObjectNode latency = summary.putObject("latencyMicros");
+        latencies.forEach((operation, values) -> {
+            ObjectNode stats = latency.putObject(operation);
+            stats.put("count", values.length);
+            stats.put("p50", percentile(values, 0.50));
+            stats.put("p99", percentile(values, 0.99));
+            stats.put("p999", percentile(values, 0.999));
+            stats.put("max", values.length > 0 ? values[values.length - 1] / 1000.0 : 0);
+        });
+
+        ObjectNode outcome = summary.putObject("bookings");
+        outcome.put("attempted", bookingAttempts.get());
+        outcome.put("succeeded", bookings.get());
+        outcome.put("conflicts", conflicts.get());
+        outcome.put("conflictRate", bookingAttempts.get() > 0 ? (double) conflicts.get() / bookingAttempts.get() : 0);
+        outcome.put("soldOut", soldOut.get());
+        outcome.put("emptySearches", emptySearches.get());
+        outcome.put("cancelled", cancellations.get());
+
+        summary.set("oversellCheck", oversell);
+        return summary;
+    }
+
+    // Nearest-rank percentile of sorted nanosecond samples, in microseconds
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(rank, sorted.length - 1))] / 1000.0;
+    }
+
+    private static long legMask(LegRange legs) {
+        long mask = 0;
+        for (int leg = legs.fromLeg(); leg < legs.toLeg(); leg++) {
+            mask |= 1L << leg;
+        }
+        return mask;
+    }
+
+    private static String stationName(int station) {
+        return "Station " + station;
+    }
+
+    private static String userName(int user) {
+        return "rush-user" + user;
+    }
+
+    private int intOption(String name, int defaultValue) {
+        return options.containsKey(name) ? Integer.parseInt(options.get(name)) : defaultValue;
+    }
+
+    private long longOption(String name, long defaultValue) {
+        return options.containsKey(name) ? Long.parseLong(options.get(name)) : defaultValue;
+    }
+
+    private double doubleOption(String name, double defaultValue) {
+        return options.containsKey(name) ? Double.parseDouble(options.get(name)) : defaultValue;
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    // Growable array of one worker's latency samples, in nanoseconds
+    private static class LatencyLog {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(LatencyLog other) {
+            for (int index = 0; index < other.size; index++) {
+                add(other.values[index]);
+            }
+        }
+
+        long[] sorted() {
+            long[] copy = Arrays.copyOf(values, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package ticket.booking.tools;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * One-shot migration of users.json from tickets that embed a full train to tickets that reference it by ID.
+ * The file is streamed token by token and only one ticket is held in memory at a time, so it works on
+ * files larger than the heap. Usage: {@code TicketMigration [input] [output]}; with no output the input
+ * is replaced in place.
+ */
+public class TicketMigration {
+    private static final String DEFAULT_USERS_PATH = "src/main/java/ticket/booking/localDb/users.json";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public static void main(String[] args) throws IOException {
+        Path input = Paths.get(args.length > 0 ? args[0] : DEFAULT_USERS_PATH);
+        Path output = args.length > 1 ? Paths.get(args[1]) : input;
+
+        int migrated = new TicketMigration().migrate(input, output);
+        System.out.println("Migrated " + migrated + " tickets into " + output);
+    }
+
+    /**
+     * Rewrites {@code input} to {@code output} and returns the number of tickets converted.
+     */
+    public int migrate(Path input, Path output) throws IOException {
+        Path temp = output.toAbsolutePath().resolveSibling(output.getFileName() + ".migrating");
+        JsonFactory factory = objectMapper.getFactory();
+        int migrated = 0;
+
+        try (JsonParser parser = factory.createParser(input.toFile());
+             JsonGenerator generator = factory.createGenerator(temp.toFile(), JsonEncoding.UTF8)) {
+            generator.useDefaultPrettyPrinter();
+
+            while (parser.nextToken() != null) {
+                if (parser.currentToken() == JsonToken.FIELD_NAME && "tickets_booked".equals(parser.currentName())) {
+                    generator.copyCurrentEvent(parser);
+                    if (parser.nextToken() != JsonToken.START_ARRAY) {
+                        generator.copyCurrentStructure(parser);
+                        continue;
+                    }
+
+                    generator.writeStartArray();
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        JsonNode ticket = objectMapper.readTree(parser);
+                        if (ticket instanceof ObjectNode ticketObject && migrateTicket(ticketObject)) {
+                            migrated++;
+                        }
+                        objectMapper.writeTree(generator, ticket);
+                    }
+                    generator.writeEndArray();
+                } else {
+                    generator.copyCurrentEvent(parser);
+                }
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING);
+        return migrated;
+    }
+
+    // Replaces the embedded "train" with train_id and the departure/arrival times of the journey
+    private boolean migrateTicket(ObjectNode ticket) {
+        JsonNode train = ticket.remove("train");
+        if (train == null || !train.isObject()) {
+            return false;
+        }
+
+        if (!ticket.hasNonNull("train_id") && train.hasNonNull("train_id")) {
+            ticket.put("train_id", train.get("train_id").asText());
+        }
+        JsonNode stationTimes = train.get("station_times");
+        putTime(ticket, "departure_time", stationTimes, ticket.path("source").asText(null));
+        putTime(ticket, "arrival_time", stationTimes, ticket.path("destination").asText(null));
+        return true;
+    }
+
+    private void putTime(ObjectNode ticket, String field, JsonNode stationTimes, String station) {
+        if (ticket.hasNonNull(field) || stationTimes == null || station == null) return;
+
+        Iterator<Map.Entry<String, JsonNode>> entries = stationTimes.fields();
+        while (entries.hasNext()) {
+            Map.Entry<String, JsonNode> entry = entries.next();
+            if (entry.getKey().equalsIgnoreCase(station.trim())) {
+                ticket.put(field, entry.getValue().asText());
+                return;
+            }
+        }
+    }
+}
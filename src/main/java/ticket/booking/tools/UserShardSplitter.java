@@ -0,0 +1,86 @@
+package ticket.booking.tools;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ticket.booking.persistence.ShardedUserStore;
+import ticket.booking.persistence.Snapshots;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * One-shot split of users.json into the {@code users-NNN.json} shards read by {@link ShardedUserStore}.
+ * The input is streamed one user at a time, so it works on files larger than the heap. Usage:
+ * {@code UserShardSplitter [input] [outputDirectory] [shards]}; the data directory picks the shards up in
+ * place of users.json once {@code outputDirectory} is its {@code users} subdirectory, which is the default.
+ */
+public class UserShardSplitter {
+    private static final String DEFAULT_USERS_PATH = "src/main/java/ticket/booking/localDb/users.json";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public static void main(String[] args) throws IOException {
+        Path input = Paths.get(args.length > 0 ? args[0] : DEFAULT_USERS_PATH);
+        Path output = args.length > 1 ? Paths.get(args[1]) : input.toAbsolutePath().resolveSibling("users");
+        int shards = args.length > 2 ? Integer.parseInt(args[2]) : ShardedUserStore.DEFAULT_SHARD_COUNT;
+
+        int split = new UserShardSplitter().split(input, output, shards);
+        System.out.println("Split " + split + " users into " + shards + " shards in " + output);
+    }
+
+    /**
+     * Writes the users of {@code input} to {@code shards} files in {@code outputDirectory} and returns how
+     * many users were written. Users without an ID cannot be looked up by ID and go to the first shard.
+     */
+    public int split(Path input, Path outputDirectory, int shards) throws IOException {
+        if (shards <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        Path journal = Snapshots.journalPathFor(input);
+        if (Files.exists(journal) && Files.size(journal) > 0) {
+            throw new IllegalStateException(journal + " has changes not yet in " + input + "; compact it first");
+        }
+        if (Files.exists(ShardedUserStore.shardPath(outputDirectory, 0))) {
+            throw new IllegalStateException(outputDirectory + " already contains user shards");
+        }
+
+        Files.createDirectories(outputDirectory);
+        JsonFactory factory = objectMapper.getFactory();
+        JsonGenerator[] generators = new JsonGenerator[shards];
+        int split = 0;
+        try (JsonParser parser = factory.createParser(input.toFile())) {
+            for (int shard = 0; shard < shards; shard++) {
+                generators[shard] = factory.createGenerator(
+                        ShardedUserStore.shardPath(outputDirectory, shard).toFile(), JsonEncoding.UTF8);
+                generators[shard].writeStartArray();
+            }
+
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array of users in " + input);
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                JsonNode user = parser.readValueAsTree();
+                JsonNode userId = user.get("user_id");
+                int shard = userId != null && userId.isTextual() ? ShardedUserStore.shardOf(userId.asText(), shards) : 0;
+                generators[shard].writeTree(user);
+                split++;
+            }
+
+            for (JsonGenerator generator : generators) {
+                generator.writeEndArray();
+            }
+        } finally {
+            for (JsonGenerator generator : generators) {
+                if (generator != null) generator.close();
+            }
+        }
+        return split;
+    }
+}
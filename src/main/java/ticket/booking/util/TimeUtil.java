@@ -0,0 +1,55 @@
+package ticket.booking.util;
+
+public class TimeUtil {
+
+    public static final int NO_TIME = -1;
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+    // Private constructor to prevent instantiation
+    private TimeUtil() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Seconds since midnight of a {@code HH:mm} or {@code HH:mm:ss} time, or {@link #NO_TIME} if it is
+     * null or malformed.
+     */
+    public static int toSecondOfDay(String time) {
+        if (time == null) return NO_TIME;
+
+        String[] parts = time.trim().split(":");
+        if (parts.length < 2 || parts.length > 3) return NO_TIME;
+
+        try {
+            int hours = Integer.parseInt(parts[0]);
+            int minutes = Integer.parseInt(parts[1]);
+            int seconds = parts.length == 3 ? Integer.parseInt(parts[2]) : 0;
+            if (hours < 0 || hours > 23 || minutes < 0 || minutes > 59 || seconds < 0 || seconds > 59) {
+                return NO_TIME;
+            }
+            return hours * 3600 + minutes * 60 + seconds;
+        } catch (NumberFormatException e) {
+            return NO_TIME;
+        }
+    }
+
+    /**
+     * Formats seconds since midnight as {@code HH:mm:ss}, or returns null for {@link #NO_TIME}.
+     */
+    public static String fromSecondOfDay(int secondOfDay) {
+        if (secondOfDay < 0 || secondOfDay >= SECONDS_PER_DAY) return null;
+
+        char[] text = new char[8];
+        writeTwoDigits(text, 0, secondOfDay / 3600);
+        text[2] = ':';
+        writeTwoDigits(text, 3, secondOfDay / 60 % 60);
+        text[5] = ':';
+        writeTwoDigits(text, 6, secondOfDay % 60);
+        return new String(text);
+    }
+
+    private static void writeTwoDigits(char[] text, int offset, int value) {
+        text[offset] = (char) ('0' + value / 10);
+        text[offset + 1] = (char) ('0' + value % 10);
+    }
+}
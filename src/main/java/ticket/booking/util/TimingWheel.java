@@ -0,0 +1,159 @@
+package ticket.booking.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel: deadlines are kept in six levels of 64 slots, each level's slot spanning 64 times
+ * the one below, like the digits of the deadline in base 64. Scheduling and cancelling unlink or link a node in
+ * one slot, and advancing only visits the slots of the ticks that pass, re-filing a higher level's slot into
+ * the lower ones when its time comes, so the cost does not grow with the number of pending timeouts.
+ * <p>
+ * Items expire at the first tick at or after their deadline, never earlier. The wheel runs no threads; the
+ * owner calls {@link #advance} periodically and handles what it returns outside the wheel's lock.
+ */
+public class TimingWheel<T> {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 6;
+    // Deadlines further out are filed at the horizon and re-filed as it moves
+    private static final long MAX_TICKS = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    /**
+     * A scheduled item, for cancelling it.
+     */
+    public static final class Timeout<T> {
+        private final T item;
+        private final long deadlineTick;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+        private int level = -1;
+        private int slot;
+
+        private Timeout(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public T item() {
+            return item;
+        }
+    }
+
+    private final long tickMillis;
+    private final long startMillis;
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final Timeout<T>[][] slots = new Timeout[LEVELS][SLOTS];
+    // Last tick processed by advance
+    private long currentTick;
+    private int size;
+
+    public TimingWheel(long tickMillis, long startMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick must be positive: " + tickMillis);
+        }
+        this.tickMillis = tickMillis;
+        this.startMillis = startMillis;
+    }
+
+    /**
+     * Schedules {@code item} to expire at {@code deadlineMillis}; a deadline already passed expires on the next tick.
+     */
+    public synchronized Timeout<T> schedule(T item, long deadlineMillis) {
+        // Round up so that nothing expires before its deadline
+        long deadlineTick = Math.floorDiv(deadlineMillis - startMillis + tickMillis - 1, tickMillis);
+        Timeout<T> timeout = new Timeout<>(item, Math.max(deadlineTick, currentTick + 1));
+        file(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Removes a timeout that has not expired yet; returns false if it already expired or was cancelled.
+     */
+    public synchronized boolean cancel(Timeout<T> timeout) {
+        if (timeout == null || timeout.level < 0) return false;
+
+        unlink(timeout);
+        size--;
+        return true;
+    }
+
+    /**
+     * Processes every tick up to {@code nowMillis} and returns the items that expired, earliest first.
+     */
+    public synchronized List<T> advance(long nowMillis) {
+        List<T> expired = new ArrayList<>();
+        long nowTick = Math.floorDiv(nowMillis - startMillis, tickMillis);
+        while (currentTick < nowTick) {
+            currentTick++;
+            cascade();
+
+            Timeout<T> timeout = slots[0][(int) (currentTick & (SLOTS - 1))];
+            while (timeout != null) {
+                Timeout<T> next = timeout.next;
+                unlink(timeout);
+                size--;
+                expired.add(timeout.item);
+                timeout = next;
+            }
+        }
+        return expired;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // When the lower digits of the current tick wrap to zero, the matching slots of the levels above are due
+    // to be spread over the levels below, highest first so that they can cascade further down in the same tick
+    private void cascade() {
+        int levels = 0;
+        while (levels + 1 < LEVELS && (currentTick & ((1L << (SLOT_BITS * (levels + 1))) - 1)) == 0) {
+            levels++;
+        }
+        for (int level = levels; level > 0; level--) {
+            int slot = (int) ((currentTick >>> (SLOT_BITS * level)) & (SLOTS - 1));
+            Timeout<T> timeout = slots[level][slot];
+            while (timeout != null) {
+                Timeout<T> next = timeout.next;
+                unlink(timeout);
+                file(timeout);
+                timeout = next;
+            }
+        }
+    }
+
+    // The lowest level on which the deadline and the current tick share every higher digit
+    private void file(Timeout<T> timeout) {
+        long deadline = Math.min(timeout.deadlineTick, currentTick + MAX_TICKS);
+        int level = 0;
+        while (level + 1 < LEVELS && (deadline >>> (SLOT_BITS * (level + 1))) != (currentTick >>> (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        int slot = (int) ((deadline >>> (SLOT_BITS * level)) & (SLOTS - 1));
+
+        timeout.level = level;
+        timeout.slot = slot;
+        timeout.prev = null;
+        timeout.next = slots[level][slot];
+        if (timeout.next != null) {
+            timeout.next.prev = timeout;
+        }
+        slots[level][slot] = timeout;
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            slots[timeout.level][timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.level = -1;
+    }
+}
@@ -1,6 +1,9 @@
 package ticket.booking.util;
 
 import org.mindrot.jbcrypt.BCrypt;
+import ticket.booking.metrics.LatencyHistogram;
+import ticket.booking.metrics.Metrics;
+
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -8,6 +11,8 @@ public class UserServiceUtil {
 
     private static final Logger log = Logger.getLogger(UserServiceUtil.class.getName());
     private static final int BCRYPT_ROUNDS = 12;
+    private static final LatencyHistogram HASH_TIME = Metrics.histogram("password.hash");
+    private static final LatencyHistogram CHECK_TIME = Metrics.histogram("password.check");
 
     // Private constructor to prevent instantiation
     private UserServiceUtil() {
@@ -19,11 +24,14 @@ public class UserServiceUtil {
             throw new IllegalArgumentException("Password cannot be null or empty");
         }
 
+        long start = System.nanoTime();
         try {
             return BCrypt.hashpw(plainPassword, BCrypt.gensalt(BCRYPT_ROUNDS));
         } catch (Exception e) {
             log.log(Level.SEVERE, "Error hashing password", e);
             throw new RuntimeException("Failed to hash password", e);
+        } finally {
+            HASH_TIME.recordSince(start);
         }
     }
 
@@ -33,14 +41,44 @@ public class UserServiceUtil {
             return false;
         }
 
+        long start = System.nanoTime();
         try {
             return BCrypt.checkpw(plainPassword, hashedPassword);
         } catch (Exception e) {
             log.log(Level.WARNING, "Error checking password", e);
             return false;
+        } finally {
+            CHECK_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * Cost factor of a BCrypt hash such as {@code $2a$10$...}, or -1 if it cannot be read.
+     */
+    public static int hashRounds(String hashedPassword) {
+        if (hashedPassword == null || hashedPassword.length() < 7 || hashedPassword.charAt(0) != '$') {
+            return -1;
+        }
+
+        int costStart = hashedPassword.indexOf('$', 1) + 1;
+        if (costStart <= 0 || costStart + 2 >= hashedPassword.length() || hashedPassword.charAt(costStart + 2) != '$') {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(hashedPassword.substring(costStart, costStart + 2));
+        } catch (NumberFormatException e) {
+            return -1;
         }
     }
 
+    /**
+     * True for hashes made at a lower cost than new passwords get, which should be redone on next login.
+     */
+    public static boolean needsRehash(String hashedPassword) {
+        int rounds = hashRounds(hashedPassword);
+        return rounds >= 0 && rounds < BCRYPT_ROUNDS;
+    }
+
     public static boolean isValidPassword(String password) {
         return password != null &&
                 password.length() >= 6 &&
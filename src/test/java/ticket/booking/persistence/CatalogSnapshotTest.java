@@ -0,0 +1,146 @@
+package ticket.booking.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ticket.booking.entities.SeatInventory;
+import ticket.booking.entities.Train;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogSnapshotTest {
+    @TempDir
+    Path dataDirectory;
+
+    @Test
+    void readsBackWhatItWrote() throws Exception {
+        Path snapshot = dataDirectory.resolve("trains.bin");
+        List<Train> written = List.of(
+                newTrain("T1", Arrays.asList("a", "b", "c", "d"), new int[] {4, 70, 130, 8}),
+                // Shares stations with T1, so both index into the same dictionary entries
+                newTrain("T2", Arrays.asList("d", "c", "e"), new int[] {3}),
+                Train.builder().trainId("T3").build());
+        SeatInventory t1 = written.get(0).getSeatInventory();
+        t1.book(0, 1);                         // every leg alike, stored once
+        t1.book(1, 65, 0, 1);                  // one leg only, stored per leg
+        t1.book(1, 3, 1, 3);
+        t1.book(2, 129, 2, 3);                 // row 3 stays empty and is not stored at all
+        written.get(1).getSeatInventory().book(0, 2, 0, 1);
+
+        CatalogSnapshot.write(snapshot, written);
+        List<Train> read = CatalogSnapshot.read(snapshot);
+
+        assertEquals(written.size(), read.size());
+        for (int index = 0; index < written.size(); index++) {
+            Train expected = written.get(index);
+            Train actual = read.get(index);
+            assertEquals(expected.getTrainId(), actual.getTrainId());
+            assertEquals(expected.getTrainNo(), actual.getTrainNo());
+            assertEquals(expected.getStations(), actual.getStations());
+            assertEquals(expected.getStationTimes(), actual.getStationTimes());
+            assertSameSeats(expected.getSeatInventory(), actual.getSeatInventory());
+        }
+        assertEquals(List.of("a", "b", "c", "d"), new ArrayList<>(read.get(0).getStationTimes().keySet()));
+    }
+
+    @Test
+    void keepsEachStationTimeAsWritten() throws Exception {
+        Map<String, String> stationTimes = new LinkedHashMap<>();
+        stationTimes.put("a", "08:15:30");
+        stationTimes.put("b", "09:05");
+        stationTimes.put("c", "00:00:00");
+        stationTimes.put("d", "23:59");
+        stationTimes.put("e", null);
+        stationTimes.put("f", "around noon");
+        stationTimes.put(null, "10:00:00");
+        Train train = Train.builder()
+                .trainId("T1")
+                .trainNo("100")
+                .stationTimes(stationTimes)
+                .stations(Arrays.asList("a", null, "b"))
+                .build();
+        Path snapshot = dataDirectory.resolve("trains.bin");
+
+        CatalogSnapshot.write(snapshot, List.of(train));
+        Train read = CatalogSnapshot.read(snapshot).get(0);
+
+        assertEquals(stationTimes, read.getStationTimes());
+        assertEquals(Arrays.asList("a", null, "b"), read.getStations());
+        assertNull(read.getSeatInventory());
+    }
+
+    @Test
+    void rejectsACorruptSnapshot() throws Exception {
+        Path snapshot = dataDirectory.resolve("trains.bin");
+        Train train = newTrain("T1", List.of("a", "b"), new int[] {16});
+        train.getSeatInventory().book(0, 3);
+        CatalogSnapshot.write(snapshot, List.of(train));
+        byte[] bytes = Files.readAllBytes(snapshot);
+
+        for (int offset : new int[] {8, bytes.length / 2, bytes.length - 9}) {
+            byte[] corrupt = bytes.clone();
+            corrupt[offset] ^= 0x10;
+            Files.write(snapshot, corrupt);
+            IOException e = assertThrows(IOException.class, () -> CatalogSnapshot.read(snapshot));
+            assertTrue(e.getMessage().startsWith("Checksum mismatch"), e.getMessage());
+        }
+
+        Files.write(snapshot, Arrays.copyOf(bytes, bytes.length - 1));
+        assertThrows(IOException.class, () -> CatalogSnapshot.read(snapshot));
+    }
+
+    @Test
+    void rejectsOtherVersions() throws Exception {
+        Path snapshot = dataDirectory.resolve("trains.bin");
+        CatalogSnapshot.write(snapshot, List.of(newTrain("T1", List.of("a", "b"), new int[] {4})));
+        byte[] bytes = Files.readAllBytes(snapshot);
+
+        ByteBuffer.wrap(bytes).putInt(Integer.BYTES, 1);
+        Files.write(snapshot, bytes);
+
+        IOException e = assertThrows(IOException.class, () -> CatalogSnapshot.read(snapshot));
+        assertTrue(e.getMessage().startsWith("Unsupported binary catalog version 1"), e.getMessage());
+    }
+
+    private static void assertSameSeats(SeatInventory expected, SeatInventory actual) {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertEquals(expected.getRowCount(), actual.getRowCount());
+        assertEquals(expected.getLegCount(), actual.getLegCount());
+        for (int row = 0; row < expected.getRowCount(); row++) {
+            assertEquals(expected.getSeatCount(row), actual.getSeatCount(row));
+            assertArrayEquals(expected.getRowWords(row), actual.getRowWords(row));
+        }
+    }
+
+    // A train calling at {@code stations} every ten minutes from 08:00, with rows of the given lengths
+    private static Train newTrain(String trainId, List<String> stations, int[] seatCounts) {
+        Map<String, String> stationTimes = new LinkedHashMap<>();
+        for (int stop = 0; stop < stations.size(); stop++) {
+            stationTimes.put(stations.get(stop), String.format("08:%02d:00", 10 * stop));
+        }
+        Train train = Train.builder()
+                .trainId(trainId)
+                .trainNo(trainId.substring(1))
+                .stationTimes(stationTimes)
+                .stations(stations)
+                .build();
+        train.setSeatInventory(new SeatInventory(seatCounts, SeatInventory.legCountFor(stations.size())));
+        return train;
+    }
+}
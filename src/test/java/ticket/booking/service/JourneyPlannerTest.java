@@ -0,0 +1,299 @@
+package ticket.booking.service;
+
+import org.junit.jupiter.api.Test;
+import ticket.booking.entities.Train;
+import ticket.booking.util.TimeUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ticket.booking.service.TestTrains.timetabled;
+
+class JourneyPlannerTest {
+    private static final int HOUR = 60 * 60;
+    private static final int DAY = 24 * HOUR;
+    private static final int TRANSFER = 10 * 60;
+
+    @Test
+    void findsADirectJourney() {
+        JourneyPlanner planner = JourneyPlanner.compile(List.of(
+                timetabled("A", "a", "08:00:00", "b", "09:00:00", "c", "10:00:00")), TRANSFER);
+
+        assertEquals(List.of(journey(new JourneyPlanner.Leg("A", "a", "c", 8 * HOUR, 10 * HOUR))),
+                planner.plan("a", "c", 7 * HOUR, 0));
+        assertEquals(List.of(journey(new JourneyPlanner.Leg("A", "b", "c", 9 * HOUR, 10 * HOUR))),
+                planner.plan("B", " C ", 0, 0));
+    }
+
+    @Test
+    void changesOnlyToTrainsLeavingAfterTheMinimumTransferTime() {
+        JourneyPlanner planner = JourneyPlanner.compile(List.of(
+                timetabled("A", "a", "08:00:00", "b", "09:00:00"),
+                timetabled("B", "b", "09:05:00", "c", "10:00:00"),
+                timetabled("C", "b", "09:20:00", "c", "10:30:00")), TRANSFER);
+
+        assertEquals(List.of(journey(
+                        new JourneyPlanner.Leg("A", "a", "b", 8 * HOUR, 9 * HOUR),
+                        new JourneyPlanner.Leg("C", "b", "c", 9 * HOUR + 20 * 60, 10 * HOUR + 30 * 60))),
+                planner.plan("a", "c", 0, 1));
+        assertTrue(planner.plan("a", "c", 0, 0).isEmpty());
+    }
+
+    @Test
+    void listsJourneysWithMoreChangesOnlyWhenTheyArriveEarlier() {
+        JourneyPlanner planner = JourneyPlanner.compile(List.of(
+                timetabled("Slow", "a", "08:00:00", "d", "14:00:00"),
+                timetabled("A", "a", "08:00:00", "b", "09:00:00"),
+                timetabled("B", "b", "09:30:00", "c", "10:00:00"),
+                timetabled("C", "c", "10:30:00", "d", "11:00:00"),
+                timetabled("D", "b", "09:30:00", "d", "13:00:00")), TRANSFER);
+
+        List<JourneyPlanner.Journey> journeys = planner.plan("a", "d", 0, 5);
+
+        assertEquals(List.of(0, 1, 2), journeys.stream().map(JourneyPlanner.Journey::transfers).toList());
+        assertEquals(List.of(14 * HOUR, 13 * HOUR, 11 * HOUR),
+                journeys.stream().map(JourneyPlanner.Journey::arrival).toList());
+        assertEquals(List.of("A", "B", "C"), journeys.get(2).legs().stream().map(JourneyPlanner.Leg::trainId).toList());
+        assertEquals(journeys.subList(0, 2), planner.plan("a", "d", 0, 1));
+        assertEquals(List.of(journeys.get(2)), planner.earliestArrival("a", "d", 0));
+    }
+
+    @Test
+    void rollsTimesEarlierThanThePreviousStopOverToTheNextDay() {
+        JourneyPlanner planner = JourneyPlanner.compile(List.of(
+                timetabled("Night", "x", "23:00:00", "y", "01:00:00", "z", "02:30:00")), TRANSFER);
+
+        List<JourneyPlanner.Journey> journeys = planner.plan("x", "z", 22 * HOUR, 0);
+
+        assertEquals(1, journeys.size());
+        assertEquals(23 * HOUR, journeys.get(0).departure());
+        assertEquals(DAY + 2 * HOUR + 30 * 60, journeys.get(0).arrival());
+        assertEquals("02:30:00 (+1)", JourneyPlanner.formatTime(journeys.get(0).arrival()));
+    }
+
+    @Test
+    void continuesOnTheNextMorningsTrains() {
+        JourneyPlanner planner = JourneyPlanner.compile(List.of(
+                timetabled("Evening", "a", "21:00:00", "b", "22:00:00"),
+                timetabled("Morning", "b", "06:00:00", "c", "07:00:00")), TRANSFER);
+
+        assertEquals(List.of(journey(
+                        new JourneyPlanner.Leg("Evening", "a", "b", 21 * HOUR, 22 * HOUR),
+                        new JourneyPlanner.Leg("Morning", "b", "c", DAY + 6 * HOUR, DAY + 7 * HOUR))),
+                planner.plan("a", "c", 20 * HOUR, 1));
+        assertEquals(DAY + 6 * HOUR, planner.plan("b", "c", 8 * HOUR, 0).get(0).departure());
+    }
+
+    @Test
+    void runsThroughStopsWithoutATime() {
+        JourneyPlanner planner = JourneyPlanner.compile(List.of(
+                timetabled("A", "a", "08:00:00", "b", null, "c", "10:00:00")), TRANSFER);
+
+        assertEquals(List.of(journey(new JourneyPlanner.Leg("A", "a", "c", 8 * HOUR, 10 * HOUR))),
+                planner.plan("a", "c", 0, 0));
+        assertTrue(planner.plan("a", "b", 0, 0).isEmpty());
+    }
+
+    @Test
+    void runsThroughStopsListedWithANullTime() {
+        Map<String, String> stationTimes = new HashMap<>();
+        stationTimes.put("a", "08:00:00");
+        stationTimes.put("b", null);
+        stationTimes.put("c", "10:00:00");
+        Train train = Train.builder()
+                .trainId("A")
+                .stationTimes(stationTimes)
+                .stations(List.of("a", "b", "c"))
+                .build();
+
+        assertEquals(List.of(journey(new JourneyPlanner.Leg("A", "a", "c", 8 * HOUR, 10 * HOUR))),
+                JourneyPlanner.compile(List.of(train), TRANSFER).plan("a", "c", 0, 0));
+    }
+
+    @Test
+    void findsNothingForUnknownUnreachableOrIdenticalStations() {
+        JourneyPlanner planner = JourneyPlanner.compile(List.of(
+                timetabled("A", "a", "08:00:00", "b", "09:00:00")), TRANSFER);
+
+        assertTrue(planner.plan("b", "a", 0, 3).isEmpty());
+        assertTrue(planner.plan("a", "nowhere", 0, 3).isEmpty());
+        assertTrue(planner.plan("a", "a", 0, 3).isEmpty());
+        assertTrue(planner.plan(null, "b", 0, 3).isEmpty());
+    }
+
+    @Test
+    void agreesWithABruteForceScanOfEveryTrip() {
+        Random random = new Random(19);
+        int journeysWithChanges = 0;
+        for (int timetable = 0; timetable < 40; timetable++) {
+            List<Train> trains = randomTimetable(random, 8, 15);
+            JourneyPlanner planner = JourneyPlanner.compile(trains, TRANSFER);
+            BruteForce bruteForce = new BruteForce(trains);
+
+            for (int query = 0; query < 50; query++) {
+                String source = "s" + random.nextInt(8);
+                String destination = "s" + random.nextInt(8);
+                if (source.equals(destination)) continue;
+                int departAfter = random.nextInt(DAY);
+                int maxTransfers = random.nextInt(4);
+
+                List<JourneyPlanner.Journey> journeys = planner.plan(source, destination, departAfter, maxTransfers);
+                String context = source + " -> " + destination + " after " + departAfter + " with " + maxTransfers
+                        + " changes in timetable " + timetable;
+                int best = Integer.MAX_VALUE;
+                int improvements = 0;
+                for (int transfers = 0; transfers <= maxTransfers; transfers++) {
+                    int arrival = bruteForce.earliestArrival(source, destination, departAfter, transfers + 1);
+                    if (arrival < best) {
+                        best = arrival;
+                        improvements++;
+                        JourneyPlanner.Journey journey = journeys.stream()
+                                .filter(found -> found.arrival() == arrival)
+                                .findFirst()
+                                .orElseThrow(() -> new AssertionError("missing arrival " + arrival + ": " + context));
+                        assertTrue(journey.transfers() <= transfers, context);
+                        assertValid(bruteForce, journey, source, destination, departAfter, context);
+                        if (journey.transfers() > 0) journeysWithChanges++;
+                    }
+                }
+                assertEquals(improvements, journeys.size(), context);
+                for (int index = 1; index < journeys.size(); index++) {
+                    assertTrue(journeys.get(index).arrival() < journeys.get(index - 1).arrival(), context);
+                    assertTrue(journeys.get(index).transfers() > journeys.get(index - 1).transfers(), context);
+                }
+            }
+        }
+        assertTrue(journeysWithChanges > 100, "only " + journeysWithChanges + " journeys with changes compared");
+    }
+
+    // Every leg is a ride some trip really makes, and each change leaves time to transfer
+    private static void assertValid(BruteForce bruteForce, JourneyPlanner.Journey journey, String source,
+                                    String destination, int departAfter, String context) {
+        List<JourneyPlanner.Leg> legs = journey.legs();
+        assertEquals(source, legs.get(0).from(), context);
+        assertEquals(destination, legs.get(legs.size() - 1).to(), context);
+        assertTrue(journey.departure() >= departAfter, context);
+        for (int index = 0; index < legs.size(); index++) {
+            assertTrue(bruteForce.rides(legs.get(index)), "no such ride " + legs.get(index) + ": " + context);
+            if (index > 0) {
+                assertEquals(legs.get(index - 1).to(), legs.get(index).from(), context);
+                assertTrue(legs.get(index).departure() >= legs.get(index - 1).arrival() + TRANSFER, context);
+            }
+        }
+    }
+
+    private static JourneyPlanner.Journey journey(JourneyPlanner.Leg... legs) {
+        return new JourneyPlanner.Journey(List.of(legs));
+    }
+
+    // Trains of 2 to 6 distinct stations, a random 10 minutes to 3 hours apart, so many runs pass midnight
+    private static List<Train> randomTimetable(Random random, int stations, int trainCount) {
+        List<Train> trains = new ArrayList<>();
+        for (int train = 0; train < trainCount; train++) {
+            List<String> route = new ArrayList<>();
+            for (int station = 0; station < stations; station++) {
+                route.add("s" + station);
+            }
+            Collections.shuffle(route, random);
+
+            int stops = 2 + random.nextInt(5);
+            String[] stopsAndTimes = new String[stops * 2];
+            int time = random.nextInt(DAY) / 60 * 60;
+            for (int stop = 0; stop < stops; stop++) {
+                stopsAndTimes[stop * 2] = route.get(stop);
+                stopsAndTimes[stop * 2 + 1] = TimeUtil.fromSecondOfDay(time % DAY);
+                time += (10 + random.nextInt(171)) * 60;
+            }
+            trains.add(timetabled("T" + train, stopsAndTimes));
+        }
+        return trains;
+    }
+
+    /**
+     * Earliest arrivals by trying every boarding and alighting stop of every run of every train on the first
+     * two days, once per train allowed.
+     */
+    private static final class BruteForce {
+        private final List<String[]> tripStations = new ArrayList<>();
+        private final List<int[]> tripTimes = new ArrayList<>();
+        private final List<String> tripTrains = new ArrayList<>();
+
+        BruteForce(List<Train> trains) {
+            for (int day = 0; day < 2; day++) {
+                for (Train train : trains) {
+                    List<String> stations = train.getStations();
+                    int[] times = new int[stations.size()];
+                    int offset = day * DAY;
+                    for (int stop = 0; stop < stations.size(); stop++) {
+                        int time = TimeUtil.toSecondOfDay(train.timeAt(stations.get(stop)));
+                        if (stop > 0 && offset + time < times[stop - 1]) {
+                            offset += DAY;
+                        }
+                        times[stop] = offset + time;
+                    }
+                    tripStations.add(stations.toArray(new String[0]));
+                    tripTimes.add(times);
+                    tripTrains.add(train.getTrainId());
+                }
+            }
+        }
+
+        int earliestArrival(String source, String destination, int departAfter, int maxTrains) {
+            List<String> names = new ArrayList<>();
+            for (String[] stations : tripStations) {
+                for (String station : stations) {
+                    if (!names.contains(station)) names.add(station);
+                }
+            }
+            int[] ready = new int[names.size()];
+            Arrays.fill(ready, Integer.MAX_VALUE);
+            ready[names.indexOf(source)] = departAfter;
+            int best = Integer.MAX_VALUE;
+
+            for (int ride = 0; ride < maxTrains; ride++) {
+                int[] reached = new int[names.size()];
+                Arrays.fill(reached, Integer.MAX_VALUE);
+                for (int trip = 0; trip < tripStations.size(); trip++) {
+                    String[] stations = tripStations.get(trip);
+                    int[] times = tripTimes.get(trip);
+                    for (int board = 0; board < stations.length; board++) {
+                        if (ready[names.indexOf(stations[board])] > times[board]) continue;
+                        for (int alight = board + 1; alight < stations.length; alight++) {
+                            int station = names.indexOf(stations[alight]);
+                            reached[station] = Math.min(reached[station], times[alight]);
+                        }
+                    }
+                }
+                best = Math.min(best, reached[names.indexOf(destination)]);
+                for (int station = 0; station < names.size(); station++) {
+                    if (reached[station] != Integer.MAX_VALUE) {
+                        ready[station] = Math.min(ready[station], reached[station] + TRANSFER);
+                    }
+                }
+            }
+            return best;
+        }
+
+        boolean rides(JourneyPlanner.Leg leg) {
+            for (int trip = 0; trip < tripStations.size(); trip++) {
+                if (!tripTrains.get(trip).equals(leg.trainId())) continue;
+
+                List<String> stations = List.of(tripStations.get(trip));
+                int board = stations.indexOf(leg.from());
+                int alight = stations.indexOf(leg.to());
+                int[] times = tripTimes.get(trip);
+                if (board >= 0 && board < alight && times[board] == leg.departure() && times[alight] == leg.arrival()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package ticket.booking.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ticket.booking.entities.LegRange;
+import ticket.booking.entities.SeatInventory;
+import ticket.booking.entities.SeatPosition;
+import ticket.booking.entities.Train;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeatHoldServiceTest {
+    private static final int ROWS = 8;
+    private static final int SEATS_PER_ROW = 16;
+    private static final LegRange WHOLE_RUN = new LegRange(0, 2);
+
+    @TempDir
+    Path dataDirectory;
+
+    private TrainService trainService;
+    private SeatHoldService seatHolds;
+    private Train train;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        trainService = new TrainService(dataDirectory, null);
+        trainService.addTrain(TestTrains.newTrain("T1", List.of("a", "b", "c"), ROWS, SEATS_PER_ROW));
+        train = trainService.findTrain("T1").orElseThrow();
+        // Long enough that the shared ticker never expires anything; the tests expire holds themselves
+        seatHolds = new SeatHoldService(trainService, Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        seatHolds.close();
+    }
+
+    @Test
+    void holdsExpireOnlyOnceTheirTimeHasRunOut() {
+        SeatHoldService.Hold hold = seatHolds.holdSeats("alice", train, "a", "c", WHOLE_RUN,
+                List.of(new SeatPosition(0, 0))).orElseThrow();
+        assertFalse(seatHolds.holdSeats("bob", train, "a", "c", WHOLE_RUN, List.of(new SeatPosition(0, 0)))
+                .isPresent());
+
+        seatHolds.expire(hold.expiresAtMillis() - 1_000);
+        assertTrue(seatHolds.find(hold.holdId()).isPresent());
+        assertFalse(inventory().isAvailable(0, 0, 0, 2));
+
+        seatHolds.expire(hold.expiresAtMillis() + 1_000);
+        assertTrue(seatHolds.find(hold.holdId()).isEmpty());
+        assertTrue(inventory().isAvailable(0, 0, 0, 2));
+        assertFalse(seatHolds.release("alice", hold.holdId()));
+    }
+
+    @Test
+    void onlyTheOwnerCanTakeOrReleaseAHold() {
+        SeatHoldService.Hold hold = seatHolds.holdGroup("alice", train, "a", "c", WHOLE_RUN, 3).orElseThrow();
+
+        assertTrue(seatHolds.take("bob", hold.holdId()).isEmpty());
+        assertFalse(seatHolds.release("bob", hold.holdId()));
+        assertTrue(seatHolds.release("alice", hold.holdId()));
+        assertEquals(0, seatHolds.size());
+        assertEquals(ROWS * SEATS_PER_ROW, inventory().countAvailable(0, 2));
+    }
+
+    @Test
+    void expiryRacingConfirmationsResolvesEveryHoldOnce() throws Exception {
+        List<SeatHoldService.Hold> holds = new ArrayList<>();
+        for (int row = 0; row < ROWS; row++) {
+            for (int seat = 0; seat < SEATS_PER_ROW; seat++) {
+                holds.add(seatHolds.holdSeats("user" + seat, train, "a", "c", WHOLE_RUN,
+                        List.of(new SeatPosition(row, seat))).orElseThrow());
+            }
+        }
+        long afterExpiry = holds.get(holds.size() - 1).expiresAtMillis() + 1_000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            Future<List<SeatHoldService.Hold>> evenConfirmed = executor.submit(() -> confirm(start, holds, 0));
+            Future<List<SeatHoldService.Hold>> oddConfirmed = executor.submit(() -> confirm(start, holds, 1));
+            Future<?> expiry = executor.submit(() -> {
+                start.await();
+                seatHolds.expire(afterExpiry);
+                return null;
+            });
+            start.countDown();
+
+            List<SeatHoldService.Hold> confirmed = new ArrayList<>(evenConfirmed.get(10, TimeUnit.SECONDS));
+            confirmed.addAll(oddConfirmed.get(10, TimeUnit.SECONDS));
+            expiry.get(10, TimeUnit.SECONDS);
+
+            assertEquals(0, seatHolds.size());
+            SeatInventory inventory = inventory();
+            for (SeatHoldService.Hold hold : holds) {
+                SeatPosition seat = hold.seats().get(0);
+                boolean booked = !inventory.isAvailable(seat.row(), seat.seat(), 0, 2);
+                assertEquals(confirmed.contains(hold), booked, "seat " + seat + " of hold " + hold.holdId());
+            }
+            assertEquals(ROWS * SEATS_PER_ROW - confirmed.size(), inventory.countAvailable(0, 2));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void closingReleasesTheLiveHolds() {
+        seatHolds.holdGroup("alice", train, "a", "c", WHOLE_RUN, 4).orElseThrow();
+        seatHolds.holdGroup("bob", train, "a", "b", new LegRange(0, 1), 2).orElseThrow();
+
+        seatHolds.close();
+
+        assertEquals(0, seatHolds.size());
+        assertEquals(ROWS * SEATS_PER_ROW, inventory().countAvailable(0, 2));
+    }
+
+    // Takes and confirms every other hold, starting at {@code first}; returns the holds it confirmed
+    private List<SeatHoldService.Hold> confirm(CountDownLatch start, List<SeatHoldService.Hold> holds, int first)
+            throws InterruptedException {
+        start.await();
+        List<SeatHoldService.Hold> confirmed = new ArrayList<>();
+        for (int index = first; index < holds.size(); index += 2) {
+            SeatHoldService.Hold hold = holds.get(index);
+            Optional<SeatHoldService.Hold> taken = seatHolds.take(hold.userId(), hold.holdId());
+            if (taken.isPresent()) {
+                assertTrue(trainService.confirmHeldSeats(train, hold.seats(), hold.legs()));
+                confirmed.add(hold);
+            }
+        }
+        return confirmed;
+    }
+
+    private SeatInventory inventory() {
+        return trainService.findTrain("T1").orElseThrow().getSeatInventory();
+    }
+}
@@ -0,0 +1,59 @@
+package ticket.booking.service;
+
+import ticket.booking.entities.Train;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trains for the service tests.
+ */
+final class TestTrains {
+    private TestTrains() {}
+
+    /**
+     * A train calling at {@code stations} an hour apart from 08:00, with {@code rows} rows of
+     * {@code seatsPerRow} free seats.
+     */
+    static Train newTrain(String trainId, List<String> stations, int rows, int seatsPerRow) {
+        List<List<Integer>> seats = new ArrayList<>();
+        for (int row = 0; row < rows; row++) {
+            seats.add(new ArrayList<>(Collections.nCopies(seatsPerRow, 0)));
+        }
+        Map<String, String> stationTimes = new HashMap<>();
+        for (int stop = 0; stop < stations.size(); stop++) {
+            stationTimes.put(stations.get(stop), String.format("%02d:00:00", 8 + stop));
+        }
+        return Train.builder()
+                .trainId(trainId)
+                .trainNo("100")
+                .seats(seats)
+                .stationTimes(stationTimes)
+                .stations(stations)
+                .build();
+    }
+
+    /**
+     * A train without seats calling at the stations in {@code stopsAndTimes}, each followed by its
+     * {@code HH:mm:ss} time, or by null for a stop the train runs through without a time.
+     */
+    static Train timetabled(String trainId, String... stopsAndTimes) {
+        List<String> stations = new ArrayList<>();
+        Map<String, String> stationTimes = new HashMap<>();
+        for (int stop = 0; stop < stopsAndTimes.length; stop += 2) {
+            stations.add(stopsAndTimes[stop]);
+            if (stopsAndTimes[stop + 1] != null) {
+                stationTimes.put(stopsAndTimes[stop], stopsAndTimes[stop + 1]);
+            }
+        }
+        return Train.builder()
+                .trainId(trainId)
+                .trainNo(trainId)
+                .stationTimes(stationTimes)
+                .stations(stations)
+                .build();
+    }
+}
@@ -0,0 +1,71 @@
+package ticket.booking.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ticket.booking.entities.LegRange;
+import ticket.booking.entities.Train;
+import ticket.booking.persistence.Snapshots;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrainServiceCompactionTest {
+    private static final List<String> STATIONS = List.of("a", "b", "c");
+
+    @TempDir
+    Path dataDirectory;
+
+    @Test
+    void startsWithAnEmptyCatalogInAnEmptyDirectory() throws Exception {
+        TrainService trainService = new TrainService(dataDirectory, null);
+
+        assertTrue(Files.exists(dataDirectory.resolve("trains.json")));
+        assertTrue(trainService.searchTrains("a", "c").isEmpty());
+    }
+
+    @Test
+    void readsTheCatalogInTheDirectory() throws Exception {
+        new ObjectMapper().writeValue(dataDirectory.resolve("trains.json").toFile(),
+                List.of(TestTrains.newTrain("T1", STATIONS, 2, 4)));
+
+        TrainService trainService = new TrainService(dataDirectory, null);
+
+        assertEquals(List.of("T1"), trainService.searchTrains("a", "c").stream().map(Train::getTrainId).toList());
+        assertTrue(trainService.searchTrains("c", "a").isEmpty());
+    }
+
+    @Test
+    void compactWritesBookingsToTheDirectoryAndEmptiesTheJournal() throws Exception {
+        TrainService trainService = new TrainService(dataDirectory, null);
+        trainService.addTrain(TestTrains.newTrain("T1", STATIONS, 2, 4));
+        assertTrue(trainService.bookSeat(trainService.findTrain("T1").orElseThrow(), 0, 1, new LegRange(0, 1)));
+
+        trainService.compact();
+
+        assertEquals(0, Files.size(Snapshots.journalPathFor(dataDirectory.resolve("trains.json"))));
+        Train[] saved = new ObjectMapper().readValue(dataDirectory.resolve("trains.json").toFile(), Train[].class);
+        assertEquals(1, saved.length);
+        assertTrue(saved[0].getSeatInventory().isBooked(0, 1));
+
+        Train reloaded = new TrainService(dataDirectory, null).findTrain("T1").orElseThrow();
+        assertFalse(reloaded.getSeatInventory().isAvailable(0, 1, 0, 1));
+        assertTrue(reloaded.getSeatInventory().isAvailable(0, 1, 1, 2));
+    }
+
+    @Test
+    void bookingsSurviveARestartBeforeCompaction() throws Exception {
+        TrainService trainService = new TrainService(dataDirectory, null);
+        trainService.addTrain(TestTrains.newTrain("T1", STATIONS, 2, 4));
+        assertTrue(trainService.bookSeat(trainService.findTrain("T1").orElseThrow(), 1, 0));
+        trainService.commit().join();
+
+        Train reloaded = new TrainService(dataDirectory, null).findTrain("T1").orElseThrow();
+        assertTrue(reloaded.getSeatInventory().isBooked(1, 0));
+    }
+}
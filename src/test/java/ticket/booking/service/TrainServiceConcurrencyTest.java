@@ -0,0 +1,158 @@
+package ticket.booking.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ticket.booking.entities.LegRange;
+import ticket.booking.entities.SeatInventory;
+import ticket.booking.entities.Train;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrainServiceConcurrencyTest {
+    private static final int THREADS = 16;
+    private static final int ROWS = 2;
+    private static final int SEATS_PER_ROW = 8;
+    private static final List<String> STATIONS = List.of("a", "b", "c", "d");
+
+    @TempDir
+    Path dataDirectory;
+
+    private TrainService trainService;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        trainService = new TrainService(dataDirectory, null);
+        trainService.addTrain(TestTrains.newTrain("T1", STATIONS, ROWS, SEATS_PER_ROW));
+        executor = Executors.newFixedThreadPool(THREADS + 1);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        trainService.commit().join();
+    }
+
+    @Test
+    void onlyOneOfManyBookingsOfTheSameSeatSucceeds() throws Exception {
+        List<Boolean> results = runTogether(THREADS,
+                thread -> trainService.bookSeat(trainService.findTrain("T1").orElseThrow(), 1, 5));
+
+        assertEquals(1, Collections.frequency(results, true));
+        SeatInventory inventory = catalogInventory();
+        assertTrue(inventory.isBooked(1, 5));
+        assertCountersMatchSeats(inventory);
+        assertEquals(ROWS * SEATS_PER_ROW - 1, inventory.countAvailable(0, STATIONS.size() - 1));
+
+        trainService.commit().join();
+        SeatInventory reloaded = new TrainService(dataDirectory, null).findTrain("T1").orElseThrow().getSeatInventory();
+        assertTrue(reloaded.isBooked(1, 5));
+        assertCountersMatchSeats(reloaded);
+    }
+
+    @Test
+    void bookingsOfOverlappingLegsOfTheSameSeatNeverOverlap() throws Exception {
+        List<LegRange> journeys = new ArrayList<>();
+        for (int from = 0; from < STATIONS.size() - 1; from++) {
+            for (int to = from + 1; to < STATIONS.size(); to++) {
+                journeys.add(new LegRange(from, to));
+            }
+        }
+
+        List<Boolean> results = runTogether(THREADS, thread -> trainService.bookSeat(
+                trainService.findTrain("T1").orElseThrow(), 0, 0, journeys.get(thread % journeys.size())));
+
+        boolean[] legTaken = new boolean[STATIONS.size() - 1];
+        for (int thread = 0; thread < results.size(); thread++) {
+            if (!results.get(thread)) continue;
+            LegRange legs = journeys.get(thread % journeys.size());
+            for (int leg = legs.fromLeg(); leg < legs.toLeg(); leg++) {
+                assertFalse(legTaken[leg], "leg " + leg + " was sold twice");
+                legTaken[leg] = true;
+            }
+        }
+        assertCountersMatchSeats(catalogInventory());
+    }
+
+    @Test
+    void bookingsRacingReloadsAllLandInTheCatalog() throws Exception {
+        AtomicBoolean booking = new AtomicBoolean(true);
+        Future<?> reloads = executor.submit(() -> {
+            while (booking.get()) {
+                trainService.reload();
+            }
+            return null;
+        });
+
+        List<Boolean> results = runTogether(ROWS * SEATS_PER_ROW, seat -> trainService.bookSeat(
+                trainService.findTrain("T1").orElseThrow(), seat / SEATS_PER_ROW, seat % SEATS_PER_ROW));
+        booking.set(false);
+        reloads.get(10, TimeUnit.SECONDS);
+
+        assertEquals(ROWS * SEATS_PER_ROW, Collections.frequency(results, true));
+        SeatInventory inventory = catalogInventory();
+        assertEquals(0, inventory.getTotalFreeSeats());
+        assertCountersMatchSeats(inventory);
+    }
+
+    private interface Task {
+        boolean run(int thread) throws Exception;
+    }
+
+    // Starts every task at once, so that they contend as much as possible, and returns their results in order
+    private List<Boolean> runTogether(int count, Task task) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int thread = 0; thread < count; thread++) {
+            int id = thread;
+            Callable<Boolean> call = () -> {
+                start.await();
+                return task.run(id);
+            };
+            futures.add(executor.submit(call));
+        }
+        start.countDown();
+
+        List<Boolean> results = new ArrayList<>();
+        for (Future<Boolean> future : futures) {
+            results.add(future.get(10, TimeUnit.SECONDS));
+        }
+        return results;
+    }
+
+    private SeatInventory catalogInventory() {
+        return trainService.findTrain("T1").orElseThrow().getSeatInventory();
+    }
+
+    // The per-journey free-seat counters agree with the seat bitmaps for every journey
+    private static void assertCountersMatchSeats(SeatInventory inventory) {
+        for (int from = 0; from < inventory.getLegCount(); from++) {
+            for (int to = from + 1; to <= inventory.getLegCount(); to++) {
+                int free = 0;
+                for (int row = 0; row < inventory.getRowCount(); row++) {
+                    for (int seat = 0; seat < inventory.getSeatCount(row); seat++) {
+                        if (inventory.isAvailable(row, seat, from, to)) free++;
+                    }
+                }
+                assertEquals(free, inventory.countAvailable(from, to), "free seats from leg " + from + " to " + to);
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package ticket.booking.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ticket.booking.entities.LegRange;
+import ticket.booking.entities.SeatPosition;
+import ticket.booking.entities.Ticket;
+import ticket.booking.entities.User;
+import ticket.booking.persistence.BookingLedger;
+import ticket.booking.persistence.UserStore;
+import ticket.booking.util.UserServiceUtil;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserBookingServiceCancellationTest {
+    private static final String PASSWORD = "secret-password";
+
+    @TempDir
+    Path dataDirectory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private TrainService trainService;
+    private UserBookingService bookingService;
+    private User alice;
+    private Ticket ticket;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        trainService = new TrainService(dataDirectory, null);
+        trainService.addTrain(TestTrains.newTrain("T1", List.of("a", "b", "c"), 2, 4));
+        bookingService = new UserBookingService(null, new SessionManager(), trainService, dataDirectory);
+
+        alice = newUser("alice");
+        assertTrue(bookingService.signUp(alice));
+        ticket = bookingService.bookTicket(login(bookingService, "alice"), trainService.findTrain("T1").orElseThrow(),
+                "a", "c", 0, 2).orElseThrow();
+        bookingService.commit().join();
+    }
+
+    @AfterEach
+    void tearDown() {
+        bookingService.close();
+    }
+
+    @Test
+    void cancellingFreesTheSeatForGood() throws Exception {
+        assertTrue(bookingService.cancelBooking(login(bookingService, "alice"), ticket.getTicketId()));
+        bookingService.commit().join();
+
+        try (Restarted restarted = restart()) {
+            assertFalse(restarted.seatBooked());
+            assertTrue(restarted.tickets("alice").isEmpty());
+        }
+        assertTrue(new BookingLedger(dataDirectory.resolve("bookings.json"), objectMapper)
+                .find(ticket.getTicketId()).isEmpty());
+    }
+
+    @Test
+    void crashAfterTheTicketIsRemovedFreesTheSeatAtTheNextStart() throws Exception {
+        // The cancellation got as far as taking the ticket from its user
+        new BookingLedger(dataDirectory.resolve("bookings.json"), objectMapper).markCancelling(ticket.getTicketId());
+        assertTrue(new UserStore(dataDirectory.resolve("users.json"), objectMapper)
+                .removeTicket(alice.getUserId(), ticket.getTicketId()));
+
+        try (Restarted restarted = restart()) {
+            assertFalse(restarted.seatBooked());
+        }
+        try (Restarted restarted = restart()) {
+            assertFalse(restarted.seatBooked());
+            assertTrue(restarted.tickets("alice").isEmpty());
+        }
+        assertTrue(new BookingLedger(dataDirectory.resolve("bookings.json"), objectMapper)
+                .find(ticket.getTicketId()).isEmpty());
+    }
+
+    @Test
+    void crashBeforeTheTicketIsRemovedKeepsTheBooking() throws Exception {
+        new BookingLedger(dataDirectory.resolve("bookings.json"), objectMapper).markCancelling(ticket.getTicketId());
+
+        try (Restarted restarted = restart()) {
+            assertTrue(restarted.seatBooked());
+            assertEquals(List.of(ticket.getTicketId()), restarted.tickets("alice"));
+
+            assertTrue(restarted.bookingService.cancelBooking(login(restarted.bookingService, "alice"),
+                    ticket.getTicketId()));
+            assertFalse(restarted.seatBooked());
+        }
+        assertTrue(new BookingLedger(dataDirectory.resolve("bookings.json"), objectMapper).cancelling().isEmpty());
+    }
+
+    @Test
+    void seatSoldAgainBeforeTheCrashIsNotReleased() throws Exception {
+        User bob = newUser("bob");
+        assertTrue(bookingService.signUp(bob));
+        // The cancellation released the seat and someone else bought it before the ledger entry was dropped
+        new BookingLedger(dataDirectory.resolve("bookings.json"), objectMapper).markCancelling(ticket.getTicketId());
+        assertTrue(new UserStore(dataDirectory.resolve("users.json"), objectMapper)
+                .removeTicket(alice.getUserId(), ticket.getTicketId()));
+        trainService.releaseSeats(trainService.findTrain("T1").orElseThrow(), List.of(new SeatPosition(0, 2)),
+                new LegRange(0, 2));
+        assertTrue(bookingService.bookTicket(login(bookingService, "bob"), trainService.findTrain("T1").orElseThrow(),
+                "a", "b", 0, 2).isPresent());
+        bookingService.commit().join();
+
+        try (Restarted restarted = restart()) {
+            assertTrue(restarted.seatBooked());
+            assertEquals(1, restarted.tickets("bob").size());
+        }
+    }
+
+    private record Restarted(TrainService trainService, UserBookingService bookingService) implements AutoCloseable {
+        boolean seatBooked() {
+            return trainService.findTrain("T1").orElseThrow().getSeatInventory().isBooked(0, 2);
+        }
+
+        List<String> tickets(String name) {
+            return bookingService.getBookings(login(bookingService, name)).orElseThrow().stream()
+                    .map(Ticket::getTicketId)
+                    .toList();
+        }
+
+        @Override
+        public void close() {
+            bookingService.commit().join();
+            bookingService.close();
+        }
+    }
+
+    private Restarted restart() throws Exception {
+        TrainService restartedTrains = new TrainService(dataDirectory, null);
+        return new Restarted(restartedTrains,
+                new UserBookingService(null, new SessionManager(), restartedTrains, dataDirectory));
+    }
+
+    private static String login(UserBookingService service, String name) {
+        return service.loginUser(name, PASSWORD).orElseThrow();
+    }
+
+    private static User newUser(String name) {
+        return User.builder()
+                .name(name)
+                .password(PASSWORD)
+                .hashedPassword(UserServiceUtil.hashPassword(PASSWORD))
+                .ticketsBooked(new ArrayList<>())
+                .userId(UUID.randomUUID().toString())
+                .build();
+    }
+}
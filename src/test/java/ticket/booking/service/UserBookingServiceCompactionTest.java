@@ -0,0 +1,112 @@
+package ticket.booking.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ticket.booking.entities.Ticket;
+import ticket.booking.entities.User;
+import ticket.booking.persistence.Snapshots;
+import ticket.booking.util.UserServiceUtil;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserBookingServiceCompactionTest {
+    private static final String PASSWORD = "secret-password";
+
+    @TempDir
+    Path dataDirectory;
+
+    private TrainService trainService;
+    private UserBookingService bookingService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        trainService = new TrainService(dataDirectory, null);
+        trainService.addTrain(TestTrains.newTrain("T1", List.of("a", "b", "c"), 2, 4));
+        bookingService = newBookingService();
+    }
+
+    @AfterEach
+    void tearDown() {
+        bookingService.close();
+    }
+
+    @Test
+    void signUpAndLoginUseTheUsersInTheDirectory() throws Exception {
+        assertTrue(bookingService.signUp(newUser("alice")));
+        assertFalse(bookingService.signUp(newUser("alice")));
+
+        assertTrue(bookingService.loginUser("alice", PASSWORD).isPresent());
+        assertTrue(bookingService.loginUser("alice", "wrong-password").isEmpty());
+        bookingService.commit().join();
+        assertTrue(Files.size(Snapshots.journalPathFor(dataDirectory.resolve("users.json"))) > 0);
+
+        try (UserBookingService restarted = newBookingService()) {
+            assertTrue(restarted.loginUser("alice", PASSWORD).isPresent());
+        }
+    }
+
+    @Test
+    void compactWritesUsersToTheDirectoryAndEmptiesTheJournal() throws Exception {
+        User alice = newUser("alice");
+        assertTrue(bookingService.signUp(alice));
+
+        bookingService.compact();
+
+        assertEquals(0, Files.size(Snapshots.journalPathFor(dataDirectory.resolve("users.json"))));
+        User[] saved = new ObjectMapper().readValue(dataDirectory.resolve("users.json").toFile(), User[].class);
+        assertEquals(1, saved.length);
+        assertEquals(alice.getUserId(), saved[0].getUserId());
+
+        try (UserBookingService restarted = newBookingService()) {
+            assertTrue(restarted.loginUser("alice", PASSWORD).isPresent());
+        }
+    }
+
+    @Test
+    void bookedTicketsSurviveCompactionAndARestart() throws Exception {
+        User alice = newUser("alice");
+        assertTrue(bookingService.signUp(alice));
+        String token = bookingService.loginUser("alice", PASSWORD).orElseThrow();
+
+        Optional<Ticket> ticket = bookingService.bookTicket(token, trainService.findTrain("T1").orElseThrow(),
+                "a", "b", 0, 2);
+        assertTrue(ticket.isPresent());
+        bookingService.compact();
+        trainService.compact();
+
+        TrainService restartedTrains = new TrainService(dataDirectory, null);
+        try (UserBookingService restarted = new UserBookingService(null, new SessionManager(), restartedTrains,
+                dataDirectory)) {
+            String restartedToken = restarted.loginUser("alice", PASSWORD).orElseThrow();
+            assertEquals(List.of(ticket.get().getTicketId()), restarted.getBookings(restartedToken).orElseThrow()
+                    .stream().map(Ticket::getTicketId).toList());
+        }
+        assertTrue(restartedTrains.findTrain("T1").orElseThrow().getSeatInventory().isBooked(0, 2));
+    }
+
+    private UserBookingService newBookingService() throws Exception {
+        return new UserBookingService(null, new SessionManager(), trainService, dataDirectory);
+    }
+
+    private static User newUser(String name) {
+        return User.builder()
+                .name(name)
+                .password(PASSWORD)
+                .hashedPassword(UserServiceUtil.hashPassword(PASSWORD))
+                .ticketsBooked(new ArrayList<>())
+                .userId(UUID.randomUUID().toString())
+                .build();
+    }
+}
@@ -0,0 +1,50 @@
+package ticket.booking.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ticket.booking.util.UserServiceUtil;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserBookingServicePasswordPoolTest {
+    @TempDir
+    Path dataDirectory;
+
+    @Test
+    void closingAServiceShutsDownThePoolItMade() throws Exception {
+        TrainService trainService = new TrainService(dataDirectory, null);
+        long before = passwordThreads();
+        for (int service = 0; service < 5; service++) {
+            try (UserBookingService bookingService = new UserBookingService(null, new SessionManager(), trainService,
+                    dataDirectory)) {
+                assertTrue(bookingService.signUpAsync("user" + service, "password").join().isPresent());
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (passwordThreads() > before && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(before, passwordThreads());
+    }
+
+    @Test
+    void closingAServiceLeavesASharedPoolRunning() throws Exception {
+        TrainService trainService = new TrainService(dataDirectory, null);
+        try (PasswordService passwordService = new PasswordService(1, 4)) {
+            new UserBookingService(null, new SessionManager(), trainService, dataDirectory, passwordService).close();
+
+            String hashedPassword = passwordService.hash("password").join();
+            assertTrue(UserServiceUtil.checkPassword("password", hashedPassword));
+        }
+    }
+
+    private static long passwordThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("password-"))
+                .count();
+    }
+}
@@ -0,0 +1,143 @@
+package ticket.booking.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+    // Slot spans of the first levels: 1, 64 and 4096 ticks, so these straddle every boundary up to level 3
+    private static final long[] BOUNDARY_DEADLINES = {
+            1, 2, 63, 64, 65, 127, 128, 129, 4095, 4096, 4097, 8191, 8192, 8193, 262143, 262144, 262145
+    };
+
+    @Test
+    void expiresEachItemAtTheFirstTickAtOrAfterItsDeadline() {
+        TimingWheel<Long> wheel = new TimingWheel<>(1, 0);
+        for (long deadline : BOUNDARY_DEADLINES) {
+            wheel.schedule(deadline, deadline);
+        }
+
+        List<Long> expired = new ArrayList<>();
+        for (long now = 0; now <= 262145; now++) {
+            for (long deadline : wheel.advance(now)) {
+                assertEquals(deadline, now, "expired at the wrong tick");
+                expired.add(deadline);
+            }
+        }
+        assertEquals(BOUNDARY_DEADLINES.length, expired.size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void neverExpiresEarlyWhenAdvancedInUnevenSteps() {
+        Random random = new Random(25);
+        TimingWheel<Integer> wheel = new TimingWheel<>(10, 1_000);
+        Map<Integer, Long> deadlines = new HashMap<>();
+        for (int item = 0; item < 5_000; item++) {
+            long deadline = 1_000 + random.nextInt(3_000_000);
+            deadlines.put(item, deadline);
+            wheel.schedule(item, deadline);
+        }
+
+        long previous = 1_000;
+        long now = 1_000;
+        Set<Integer> expired = new HashSet<>();
+        while (expired.size() < deadlines.size()) {
+            now += 1 + random.nextInt(random.nextBoolean() ? 50 : 100_000);
+            for (int item : wheel.advance(now)) {
+                long deadline = deadlines.get(item);
+                assertTrue(deadline <= now, "item " + item + " due at " + deadline + " expired at " + now);
+                // Tick boundaries are every 10 ms, so nothing may wait past the tick its deadline rounds up to
+                assertTrue(deadline > previous - (previous - 1_000) % 10, "item " + item + " expired late");
+                assertTrue(expired.add(item), "item " + item + " expired twice");
+            }
+            previous = now;
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void returnsItemsExpiringTogetherEarliestFirst() {
+        TimingWheel<Long> wheel = new TimingWheel<>(1, 0);
+        for (int index = BOUNDARY_DEADLINES.length - 1; index >= 0; index--) {
+            wheel.schedule(BOUNDARY_DEADLINES[index], BOUNDARY_DEADLINES[index]);
+        }
+
+        List<Long> expired = wheel.advance(300_000);
+
+        List<Long> expected = new ArrayList<>();
+        for (long deadline : BOUNDARY_DEADLINES) {
+            expected.add(deadline);
+        }
+        assertEquals(expected, expired);
+    }
+
+    @Test
+    void cancelledItemsNeverExpire() {
+        Random random = new Random(64);
+        TimingWheel<Integer> wheel = new TimingWheel<>(1, 0);
+        List<TimingWheel.Timeout<Integer>> timeouts = new ArrayList<>();
+        for (int item = 0; item < 2_000; item++) {
+            timeouts.add(wheel.schedule(item, 1 + random.nextInt(20_000)));
+        }
+
+        Set<Integer> cancelled = new HashSet<>();
+        Set<Integer> expired = new HashSet<>();
+        // Cancel some right away and others after they have cascaded down to the lower levels
+        for (long now = 0; now <= 20_000; now += 500) {
+            for (int cancels = 0; cancels < 40; cancels++) {
+                TimingWheel.Timeout<Integer> timeout = timeouts.get(random.nextInt(timeouts.size()));
+                boolean pending = !cancelled.contains(timeout.item()) && !expired.contains(timeout.item());
+                assertEquals(pending, wheel.cancel(timeout));
+                if (pending) {
+                    cancelled.add(timeout.item());
+                }
+            }
+            for (int item : wheel.advance(now)) {
+                assertFalse(cancelled.contains(item), "cancelled item " + item + " expired");
+                expired.add(item);
+            }
+        }
+        assertEquals(timeouts.size(), cancelled.size() + expired.size());
+        assertEquals(0, wheel.size());
+        assertFalse(wheel.cancel(timeouts.get(0)));
+    }
+
+    @Test
+    void keepsDeadlinesBeyondTheHorizonUntilTheyAreDue() {
+        TimingWheel<String> wheel = new TimingWheel<>(1, 0);
+        // Further out than six levels of 64 slots can tell apart, so it is filed at the horizon
+        TimingWheel.Timeout<String> far = wheel.schedule("far", 1L << 40);
+        wheel.schedule("near", 1L << 19);
+
+        for (long now = 0; now <= 1L << 20; now += 1_000) {
+            for (String item : wheel.advance(now)) {
+                assertEquals("near", item);
+                assertTrue(now >= 1L << 19);
+            }
+        }
+        assertEquals(1, wheel.size());
+        assertTrue(wheel.cancel(far));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void deadlinesAlreadyPassedExpireOnTheNextTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 10_000);
+        wheel.advance(10_500);
+        wheel.schedule("late", 9_000);
+
+        assertTrue(wheel.advance(10_599).isEmpty());
+        assertEquals(List.of("late"), wheel.advance(10_600));
+    }
+}